@@ -0,0 +1,190 @@
+/*******************************************************************************
+ *
+ * Drone control through voice recognition -- in-memory recognition
+ *
+ * JNI entry points of NativeRecognizer : feature matrices are read straight
+ * from direct ByteBuffers (GetDirectBufferAddress), no file is opened and
+ * nothing is copied on the way in.
+ *
+ * Feature matrices are frame-major float arrays in the platform's byte order
+ * (frame f, coefficient k at [f * dim + k]), as in FeatureMatrix on the Java
+ * side. The DTW is the same recurrence as DtwEngine.java, so both sides return
+ * the same distances.
+ *
+ ******************************************************************************/
+
+#include <jni.h>
+#include <limits>
+#include <cstdint>
+#include <string>
+#include <vector>
+#include <algorithm>
+
+
+
+/**
+ * Pas du DTW, memes poids que dtw.cpp et DtwEngine.java
+ */
+static const float W0 = 1; // vertical, (i-1,j) -> (i,j)
+static const float W1 = 1; // diagonal, (i-1,j-1) -> (i,j)
+static const float W2 = 2; // horizontal, (i,j-1) -> (i,j)
+static const float INF = std::numeric_limits<float>::infinity();
+
+
+
+/**
+ * Rayon de bande effectif, meme calcul que DtwEngine.effectiveRadius()
+ */
+static int effectiveRadius(int I, int J, int bandRadius) {
+    if (bandRadius < 0)
+        return std::max(I, J);
+    return std::max(bandRadius, (J + I - 1) / I);
+}
+
+
+/**
+ * Distance DTW normalisee entre reference (I trames) et hypothesis (J trames), avec deux lignes
+ * glissantes. Renvoie l'infini des qu'une ligne entiere depasse threshold (abandon anticipe).
+ */
+static float dtwDirect(const float *reference, int I, const float *hypothesis, int J, int dim,
+                       int bandRadius, float threshold, std::vector<float> &rows) {
+    if (I == 0 || J == 0)
+        return INF;
+
+    rows.assign(2 * (J + 1), INF);
+    float *previousRow = rows.data();
+    float *currentRow = rows.data() + J + 1;
+    previousRow[0] = 0;
+    // cellules ecrites de chaque ligne (bande), seules celles-ci sont remises a l'infini, comme DtwEngine
+    int previousLow = 0, previousHigh = 0;
+    int currentLow = 0, currentHigh = -1;
+
+    float rawThreshold = threshold * (I + J);
+    int radius = effectiveRadius(I, J, bandRadius);
+
+    for (int i = 1; i <= I; ++i) {
+        int low = (int) std::max((int64_t) 1, (int64_t) i * J / I - radius);
+        int high = (int) std::min((int64_t) J, (int64_t) i * J / I + radius);
+
+        // currentRow contient encore la ligne i-2 : on n'efface que sa bande
+        if (currentHigh >= currentLow)
+            std::fill(currentRow + currentLow, currentRow + currentHigh + 1, INF);
+        const float *ref = reference + (i - 1) * dim;
+        float rowMinimum = INF;
+        float left = INF;
+
+        for (int j = low; j <= high; ++j) {
+            const float *hyp = hypothesis + (j - 1) * dim;
+            float d = 0;
+            for (int k = 0; k < dim; ++k) {
+                float diff = ref[k] - hyp[k];
+                d += diff * diff;
+            }
+
+            float g = std::min(previousRow[j] + W0 * d, previousRow[j - 1] + W1 * d);
+            g = std::min(g, left + W2 * d);
+            currentRow[j] = g;
+            left = g;
+            rowMinimum = std::min(rowMinimum, g);
+        }
+
+        std::swap(previousRow, currentRow);
+        currentLow = previousLow;
+        currentHigh = previousHigh;
+        previousLow = low;
+        previousHigh = high;
+        if (rowMinimum > rawThreshold)
+            return INF;
+    }
+
+    float result = previousRow[J] / (I + J);
+    return result > threshold ? INF : result;
+}
+
+
+/**
+ * Adresse d'un ByteBuffer direct, NULL (et IllegalArgumentException levee) si le buffer n'est pas
+ * direct ou trop petit pour neededBytes
+ */
+static void *directAddress(JNIEnv *env, jobject buffer, jlong neededBytes, const char *name) {
+    void *address = buffer == NULL ? NULL : env->GetDirectBufferAddress(buffer);
+    jlong capacity = buffer == NULL ? -1 : env->GetDirectBufferCapacity(buffer);
+
+    if (address == NULL || capacity < neededBytes) {
+        std::string msg = std::string(name) + " must be a direct ByteBuffer large enough";
+        env->ThrowNew(env->FindClass("java/lang/IllegalArgumentException"), msg.c_str());
+        return NULL;
+    }
+    return address;
+}
+
+
+
+/**
+ * Distance DTW entre deux matrices de features en memoire
+ */
+extern "C" JNIEXPORT jfloat JNICALL
+Java_com_dvr_mel_dronevoicerecognition_NativeRecognizer_00024Library_nativeDistance(
+        JNIEnv *env, jclass cls,
+        jobject reference, jint refFrames, jobject hypothesis, jint hypFrames, jint dim,
+        jint bandRadius, jfloat threshold) {
+
+    float *ref = (float *) directAddress(env, reference, (jlong) refFrames * dim * 4, "reference");
+    if (ref == NULL)
+        return INF;
+    float *hyp = (float *) directAddress(env, hypothesis, (jlong) hypFrames * dim * 4, "hypothesis");
+    if (hyp == NULL)
+        return INF;
+
+    std::vector<float> rows;
+    return dtwDirect(ref, refFrames, hyp, hypFrames, dim, bandRadius, threshold, rows);
+}
+
+
+/**
+ * Template le plus proche de hypothesis parmi les templates mis bout a bout dans templates
+ * (frameCounts[t] trames chacun). La meilleure distance courante sert de seuil d'abandon.
+ * Si distances n'est pas NULL, y ecrit la distance de chaque template (infini si abandonne).
+ * Renvoie l'indice du template le plus proche, -1 s'il n'y en a pas.
+ */
+extern "C" JNIEXPORT jint JNICALL
+Java_com_dvr_mel_dronevoicerecognition_NativeRecognizer_00024Library_nativeClosest(
+        JNIEnv *env, jclass cls,
+        jobject templates, jintArray frameCounts, jobject hypothesis, jint hypFrames, jint dim,
+        jint bandRadius, jfloatArray distances) {
+
+    jsize nbTemplates = env->GetArrayLength(frameCounts);
+    std::vector<jint> counts(nbTemplates);
+    env->GetIntArrayRegion(frameCounts, 0, nbTemplates, counts.data());
+
+    jlong totalFrames = 0;
+    for (jint count : counts)
+        totalFrames += count;
+
+    float *packed = (float *) directAddress(env, templates, totalFrames * dim * 4, "templates");
+    if (packed == NULL)
+        return -1;
+    float *hyp = (float *) directAddress(env, hypothesis, (jlong) hypFrames * dim * 4, "hypothesis");
+    if (hyp == NULL)
+        return -1;
+
+    std::vector<float> rows;
+    std::vector<jfloat> scores(nbTemplates, INF);
+    int closest = -1;
+    float best = INF;
+
+    const float *current = packed;
+    for (int t = 0; t < nbTemplates; ++t) {
+        scores[t] = dtwDirect(current, counts[t], hyp, hypFrames, dim, bandRadius, best, rows);
+        if (scores[t] < best) {
+            best = scores[t];
+            closest = t;
+        }
+        current += (jlong) counts[t] * dim;
+    }
+
+    if (distances != NULL)
+        env->SetFloatArrayRegion(distances, 0, std::min(nbTemplates, env->GetArrayLength(distances)),
+                                 scores.data());
+    return closest;
+}
@@ -4,11 +4,8 @@ import android.util.Log;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.text.Normalizer;
 import java.util.ArrayList;
@@ -23,14 +20,29 @@ import java.util.Set;
  */
 
 public class AppInfo implements Serializable{
+    // pinned to the value computed for the first released version, static fields added since then
+    // would otherwise prevent the legacy file from being read (see AppInfoStore)
+    private static final long serialVersionUID = -2384990970139258385L;
+
     public static String serializedFileName = "appInfoSaved";
     public static File baseDir, corpusGlobalDir;
     public static Set<String> referencesCorpora = new LinkedHashSet<>();
     public static Set<String> usersCorpora = new LinkedHashSet<>();
     public static List<String> commands = new ArrayList<>();
     public static Map<String, Corpus> corpusMap = new HashMap<>();
+    public static final int SAMPLE_RATE = 16000; // Rate of every recording, corpora and live recognition alike, in Hz
     public static int SENSITIVITY = 10; // Set the sensibility threshold of the mic
     public static int BUFFER_SIZE_MULTIPLICATOR = 10; // Set the size of the streamBuffer Analysed in WavStreamHandler
+    public static int PRE_ROLL_MS = 200; // Audio kept before the detected onset of each recording, in ms
+    public static int STREAM_BUFFER_POOL_SIZE = 8; // Number of streamBuffers shared between MicWavRecorderHandler and WavStreamHandler
+    public static int LIVE_LATENCY_BUDGET_MS = 150; // Time allowed to live recognition once the user stopped talking
+    public static int DTW_BAND_RADIUS = 20; // Sakoe-Chiba band of live recognition's DTW, in frames (10 ms)
+    public static int COMMAND_SHORTLIST_SIZE = 16; // Commands compared by DTW to an utterance, the closest ones on average
+    public static int CENTROIDS_PER_COMMAND = 1; // DBA centroids live recognition compares to, 0 to use every reference recording
+    public static String EMERGENCY_COMMAND = "etatdurgence"; // Command sent to the drone ahead of every other one
+    public static String DRONE_HOST = null; // Drone's address, null to send commands to a LoopbackDrone instead
+    public static int DRONE_PORT = 5556; // Drone's UDP port
+    static StreamBufferPool.OverloadPolicy OVERLOAD_POLICY = StreamBufferPool.OverloadPolicy.BLOCK; // What to do once every streamBuffer is in use
 
     public String _serializedFileName;
     public File _baseDir, _corpusGlobalDir;
@@ -52,6 +64,12 @@ public class AppInfo implements Serializable{
         // Delete all files related to the corpus designed by corpusName
         File corpusToDelete = new File(corpusGlobalDir, corpusName);
         deleteDirectory(corpusToDelete);
+
+        // and its features, cached beside the directory
+        FeatureCache.cacheFileOf(corpusGlobalDir, corpusName).delete();
+
+        // or its container, if it was recorded as a single file
+        CorpusContainer.fileOf(corpusGlobalDir, corpusName).delete();
     }
 
     private static void deleteDirectory(File directory) {
@@ -125,56 +143,19 @@ public class AppInfo implements Serializable{
 
 
     /**
-     * Will save the AppInfo class into a serialized file.
-     * In order to be sure that the static variables are correctly updates before writing down the
-     * file, an instance need to be created and the method updateFromStaticVariables called.
-     */
-    public static void saveToSerializedFile() {
-        File appInfoSaved = new File(AppInfo.baseDir, serializedFileName);
-
-        try{
-            AppInfo ci = new AppInfo();
-            ci.updateFromStaticVariables();
-
-            FileOutputStream fileOut = new FileOutputStream(appInfoSaved.getAbsolutePath());
-            ObjectOutputStream out = new ObjectOutputStream(fileOut);
-
-            out.writeObject(ci);
-
-            out.close();
-            fileOut.close();
-
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
-
-    /**
-     * Will load the AppInfo class from his saved which is a serialized file.
+     * Will load the AppInfo class from the legacy serialized file, written by the first versions
+     * of the app. AppInfoStore migrates it to its own format, which is now used to save AppInfo.
      * In order to be sure that the static variables are correctly updates, an instance need to be
      * created and the method updateToStaticVariables called.
+     * @return false if the file couldn't be read
      */
-    public static void loadFromSerializedFile() {
+    public static boolean loadFromSerializedFile() {
         File appInfoSaved = new File(AppInfo.baseDir, serializedFileName);
 
-        try {
-            AppInfo ci = new AppInfo();
-
-            FileInputStream fileIn = new FileInputStream(appInfoSaved.getAbsolutePath());
-            ObjectInputStream in = new ObjectInputStream(fileIn);
-
-            ci = (AppInfo) in.readObject();
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(appInfoSaved))) {
+            AppInfo ci = (AppInfo) in.readObject();
             ci.updateToStaticVariables();
-
-            in.close();
-            fileIn.close();
-
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+            return true;
 
         } catch (IOException e) {
             e.printStackTrace();
@@ -182,5 +163,6 @@ public class AppInfo implements Serializable{
         } catch (ClassNotFoundException e) {
             e.printStackTrace();
         }
+        return false;
     }
 }
@@ -0,0 +1,306 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Persists the static state of AppInfo in a compact, versioned binary file, replacing the Java
+ * serialization of the whole class.
+ *
+ * Layout of {@link #FILE_NAME} (big-endian, strings in modified UTF-8) :
+ *   int MAGIC, short VERSION, UTF corpusGlobalDir,
+ *   int n, n * (UTF key, int value)              settings, unknown keys are ignored
+ *   int n, n * UTF                               commands
+ *   int n, n * (UTF name, UTF displayName, byte flags)   corpora
+ *   int n, n * UTF                               referencesCorpora, in order
+ *   int n, n * UTF                               usersCorpora, in order
+ *   long CRC32 of everything above
+ *
+ * {@link #save()} takes a snapshot on the calling thread (the UI one) and writes it on a
+ * background thread, through a temporary file renamed over the previous one. Saves requested
+ * while a write is pending are coalesced into the latest snapshot.
+ */
+class AppInfoStore {
+    static final String FILE_NAME = "appInfo.bin";
+    static final int MAGIC = 0x44565249; // "DVRI"
+    static final short VERSION = 1;
+
+    private static final byte FLAG_DISPLAY_NAME = 0x01;
+    private static final byte FLAG_REFERENCE = 0x02;
+    private static final int MAX_ENTRIES = 1 << 20; // anything bigger is a corrupted size
+
+    private static final String TAG = "AppInfoStore";
+
+    private static final AtomicReference<Snapshot> pending = new AtomicReference<>();
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, TAG);
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private AppInfoStore() {}
+
+    /**
+     * Immutable copy of AppInfo's static state, safe to write from another thread.
+     */
+    static class Snapshot {
+        final String corpusGlobalDir;
+        final Map<String, Integer> settings = new LinkedHashMap<>();
+        final List<String> commands;
+        final List<Corpus> corpora;
+        final List<String> referencesCorpora;
+        final List<String> usersCorpora;
+
+        Snapshot(String corpusGlobalDir, List<String> commands, List<Corpus> corpora,
+                 List<String> referencesCorpora, List<String> usersCorpora) {
+            this.corpusGlobalDir = corpusGlobalDir;
+            this.commands = commands;
+            this.corpora = corpora;
+            this.referencesCorpora = referencesCorpora;
+            this.usersCorpora = usersCorpora;
+        }
+
+        static Snapshot ofAppInfo() {
+            List<Corpus> corpora = new ArrayList<>();
+            for (Corpus corpus : AppInfo.corpusMap.values())
+                corpora.add(new Corpus(corpus.getName(), corpus.getDisplayName(), corpus.hasDisplayName(),
+                        corpus.isReference()));
+
+            Snapshot snapshot = new Snapshot(
+                    AppInfo.corpusGlobalDir == null ? "" : AppInfo.corpusGlobalDir.getAbsolutePath(),
+                    new ArrayList<>(AppInfo.commands), corpora,
+                    new ArrayList<>(AppInfo.referencesCorpora), new ArrayList<>(AppInfo.usersCorpora));
+            snapshot.settings.put("SENSITIVITY", AppInfo.SENSITIVITY);
+            snapshot.settings.put("BUFFER_SIZE_MULTIPLICATOR", AppInfo.BUFFER_SIZE_MULTIPLICATOR);
+            return snapshot;
+        }
+
+        void toAppInfo() {
+            AppInfo.corpusGlobalDir = new File(corpusGlobalDir);
+            if (settings.containsKey("SENSITIVITY"))
+                AppInfo.SENSITIVITY = settings.get("SENSITIVITY");
+            if (settings.containsKey("BUFFER_SIZE_MULTIPLICATOR"))
+                AppInfo.BUFFER_SIZE_MULTIPLICATOR = settings.get("BUFFER_SIZE_MULTIPLICATOR");
+
+            AppInfo.commands = new ArrayList<>(commands);
+            AppInfo.corpusMap = new HashMap<>();
+            for (Corpus corpus : corpora)
+                AppInfo.corpusMap.put(corpus.getName(), corpus);
+            AppInfo.referencesCorpora = new LinkedHashSet<>(referencesCorpora);
+            AppInfo.usersCorpora = new LinkedHashSet<>(usersCorpora);
+        }
+    }
+
+    /**
+     * Saves AppInfo's current state in the background. Returns immediately.
+     */
+    static void save() {
+        if (pending.getAndSet(Snapshot.ofAppInfo()) == null)
+            writer.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Snapshot snapshot = pending.getAndSet(null);
+                    if (snapshot == null)
+                        return;
+                    try {
+                        write(snapshot, new File(AppInfo.baseDir, FILE_NAME));
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+    }
+
+    /**
+     * Waits for the background writes requested so far.
+     * @return false if they didn't complete within timeoutMillis
+     */
+    static boolean flush(long timeoutMillis) {
+        final Object done = new Object();
+        final boolean[] completed = {false};
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (done) {
+                    completed[0] = true;
+                    done.notifyAll();
+                }
+            }
+        });
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (done) {
+            while (!completed[0]) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0)
+                    return false;
+                try {
+                    done.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Loads AppInfo's state from baseDir, migrating the legacy serialized file if it's the only
+     * one there. AppInfo.baseDir must be set.
+     * @return false if nothing was saved yet (first launch) or if it couldn't be read
+     */
+    static boolean load() {
+        File file = new File(AppInfo.baseDir, FILE_NAME);
+        File legacyFile = new File(AppInfo.baseDir, AppInfo.serializedFileName);
+
+        if (file.exists()) {
+            try {
+                read(file).toAppInfo();
+                return true;
+            } catch (IOException e) {
+                Log.e(TAG, "couldn't read " + file + ", " + e.getMessage());
+                if (!legacyFile.exists())
+                    return false;
+            }
+        }
+
+        if (!legacyFile.exists())
+            return false;
+
+        // Migration : read it the old way, write it the new way, then forget about it
+        if (!AppInfo.loadFromSerializedFile())
+            return false;
+        try {
+            write(Snapshot.ofAppInfo(), file);
+            if (!legacyFile.delete())
+                Log.e(TAG, "couldn't delete " + legacyFile);
+        } catch (IOException e) {
+            e.printStackTrace(); // still loaded, we'll try again next time
+        }
+        return true;
+    }
+
+    static void write(Snapshot snapshot, File file) throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        CRC32 crc = new CRC32();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            DataOutputStream body = new DataOutputStream(new CheckedOutputStream(out, crc));
+            body.writeInt(MAGIC);
+            body.writeShort(VERSION);
+            body.writeUTF(snapshot.corpusGlobalDir);
+
+            body.writeInt(snapshot.settings.size());
+            for (Map.Entry<String, Integer> setting : snapshot.settings.entrySet()) {
+                body.writeUTF(setting.getKey());
+                body.writeInt(setting.getValue());
+            }
+
+            writeStrings(body, snapshot.commands);
+
+            body.writeInt(snapshot.corpora.size());
+            for (Corpus corpus : snapshot.corpora) {
+                body.writeUTF(corpus.getName());
+                body.writeUTF(corpus.getDisplayName());
+                body.writeByte((corpus.hasDisplayName() ? FLAG_DISPLAY_NAME : 0)
+                        | (corpus.isReference() ? FLAG_REFERENCE : 0));
+            }
+
+            writeStrings(body, snapshot.referencesCorpora);
+            writeStrings(body, snapshot.usersCorpora);
+            body.flush();
+
+            out.writeLong(crc.getValue());
+        }
+
+        if (!tmpFile.renameTo(file))
+            throw new IOException("couldn't rename " + tmpFile + " to " + file);
+    }
+
+    static Snapshot read(File file) throws IOException {
+        CRC32 crc = new CRC32();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            DataInputStream body = new DataInputStream(new CheckedInputStream(in, crc));
+            if (body.readInt() != MAGIC)
+                throw new IOException("not an AppInfo file");
+            short version = body.readShort();
+            if (version != VERSION)
+                throw new IOException("unsupported AppInfo file version " + version);
+            String corpusGlobalDir = body.readUTF();
+
+            Map<String, Integer> settings = new LinkedHashMap<>();
+            int nbSettings = body.readInt();
+            for (int i = 0; i < nbSettings; i++) {
+                String key = body.readUTF();
+                settings.put(key, body.readInt());
+            }
+
+            List<String> commands = readStrings(body);
+
+            int nbCorpora = body.readInt();
+            if (nbCorpora < 0 || nbCorpora > MAX_ENTRIES)
+                throw new IOException("corrupted AppInfo file");
+            List<Corpus> corpora = new ArrayList<>(nbCorpora);
+            for (int i = 0; i < nbCorpora; i++) {
+                String name = body.readUTF();
+                String displayName = body.readUTF();
+                byte flags = body.readByte();
+                corpora.add(new Corpus(name, displayName, (flags & FLAG_DISPLAY_NAME) != 0,
+                        (flags & FLAG_REFERENCE) != 0));
+            }
+
+            List<String> referencesCorpora = readStrings(body);
+            List<String> usersCorpora = readStrings(body);
+
+            if (in.readLong() != crc.getValue())
+                throw new IOException("corrupted AppInfo file");
+
+            Snapshot snapshot = new Snapshot(corpusGlobalDir, commands, corpora, referencesCorpora, usersCorpora);
+            snapshot.settings.putAll(settings);
+            return snapshot;
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String s : strings)
+            out.writeUTF(s);
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0 || size > MAX_ENTRIES)
+            throw new IOException("corrupted AppInfo file");
+        List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            strings.add(in.readUTF());
+        return strings;
+    }
+}
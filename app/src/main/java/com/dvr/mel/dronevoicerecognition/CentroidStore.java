@@ -0,0 +1,310 @@
+package com.dvr.mel.dronevoicerecognition;
+
+// NIO imports
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**************************************************************************************************
+ *  CentroidStore in a nutshell:                                                                  *
+ *      _ DBA centroids (DbaAverager) of every command over the reference corpora, kept in a      *
+ *        single binary file beside the corpora : [corpusGlobalDir]/references.centroids          *
+ *      _ every command's entry remembers the reference corpora it was built from. update()       *
+ *        reuses the entries still built from the current reference set, and rebuilds the other   *
+ *        ones from their previous centroids (DbaAverager's warm start), so adding or removing a  *
+ *        reference only costs a few DBA iterations                                               *
+ *      _ reference features come from the corpora's FeatureCache, only loaded if something has   *
+ *        to be rebuilt                                                                           *
+ *      _ scheduleRebuild() (Corpus.setAsReference() / unsetReference()) updates the file in the  *
+ *        background, requests made meanwhile are coalesced into the latest reference set         *
+ *                                                                                                *
+ *  File layout (LITTLE_ENDIAN) :                                                                 *
+ *      header : MAGIC, FORMAT_VERSION, extractor's parameter hash, band radius, centroids per    *
+ *               command, entry count                                                   (6 ints)  *
+ *      entry  : command (short length + UTF-8), corpus count (int), corpora (short length +      *
+ *               UTF-8 each), centroid count (int), centroids (nbFrames, dim, coefficients)       *
+ *                                                                                                *
+ *  Limitations: _ a reference re-recorded under the same name isn't noticed until the reference  *
+ *                 set changes                                                                    *
+ *************************************************************************************************/
+
+
+
+
+class CentroidStore
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static final String FILE_NAME = "references.centroids";
+    private static final int MAGIC = 0x44424143; // "DBAC"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+
+    private final File file;
+    private final StreamingMfccExtractor extractor; // reference features' parameters
+    private final int centroidsPerCommand;
+    private final int bandRadius;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(); // command -> entry
+    private boolean dirty = false;
+
+    /**** Statistics ****/
+    private int reusedCount = 0;
+    private int rebuiltCount = 0;
+
+    /**** Background rebuilds ****/
+    private static final Object fileLock = new Object(); // one update of the file at a time
+    private static final AtomicReference<List<String>> pendingReferences = new AtomicReference<>();
+    private static final ExecutorService rebuilder = Executors.newSingleThreadExecutor(new ThreadFactory()
+    {
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, "CentroidStore");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+
+
+    private static class Entry
+    {
+        final TreeSet<String> corpora; // reference corpora the centroids were built from
+        final FeatureMatrix[] centroids;
+
+        Entry(TreeSet<String> corpora_, FeatureMatrix[] centroids_)
+        {
+            corpora = corpora_;
+            centroids = centroids_;
+        }
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  CONSTRUCTOR                    *
+     *                                                 *
+     ***************************************************/
+
+
+
+    CentroidStore(File file_, StreamingMfccExtractor extractor_, int centroidsPerCommand_, int bandRadius_)
+    {   // load file if it exists and matches the parameters, anything else is rebuilt by update()
+        file = file_;
+        extractor = extractor_;
+        centroidsPerCommand = centroidsPerCommand_;
+        bandRadius = bandRadius_;
+
+        try { load(); }
+        catch (FileNotFoundException e) { /* nothing built yet */ }
+        catch (IOException | RuntimeException e)
+        {   // truncated or corrupted file
+            e.printStackTrace();
+            entries.clear();
+            dirty = true;
+        }
+    }
+
+
+
+    static File fileOf(File corpusGlobalDir)
+    {
+        return new File(corpusGlobalDir, FILE_NAME);
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   ROUTINES                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    FeatureMatrix[][] update(File corpusGlobalDir, Collection<String> references, VocabularyRegistry vocabulary)
+    {   // centroids of every command ( [centroid][command ID], null if missing ), rebuilding stale entries
+        TreeSet<String> referenceSet = new TreeSet<>(references);
+        List<String> referenceList = new ArrayList<>(referenceSet);
+        FeatureMatrix[][] features = null; // [corpus][command], loaded on the first stale entry
+        DbaAverager averager = new DbaAverager(bandRadius);
+
+        FeatureMatrix[][] centroids = new FeatureMatrix[centroidsPerCommand][vocabulary.size()];
+        for ( int c=0; c<vocabulary.size(); ++c )
+        {
+            Entry entry = entries.get(vocabulary.nameOf(c));
+            if ( entry != null && entry.corpora.equals(referenceSet) )
+                ++reusedCount;
+            else
+            {
+                if ( features == null )
+                    features = FeatureCache.loadCorpora(corpusGlobalDir, referenceList, vocabulary.getCommands(), extractor);
+
+                List<FeatureMatrix> recordings = new ArrayList<>();
+                for ( FeatureMatrix[] corpus : features )
+                    if ( corpus[c] != null && corpus[c].nbFrames > 0 )
+                        recordings.add(corpus[c]);
+
+                FeatureMatrix[] previous = entry == null ? null : entry.centroids;
+                entry = new Entry( referenceSet, averager.centroids(recordings, centroidsPerCommand, previous) );
+                entries.put(vocabulary.nameOf(c), entry);
+                dirty = true;
+                ++rebuiltCount;
+            }
+
+            for ( int k=0; k<entry.centroids.length && k<centroidsPerCommand; ++k )
+                centroids[k][c] = entry.centroids[k];
+        }
+        return centroids;
+    }
+
+
+
+    static FeatureMatrix[][] loadCentroids(File corpusGlobalDir, Collection<String> references, VocabularyRegistry vocabulary,
+                                           StreamingMfccExtractor extractor, int centroidsPerCommand, int bandRadius)
+    {   // up to date centroids, the file being updated if needed
+        synchronized ( fileLock )
+        {
+            CentroidStore store = new CentroidStore( fileOf(corpusGlobalDir), extractor, centroidsPerCommand, bandRadius );
+            FeatureMatrix[][] centroids = store.update(corpusGlobalDir, references, vocabulary);
+            try { store.save(); }
+            catch (IOException e) { e.printStackTrace(); }
+            return centroids;
+        }
+    }
+
+
+
+    static void scheduleRebuild()
+    {   // rebuilds AppInfo's centroids in the background, from its current reference set
+        if ( AppInfo.corpusGlobalDir == null || !AppInfo.corpusGlobalDir.isDirectory() || AppInfo.CENTROIDS_PER_COMMAND <= 0 )
+            return;
+
+        final File corpusGlobalDir = AppInfo.corpusGlobalDir;
+        final VocabularyRegistry vocabulary = VocabularyRegistry.ofAppInfo();
+        if ( pendingReferences.getAndSet(new ArrayList<>(AppInfo.referencesCorpora)) == null )
+            rebuilder.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    List<String> references = pendingReferences.getAndSet(null);
+                    if ( references != null )
+                        loadCentroids( corpusGlobalDir, references, vocabulary,
+                                       new StreamingMfccExtractor(AppInfo.SAMPLE_RATE),
+                                       AppInfo.CENTROIDS_PER_COMMAND, AppInfo.DTW_BAND_RADIUS );
+                }
+            });
+    }
+
+
+
+    int getReusedCount()
+    {
+        return reusedCount;
+    }
+
+
+
+    int getRebuiltCount()
+    {
+        return rebuiltCount;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  FILE ROUTINES                  *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private void load() throws IOException
+    {
+        MappedByteBuffer mapping = FeatureMatrixIO.map(file);
+        if ( mapping.limit() < HEADER_SIZE || mapping.getInt() != MAGIC || mapping.getInt() != FORMAT_VERSION )
+            throw new IOException(file + " isn't a centroid file");
+        if ( mapping.getInt() != extractor.getParameterHash() || mapping.getInt() != bandRadius
+             || mapping.getInt() != centroidsPerCommand )
+        {   // built with other parameters, every entry is stale
+            dirty = true;
+            return;
+        }
+
+        int nbEntries = mapping.getInt();
+        for ( int e=0; e<nbEntries; ++e )
+        {
+            String command = FeatureMatrixIO.getString(mapping);
+            TreeSet<String> corpora = new TreeSet<>();
+            int nbCorpora = mapping.getInt();
+            for ( int i=0; i<nbCorpora; ++i )
+                corpora.add( FeatureMatrixIO.getString(mapping) );
+
+            FeatureMatrix[] centroids = new FeatureMatrix[mapping.getInt()];
+            for ( int k=0; k<centroids.length; ++k )
+                centroids[k] = FeatureMatrixIO.getMatrix(mapping);
+            entries.put( command, new Entry(corpora, centroids) );
+        }
+    }
+
+
+
+    void save() throws IOException
+    {   // write every entry to a temporary file, then rename it over file (FeatureMatrixIO.replace())
+        if ( !dirty )
+            return;
+
+        int size = HEADER_SIZE;
+        for ( Map.Entry<String, Entry> e : entries.entrySet() )
+        {
+            size += FeatureMatrixIO.sizeOf(e.getKey()) + 4;
+            for ( String corpus : e.getValue().corpora )
+                size += FeatureMatrixIO.sizeOf(corpus);
+            size += 4;
+            for ( FeatureMatrix centroid : e.getValue().centroids )
+                size += FeatureMatrixIO.sizeOf(centroid);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(extractor.getParameterHash())
+              .putInt(bandRadius).putInt(centroidsPerCommand).putInt(entries.size());
+        for ( Map.Entry<String, Entry> e : entries.entrySet() )
+        {
+            FeatureMatrixIO.putString(buffer, e.getKey());
+            buffer.putInt(e.getValue().corpora.size());
+            for ( String corpus : e.getValue().corpora )
+                FeatureMatrixIO.putString(buffer, corpus);
+
+            buffer.putInt(e.getValue().centroids.length);
+            for ( FeatureMatrix centroid : e.getValue().centroids )
+                FeatureMatrixIO.putMatrix(buffer, centroid);
+        }
+        buffer.flip();
+
+        FeatureMatrixIO.replace(file, buffer);
+
+        dirty = false;
+    }
+}
@@ -0,0 +1,190 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**************************************************************************************************
+ *  CommandSequencer in a nutshell:                                                               *
+ *      _ which command of a corpus recording session is being recorded, owned by the audio       *
+ *        pipeline (CorpusRecorder) instead of MicActivity                                        *
+ *      _ the current index is an AtomicInteger : the consumer thread advances it once a          *
+ *        recording is complete (compare-and-set from the recorded index, so it can't skip a      *
+ *        command the user just went back to), the UI thread moves it back (previous())           *
+ *      _ every change is published on an event channel : a lock-free queue drained on the UI     *
+ *        thread (through uiExecutor), one drain being posted per batch of events, so neither     *
+ *        side ever waits for the other                                                           *
+ *                                                                                                *
+ *  Index values : 0..size()-1 <=> recording that command, size() <=> every command recorded,     *
+ *                 -1 <=> the user went back past the first command (session cancelled)           *
+ *************************************************************************************************/
+
+
+
+
+class CommandSequencer
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private final List<String> commands; // snapshot of the session's commands
+    private final AtomicInteger index = new AtomicInteger(0);
+
+    /**** Event channel ****/
+    private final Executor uiExecutor; // runs the drain on the UI thread
+    private final Listener listener; // called on the UI thread only
+    private final ConcurrentLinkedQueue<Event> events = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainPosted = new AtomicBoolean(false);
+
+
+
+    interface Listener
+    {
+        void onSequencerEvent(Event event);
+    }
+
+
+
+    static class Event
+    {
+        enum Type { SPEECH_START, SPEECH_END, COMMAND_CHANGED }
+
+        final Type type;
+        final int index; // index right after the event, current() being the one that counts once delivered
+        final long speechEndNanos; // COMMAND_CHANGED after a recording : its speech end, for PipelineLatency, 0 otherwise
+
+        Event(Type type_, int index_, long speechEndNanos_)
+        {
+            type = type_;
+            index = index_;
+            speechEndNanos = speechEndNanos_;
+        }
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  CONSTRUCTOR                    *
+     *                                                 *
+     ***************************************************/
+
+
+
+    CommandSequencer(List<String> commands_, Executor uiExecutor_, Listener listener_)
+    {
+        commands = new ArrayList<>(commands_);
+        uiExecutor = uiExecutor_;
+        listener = listener_;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   ROUTINES                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    int size()
+    {
+        return commands.size();
+    }
+
+
+
+    int current()
+    {
+        return index.get();
+    }
+
+
+
+    String commandAt(int i)
+    {   // null out of bounds
+        return ( i < 0 || i >= commands.size() ) ? null : commands.get(i);
+    }
+
+
+
+    boolean advance(int recordedIndex, long speechEndNanos)
+    {   // consumer thread : recordedIndex is complete, move on unless the user moved meanwhile
+        if ( !index.compareAndSet(recordedIndex, recordedIndex+1) )
+            return false;
+        publish( new Event(Event.Type.COMMAND_CHANGED, recordedIndex+1, speechEndNanos) );
+        return true;
+    }
+
+
+
+    int previous()
+    {   // UI thread : go back one command (to -1 at most), returns the new index
+        int current, previous;
+        do
+        {
+            current = index.get();
+            if ( current < 0 )
+                return current;
+            previous = current-1;
+        }
+        while ( !index.compareAndSet(current, previous) );
+
+        publish( new Event(Event.Type.COMMAND_CHANGED, previous, 0) );
+        return previous;
+    }
+
+
+
+    void speechStarted()
+    {
+        publish( new Event(Event.Type.SPEECH_START, index.get(), 0) );
+    }
+
+
+
+    void speechEnded()
+    {
+        publish( new Event(Event.Type.SPEECH_END, index.get(), 0) );
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                 EVENT CHANNEL                   *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private void publish(Event event)
+    {   // never blocks, at most one drain waiting on the UI thread at a time
+        events.offer(event);
+        if ( drainPosted.compareAndSet(false, true) )
+            uiExecutor.execute(drain);
+    }
+
+
+
+    private final Runnable drain = new Runnable()
+    {
+        @Override
+        public void run()
+        {   // cleared first : an event published while draining posts another drain instead of being lost
+            drainPosted.set(false);
+            Event event;
+            while ( (event = events.poll()) != null )
+                listener.onSequencerEvent(event);
+        }
+    };
+}
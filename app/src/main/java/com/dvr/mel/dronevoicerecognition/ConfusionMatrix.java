@@ -0,0 +1,106 @@
+package com.dvr.mel.dronevoicerecognition;
+
+/**************************************************************************************************
+ *  ConfusionMatrix in a nutshell:                                                                *
+ *      _ square confusion matrix over the vocabulary's IDs (VocabularyRegistry), stored flat     *
+ *        line by line in an int[] : cell (expected, recognized) at expected*size + recognized    *
+ *      _ what RecognitionExecutor.recognize() returns, one reference's matrix being added to the *
+ *        others' with addAll() (FinalCorpusActivity, CrossValidator, CorpusEvaluator)            *
+ *      _ recognition rate = trace / sum                                                          *
+ *                                                                                                *
+ *  Free of any android.* import, as the command line tools use it too.                           *
+ *************************************************************************************************/
+
+
+
+
+class ConfusionMatrix
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    final int size;
+    final int[] counts; // counts[expected*size + recognized]
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  CONSTRUCTOR                    *
+     *                                                 *
+     ***************************************************/
+
+
+
+    ConfusionMatrix(int size_)
+    {
+        size = size_;
+        counts = new int[size*size];
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   ROUTINES                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    void add(int expected, int recognized)
+    {
+        counts[expected*size + recognized]++;
+    }
+
+
+
+    void addAll(ConfusionMatrix other)
+    {   // adds a matrix of the same size, e.g. one reference's confusion
+        if ( other.size != size )
+            throw new IllegalArgumentException("expected a " + size + "x" + size + " matrix, got "
+                                               + other.size + "x" + other.size);
+        for ( int i=0; i<counts.length; ++i )
+            counts[i] += other.counts[i];
+    }
+
+
+
+    int get(int expected, int recognized)
+    {
+        return counts[expected*size + recognized];
+    }
+
+
+
+    long trace()
+    {
+        long trace = 0;
+        for ( int i=0; i<size; ++i )
+            trace += counts[i*size + i];
+        return trace;
+    }
+
+
+
+    long sum()
+    {
+        long sum = 0;
+        for ( int count : counts )
+            sum += count;
+        return sum;
+    }
+
+
+
+    float getRecognitionRate()
+    {   // trace / sum, 0 if nothing was counted yet
+        long sum = sum();
+        return sum == 0 ? 0 : (float) trace() / sum;
+    }
+}
@@ -8,6 +8,10 @@ import java.io.Serializable;
  */
 
 class Corpus implements Serializable{
+    // pinned to the value computed for the first released version, so Corpus objects saved by it
+    // (inside the legacy AppInfo file) can still be read
+    private static final long serialVersionUID = 8229583998854108665L;
+
     private String mName;
     private String mDisplayName;
     private boolean mReference = false;
@@ -32,6 +36,16 @@ class Corpus implements Serializable{
         //if(AppInfo.referencesCorpora.isEmpty()) this.setAsReference();
     }
 
+    /**
+     * Restores a saved corpus as is, without touching AppInfo (see AppInfoStore).
+     */
+    Corpus(String name, String displayName, boolean hasDisplayName, boolean reference) {
+        this.mName = name;
+        this.mDisplayName = displayName;
+        this.mHasDisplayName = hasDisplayName;
+        this.mReference = reference;
+    }
+
     public String getName() {
         return mName;
     }
@@ -58,6 +72,8 @@ class Corpus implements Serializable{
         this.mReference = true;
         // Self is to be added to the set of corpora
         AppInfo.referencesCorpora.add(this.getName());
+        // The centroids of every command have to include it
+        CentroidStore.scheduleRebuild();
     }
 
     public void unsetReference() {
@@ -65,6 +81,8 @@ class Corpus implements Serializable{
         this.mReference = false;
         // Self is to be added to the set of corpora
         AppInfo.referencesCorpora.remove(this.getName());
+        // The centroids of every command have to forget it
+        CentroidStore.scheduleRebuild();
     }
 
 }
@@ -0,0 +1,428 @@
+package com.dvr.mel.dronevoicerecognition;
+
+// NIO imports
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**************************************************************************************************
+ *  CorpusContainer in a nutshell:                                                                *
+ *      _ a whole corpus in a single file beside the other corpora : [corpusGlobalDir]/[name]     *
+ *        .corpus, written by CorpusContainerSink, instead of a directory of Wav files            *
+ *      _ the file is memory-mapped once, the footer's index gives every command's PCM segment    *
+ *        and its MFCC, both bulk copied from the mapping                                         *
+ *      _ loadFeatures() recomputes the features stored with other extractor's parameters, then   *
+ *        replaces the container with a copy holding them (temporary file renamed over it)        *
+ *      _ exportTo() / importFrom() convert from / to the former layout, one Wav file per command *
+ *        in the corpus's directory, so Wav based tools and recordings still work                 *
+ *                                                                                                *
+ *  File layout (LITTLE_ENDIAN) :                                                                 *
+ *      header   : MAGIC, FORMAT_VERSION, sample rate (3 ints), channels, bits per sample         *
+ *                 (2 shorts)                                                                     *
+ *      segments : PCM samples of every recording, back to back                                   *
+ *      features : nbFrames (int), dim (int), nbFrames*dim coefficients (float), per segment      *
+ *      index    : name length (short), name (UTF-8), PCM offset, PCM length in bytes, features   *
+ *                 offset or -1 (3 longs), per segment                                            *
+ *      trailer  : end of the segments, index offset (2 longs), segment count, parameter hash,    *
+ *                 MAGIC (3 ints)                                                                 *
+ *************************************************************************************************/
+
+
+
+
+class CorpusContainer
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static final String EXTENSION = ".corpus";
+    static final int MAGIC = 0x43525053; // "CRPS"
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int TRAILER_SIZE = 28;
+
+    /**** Audio format and features' parameters, read from the header and the trailer ****/
+    int sampleRate;
+    int nbrOfChannel;
+    int bitsPerSample;
+    int parameterHash; // StreamingMfccExtractor's hash the stored features were computed with
+
+    /**** Content ****/
+    private final File file;
+    private MappedByteBuffer mapping; // whole file, LITTLE_ENDIAN
+    private final Map<String, Segment> segments = new LinkedHashMap<>(); // index, in recording order
+    private long pcmEnd;
+
+
+
+    static class Segment
+    {
+        final long pcmOffset;
+        final long pcmLength; // in bytes
+        final FeatureMatrix features; // null if none were stored
+
+        Segment(long pcmOffset_, long pcmLength_, FeatureMatrix features_)
+        {
+            pcmOffset = pcmOffset_;
+            pcmLength = pcmLength_;
+            features = features_;
+        }
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  CONSTRUCTOR                    *
+     *                                                 *
+     ***************************************************/
+
+
+
+    CorpusContainer(File file_) throws IOException
+    {   // map the file and parse its index, samples are only copied by readSamples()
+        file = file_;
+
+        mapping = FeatureMatrixIO.map(file);
+        parse();
+    }
+
+
+
+    static File fileOf(File corpusGlobalDir, String corpusName)
+    {
+        return new File(corpusGlobalDir, corpusName + EXTENSION);
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   ROUTINES                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    Set<String> getNames()
+    {
+        return Collections.unmodifiableSet(segments.keySet());
+    }
+
+
+
+    boolean contains(String name)
+    {
+        return segments.containsKey(name);
+    }
+
+
+
+    Segment getSegment(String name)
+    {
+        return segments.get(name);
+    }
+
+
+
+    short[] readSamples(String name)
+    {   // every sample of name's recording, channels interleaved, null if there's none
+        Segment segment = segments.get(name);
+        if ( segment == null )
+            return null;
+
+        short[] samples = new short[(int) (segment.pcmLength/2)];
+        mapping.position( (int) segment.pcmOffset );
+        mapping.slice().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(samples);
+        return samples;
+    }
+
+
+
+    FeatureMatrix getFeatures(String name)
+    {   // name's stored features whatever their parameters, null if there are none
+        Segment segment = segments.get(name);
+        return segment == null ? null : segment.features;
+    }
+
+
+
+    FeatureMatrix getFeatures(String name, StreamingMfccExtractor extractor)
+    {   // name's stored features, null if there are none or if they were computed with other parameters
+        return parameterHash == extractor.getParameterHash() ? getFeatures(name) : null;
+    }
+
+
+
+    long getPcmEnd()
+    {
+        return pcmEnd;
+    }
+
+
+
+    static FeatureMatrix[] loadFeatures(File file, List<String> commands, StreamingMfccExtractor extractor)
+            throws IOException
+    {   // features of every command, in commands' order, null for missing recordings
+        // stale or missing features are computed from the segments and stored back in the container
+        CorpusContainer container = new CorpusContainer(file);
+        if ( container.sampleRate != extractor.sampleRate || container.nbrOfChannel != 1 )
+            throw new IOException(file + " : expected mono " + extractor.sampleRate + " Hz, got "
+                                  + container.nbrOfChannel + " channel(s) at " + container.sampleRate + " Hz");
+
+        FeatureMatrix[] features = new FeatureMatrix[commands.size()];
+        Map<String, FeatureMatrix> computed = new LinkedHashMap<>();
+        for ( int i=0; i<features.length; ++i )
+        {
+            String name = commands.get(i);
+            if ( !container.contains(name) )
+                continue;
+
+            features[i] = container.getFeatures(name, extractor);
+            if ( features[i] == null )
+            {
+                short[] samples = container.readSamples(name);
+                features[i] = extractor.extract(samples, 0, samples.length);
+                computed.put(name, features[i]);
+            }
+        }
+
+        if ( !computed.isEmpty() )
+            container.rewriteFeatures(computed, extractor.getParameterHash());
+        return features;
+    }
+
+
+
+    private void rewriteFeatures(Map<String, FeatureMatrix> computed, int newParameterHash) throws IOException
+    {   // copy the header and the PCM segments to a temporary file, followed by a footer holding computed's
+        // features, then rename it over file : a concurrent load or a reader still mapping file never sees a
+        // half written footer, concurrent rewrites each rename a complete container
+        Map<String, Segment> rewritten = new LinkedHashMap<>();
+        for ( Map.Entry<String, Segment> e : segments.entrySet() )
+        {
+            FeatureMatrix features = computed.get(e.getKey());
+            if ( features == null && parameterHash == newParameterHash )
+                features = e.getValue().features;
+            rewritten.put( e.getKey(), new Segment(e.getValue().pcmOffset, e.getValue().pcmLength, features) );
+        }
+        ByteBuffer footer = buildFooter(rewritten, pcmEnd, newParameterHash);
+
+        ByteBuffer pcm = mapping.duplicate();
+        pcm.position(0);
+        pcm.limit( (int) pcmEnd );
+
+        FeatureMatrixIO.replace(file, pcm, footer);
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *             WAV LAYOUT CONVERSIONS              *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static void exportTo(File file, File corpusDir) throws IOException
+    {   // write every segment of the container to [corpusDir]/[name].wav
+        CorpusContainer container = new CorpusContainer(file);
+        if ( !corpusDir.isDirectory() && !corpusDir.mkdirs() )
+            throw new IOException("Couldn't create the following directory : " + corpusDir);
+
+        WavFileSink wavSink = new WavFileSink(container.sampleRate, container.nbrOfChannel, container.bitsPerSample, 4096);
+        for ( String name : container.getNames() )
+        {
+            short[] samples = container.readSamples(name);
+            wavSink.open( new File(corpusDir, name + ".wav") );
+            try { wavSink.write(samples, 0, samples.length); }
+            finally { wavSink.close(); }
+        }
+    }
+
+
+
+    static void importFrom(File corpusDir, File file, StreamingMfccExtractor extractor) throws IOException
+    {   // build file from every readable [corpusDir]/[name].wav, replacing it. Features are computed as well,
+        // unless extractor is null. The container is written aside and only renamed once complete
+        File[] wavs = corpusDir.listFiles();
+        List<File> recordings = new ArrayList<>();
+        if ( wavs != null )
+        {
+            Arrays.sort(wavs);
+            for ( File wav : wavs )
+                if ( wav.isFile() && wav.getName().endsWith(".wav") )
+                    recordings.add(wav);
+        }
+        if ( recordings.isEmpty() )
+            throw new IOException("No Wav file in " + corpusDir);
+
+        File temporary = new File(file.getPath() + ".tmp");
+        if ( temporary.exists() && !temporary.delete() )
+            throw new IOException("Couldn't replace " + temporary);
+
+        CorpusContainerSink sink = null;
+        int sampleRate = 0, nbrOfChannel = 0;
+        try
+        {
+            for ( File wav : recordings )
+            {
+                WavFileReader reader;
+                try
+                {
+                    reader = new WavFileReader(wav);
+                    if ( sink != null && ( reader.sampleRate != sampleRate || reader.nbrOfChannel != nbrOfChannel ) )
+                        throw new WavFormatException(wav, "other audio format than the previous recordings");
+                }
+                catch (WavFormatException e)
+                {   // an unreadable recording is left out, as FeatureCache does
+                    e.printStackTrace();
+                    continue;
+                }
+
+                if ( sink == null )
+                {   // the first recording sets the container's format
+                    sampleRate = reader.sampleRate;
+                    nbrOfChannel = reader.nbrOfChannel;
+                    sink = new CorpusContainerSink( temporary, sampleRate, nbrOfChannel, reader.bitsPerSample,
+                                                    extractor == null ? 0 : extractor.getParameterHash(), 4096 );
+                }
+
+                String name = wav.getName().substring(0, wav.getName().length() - ".wav".length());
+                short[] samples = reader.readSamples();
+                sink.beginSegment(name);
+                sink.write(samples, 0, samples.length);
+                sink.endSegment( extractor != null && reader.nbrOfChannel == 1 && reader.sampleRate == extractor.sampleRate
+                                 ? extractor.extract(samples, 0, samples.length) : null );
+            }
+            if ( sink == null )
+                throw new IOException("No readable Wav file in " + corpusDir);
+            sink.close();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            if ( sink != null )
+                sink.close();
+            temporary.delete();
+            throw e;
+        }
+
+        if ( file.exists() && !file.delete() )
+            throw new IOException("Couldn't replace " + file);
+        if ( !temporary.renameTo(file) )
+            throw new IOException("Couldn't replace " + file);
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  FILE ROUTINES                  *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private void parse() throws IOException
+    {
+        if ( mapping.limit() < HEADER_SIZE + TRAILER_SIZE || mapping.getInt(0) != MAGIC
+             || mapping.getInt(mapping.limit()-4) != MAGIC )
+            throw new IOException(file + " isn't a complete corpus container");
+        if ( mapping.getInt(4) != FORMAT_VERSION )
+            throw new IOException(file + " : unsupported container version " + mapping.getInt(4));
+        sampleRate = mapping.getInt(8);
+        nbrOfChannel = mapping.getShort(12);
+        bitsPerSample = mapping.getShort(14);
+
+        mapping.position( mapping.limit() - TRAILER_SIZE );
+        pcmEnd = mapping.getLong();
+        long indexOffset = mapping.getLong();
+        int nbSegments = mapping.getInt();
+        parameterHash = mapping.getInt();
+        if ( pcmEnd < HEADER_SIZE || indexOffset < pcmEnd || indexOffset > mapping.limit() - TRAILER_SIZE )
+            throw new IOException(file + " : corrupted trailer");
+
+        mapping.position( (int) indexOffset );
+        for ( int s=0; s<nbSegments; ++s )
+        {
+            String name = FeatureMatrixIO.getString(mapping);
+            long pcmOffset = mapping.getLong();
+            long pcmLength = mapping.getLong();
+            long featuresOffset = mapping.getLong();
+            if ( pcmOffset < HEADER_SIZE || pcmOffset + pcmLength > pcmEnd )
+                throw new IOException(file + " : segment out of the PCM data");
+
+            segments.put( name, new Segment(pcmOffset, pcmLength,
+                                            featuresOffset < 0 ? null : readFeatures((int) featuresOffset)) );
+        }
+    }
+
+
+
+    private FeatureMatrix readFeatures(int offset)
+    {   // doesn't move mapping's position
+        ByteBuffer view = mapping.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        view.position(offset);
+        return FeatureMatrixIO.getMatrix(view);
+    }
+
+
+
+    static ByteBuffer buildFooter(Map<String, Segment> segments, long pcmEnd, int parameterHash)
+    {   // feature section, index and trailer of a container whose segments end at pcmEnd, ready to be written
+        int size = TRAILER_SIZE;
+        for ( Map.Entry<String, Segment> e : segments.entrySet() )
+        {
+            FeatureMatrix features = e.getValue().features;
+            size += FeatureMatrixIO.sizeOf(e.getKey()) + 8 + 8 + 8;
+            if ( features != null )
+                size += FeatureMatrixIO.sizeOf(features);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+
+        // feature section
+        long[] featuresOffsets = new long[segments.size()];
+        int s = 0;
+        for ( Segment segment : segments.values() )
+        {
+            FeatureMatrix features = segment.features;
+            if ( features == null )
+            {
+                featuresOffsets[s++] = -1;
+                continue;
+            }
+            featuresOffsets[s++] = pcmEnd + buffer.position();
+            FeatureMatrixIO.putMatrix(buffer, features);
+        }
+
+        // index
+        long indexOffset = pcmEnd + buffer.position();
+        s = 0;
+        for ( Map.Entry<String, Segment> e : segments.entrySet() )
+        {
+            FeatureMatrixIO.putString(buffer, e.getKey());
+            buffer.putLong(e.getValue().pcmOffset).putLong(e.getValue().pcmLength).putLong(featuresOffsets[s++]);
+        }
+
+        // trailer
+        buffer.putLong(pcmEnd).putLong(indexOffset).putInt(segments.size()).putInt(parameterHash).putInt(MAGIC);
+        buffer.flip();
+        return buffer;
+    }
+}
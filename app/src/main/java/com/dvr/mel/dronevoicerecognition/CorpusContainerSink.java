@@ -0,0 +1,252 @@
+package com.dvr.mel.dronevoicerecognition;
+
+// NIO imports
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**************************************************************************************************
+ *  CorpusContainerSink in a nutshell:                                                            *
+ *      _ write a whole corpus into a single CorpusContainer file : every recording is a PCM      *
+ *        segment appended to the same FileChannel, one sequential write stream for the session   *
+ *      _ samples go through a reusable direct ByteBuffer in LITTLE_ENDIAN order (as WavFileSink) *
+ *      _ no header to patch per recording : the feature section and the segment index are only   *
+ *        written once, at the end of the file, by close()                                        *
+ *      _ opening an existing container keeps its segments, its old footer is overwritten by the  *
+ *        next segment. A command recorded again gets a new segment, the index points to it and   *
+ *        the previous one is left as dead space                                                  *
+ *                                                                                                *
+ *  Limitations: _ nothing is readable until close() wrote the footer                             *
+ *               _ not thread safe : close() must not run while another thread is writing, the    *
+ *                 recorder's sink is closed once WavStreamHandler's thread is over               *
+ *************************************************************************************************/
+
+
+
+
+class CorpusContainerSink
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    /**** Audio format and features' parameters ****/
+    private final int sampleRate;
+    private final int nbrOfChannel;
+    private final int bitsPerSample;
+    private final int parameterHash; // StreamingMfccExtractor's hash the stored features were computed with
+
+    /**** Reusable buffers ****/
+    private final ByteBuffer dataBuffer; // direct, little-endian, sized once
+    private final ShortBuffer dataView; // dataBuffer seen as shorts, target of the bulk put()
+
+    /**** Output ****/
+    private final File file;
+    private RandomAccessFile outputFile;
+    private FileChannel channel;
+    private final Map<String, CorpusContainer.Segment> segments = new LinkedHashMap<>(); // index, name -> segment
+    private long pcmEnd; // end of the last complete segment, where the next one starts
+
+    /**** Current segment ****/
+    private String segmentName = null; // null if no segment is being written
+    private long segmentLength; // in bytes
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  CONSTRUCTOR                    *
+     *                                                 *
+     ***************************************************/
+
+
+
+    CorpusContainerSink(File file_, int sampleRate_, int nbrOfChannel_, int bitsPerSample_, int parameterHash_,
+                        int maxSamplesPerWrite) throws IOException
+    {   // open file_, creating it or appending to its segments if it's already a container of the same format
+        file = file_;
+        sampleRate = sampleRate_;
+        nbrOfChannel = nbrOfChannel_;
+        bitsPerSample = bitsPerSample_;
+        parameterHash = parameterHash_;
+
+        dataBuffer = ByteBuffer.allocateDirect(maxSamplesPerWrite*2).order(ByteOrder.LITTLE_ENDIAN);
+        dataView = dataBuffer.asShortBuffer(); // view inherits dataBuffer's byte order
+
+        if ( file.length() > 0 )
+        {
+            CorpusContainer previous = new CorpusContainer(file);
+            if ( previous.sampleRate != sampleRate || previous.nbrOfChannel != nbrOfChannel
+                 || previous.bitsPerSample != bitsPerSample )
+                throw new IOException(file + " holds another audio format");
+            for ( String name : previous.getNames() )
+            {   // features computed with other parameters are dropped, they'll be computed again when loaded
+                CorpusContainer.Segment segment = previous.getSegment(name);
+                segments.put( name, new CorpusContainer.Segment(segment.pcmOffset, segment.pcmLength,
+                                    previous.parameterHash == parameterHash ? previous.getFeatures(name) : null) );
+            }
+            pcmEnd = previous.getPcmEnd();
+        }
+        else
+            pcmEnd = CorpusContainer.HEADER_SIZE;
+
+        outputFile = new RandomAccessFile(file, "rw");
+        channel = outputFile.getChannel();
+        channel.truncate(pcmEnd); // drop the previous footer, if any
+
+        ByteBuffer header = ByteBuffer.allocate(CorpusContainer.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(CorpusContainer.MAGIC).putInt(CorpusContainer.FORMAT_VERSION).putInt(sampleRate)
+              .putShort((short) nbrOfChannel).putShort((short) bitsPerSample);
+        header.flip();
+        writeFully(header, 0);
+        channel.position(pcmEnd);
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                SEGMENT ROUTINES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    void beginSegment(String name) throws IOException
+    {   // start name's recording at the end of the PCM data, previous segment has to be ended first
+        if ( channel == null )
+            throw new IOException(file + " is closed");
+        if ( segmentName != null )
+            throw new IOException("CorpusContainerSink is already writing " + segmentName);
+
+        segmentName = name;
+        segmentLength = 0;
+        channel.position(pcmEnd);
+    }
+
+
+
+    void write(short[] samples, int offset, int length) throws IOException
+    {   // append samples[offset, offset+length[ to the current segment, chunked by dataBuffer's capacity
+        if ( segmentName == null )
+            throw new IOException("CorpusContainerSink has no segment being written to " + file);
+
+        int capacity = dataView.capacity();
+        while ( length > 0 )
+        {
+            int chunk = Math.min(length, capacity);
+
+            dataView.clear();
+            dataView.put(samples, offset, chunk); // bulk copy, converted to little-endian on the fly
+            dataBuffer.clear();
+            dataBuffer.limit(chunk*2);
+            while ( dataBuffer.hasRemaining() )
+                channel.write(dataBuffer);
+
+            segmentLength += chunk*2;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+
+
+    void truncate(long segmentLength_) throws IOException
+    {   // drop the current segment's PCM data past segmentLength_ bytes, does nothing if it's already shorter
+        if ( segmentName == null || segmentLength_ >= segmentLength )
+            return;
+
+        segmentLength = Math.max(0, segmentLength_);
+        channel.truncate(pcmEnd+segmentLength);
+        channel.position(pcmEnd+segmentLength);
+    }
+
+
+
+    void endSegment(FeatureMatrix features)
+    {   // the current segment is complete, it replaces any previous recording of the same name in the index
+        if ( segmentName == null )
+            return;
+
+        segments.remove(segmentName); // re-inserted last, the index stays in recording order
+        segments.put( segmentName, new CorpusContainer.Segment(pcmEnd, segmentLength, features) );
+        pcmEnd += segmentLength;
+        segmentName = null;
+    }
+
+
+
+    void abandonSegment() throws IOException
+    {   // forget the current segment and its samples, does nothing if no segment is being written
+        if ( segmentName == null )
+            return;
+
+        channel.truncate(pcmEnd);
+        channel.position(pcmEnd);
+        segmentName = null;
+    }
+
+
+
+    boolean isSegmentOpen()
+    {
+        return segmentName != null;
+    }
+
+
+
+    boolean isOpen()
+    {
+        return channel != null;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                 FOOTER ROUTINE                  *
+     *                                                 *
+     ***************************************************/
+
+
+
+    void close() throws IOException
+    {   // abandon the current segment, write the feature section, the index and the trailer, then release the file
+        if ( channel == null )
+            return;
+
+        try
+        {
+            abandonSegment();
+
+            ByteBuffer footer = CorpusContainer.buildFooter(segments, pcmEnd, parameterHash);
+            writeFully(footer, pcmEnd);
+            channel.truncate(pcmEnd + footer.limit());
+        }
+        finally
+        {
+            channel.close();
+            outputFile.close();
+            channel = null;
+            outputFile = null;
+        }
+    }
+
+
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException
+    {   // positional write, doesn't move the channel's position
+        while ( buffer.hasRemaining() )
+            position += channel.write(buffer, position);
+    }
+}
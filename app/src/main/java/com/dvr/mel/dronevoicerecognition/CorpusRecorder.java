@@ -0,0 +1,214 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import android.media.AudioFormat;
+// Stream specific imports
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/**************************************************************************************************
+ *  CorpusRecorder in a nutshell:                                                                 *
+ *      _ UtteranceHandler of a corpus recording session (MicActivity) : one utterance <=> one    *
+ *        command <=> one PCM segment of the corpus's CorpusContainer, the whole session being    *
+ *        one sequential write stream (CorpusContainerSink)                                       *
+ *      _ cut each segment's hangover off, then move on to the next command and begin its segment *
+ *        right away : the session's CommandSequencer belongs to the recorder, MicActivity hears  *
+ *        about it through the sequencer's events only, the consumer never waits for the UI       *
+ *      _ keep each recording's MFCC (computed by WavStreamHandler while recording) in the        *
+ *        container's feature section                                                             *
+ *      _ triggers UI update based on the utterances' boundaries (sequencer events as well)       *
+ *************************************************************************************************/
+
+
+
+
+class CorpusRecorder implements UtteranceHandler
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    /**** Associated Activity ****/
+    private final MicActivity uiActivity;
+
+    /**** Audio format ****/
+    private final int channelMode;
+    private final int encodingFormat;
+    private final int bytesPerFrame; // one sample of every channel, as written in the segments
+
+    /**** Command sequencing ****/
+    private final CommandSequencer sequencer;
+    private int recordingIndex = -1; // command the open segment belongs to, consumer thread only
+
+    /**** File Output and File stream variables ****/
+    private String commandName; // text of the current command being recorded (eg: "Avance", "Recule", etc)
+    private File containerFile; // corpus's file ( should be something like [corpusGlobalDir]/[corpusName].corpus )
+    private final CorpusContainerSink containerSink; // FileChannel based writer, one segment per command
+
+    private static final int MAX_SAMPLES_PER_WRITE = 4096; // containerSink's buffer, bigger writes are chunked
+
+    /**** UI thread, where the sequencer's events are delivered ****/
+    private final Executor uiExecutor = new Executor()
+    {
+        @Override
+        public void execute(Runnable routine)
+        { uiActivity.runOnUiThread(routine); }
+    };
+
+
+
+    /***************************************************
+     *                                                 *
+     *           CONSTRUCTOR & "DESTRUCTOR"            *
+     *                                                 *
+     ***************************************************/
+
+
+
+    CorpusRecorder(MicActivity uiActivity_, int sampleRate, int channelMode_, int encodingFormat_)
+            throws IOException
+    {   // throws if the corpus's container can't be created, there would be nowhere to record to
+        uiActivity = uiActivity_;
+        channelMode = channelMode_;
+        encodingFormat = encodingFormat_;
+        bytesPerFrame = getBitsPerSample()/8 * getNbrOfChannel();
+
+        sequencer = new CommandSequencer( AppInfo.commands, uiExecutor, uiActivity );
+
+        // Set output file and stream, the features stored with the segments being WavStreamHandler's ones
+        containerFile = CorpusContainer.fileOf(AppInfo.corpusGlobalDir, MicActivity.corpusName);
+        containerSink = new CorpusContainerSink( containerFile, sampleRate, getNbrOfChannel(), getBitsPerSample(),
+                                                 new StreamingMfccExtractor(sampleRate).getParameterHash(),
+                                                 MAX_SAMPLES_PER_WRITE );
+        // Update file's output
+        openCurrentOutput();
+    }
+
+
+
+    CommandSequencer getSequencer()
+    {
+        return sequencer;
+    }
+
+
+
+    @Override
+    public void close()
+    {
+        // drop the unfinished segment, if any, then write the container's features and index
+        try { containerSink.close(); }
+        catch (IOException e) { e.printStackTrace(); }
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *              UTTERANCE CALLBACKS                *
+     *                                                 *
+     ***************************************************/
+
+
+
+    @Override
+    public void onUtteranceStart(long startSample)
+    {   /**** Detect if ( "User starts talking" ) ****/
+        // Update UI (toggle progress bar circle thingy)
+        sequencer.speechStarted();
+
+        // the user went back to a previous command since the output file was opened, record that one instead
+        if ( sequencer.current() != recordingIndex )
+            openCurrentOutput();
+    }
+
+
+
+    @Override
+    public void write(short[] samples, int offset, int length) throws IOException
+    {   // Write samples into the current segment, bulk converted to little-endian by containerSink
+        if ( isRecording() ) // every command may have been recorded already
+            containerSink.write(samples, offset, length);
+    }
+
+
+
+    @Override
+    public void onUtteranceEnd(long length, FeatureMatrix features, long speechEndNanos_)
+    {   /**** Detect if ( "User stops talking" ) ****/
+        // Update UI (only toggle progress bar circle thingy)
+        sequencer.speechEnded();
+
+        if ( !isRecording() )
+            return; // every command has already been recorded, nothing left to do
+
+        // Finish current recording : cut the hangover off and index the segment with its features
+        try
+        { containerSink.truncate( length*bytesPerFrame ); }
+        catch (IOException ie)
+        { ie.printStackTrace(); }
+        containerSink.endSegment( features );
+
+        // Move on to the next Command (the UI follows through the sequencer's events, whenever it can)
+        // and begin its segment right away, the next utterance may start before the UI thread ran
+        sequencer.advance( recordingIndex, speechEndNanos_ );
+        openCurrentOutput();
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *             OUTPUT FILES ROUTINES               *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private void openCurrentOutput()
+    {   // segment of the sequencer's current command, none once every command has been recorded
+        recordingIndex = sequencer.current();
+        commandName = sequencer.commandAt(recordingIndex); // null if going OOB / reaching the end of the List
+
+        try
+        {
+            // a segment begun for a command the user went back from is dropped, it'll be recorded again
+            containerSink.abandonSegment();
+            if ( commandName != null )
+                containerSink.beginSegment( commandName );
+        }
+        catch (IOException e)
+        { e.printStackTrace(); }
+    }
+
+
+
+    private boolean isRecording()
+    {
+        return containerSink.isSegmentOpen();
+    }
+
+
+
+    private byte getBitsPerSample()
+    {   // translate encodingFormat into a Wav header's bitsPerSample
+        switch (encodingFormat)
+        {
+            case AudioFormat.ENCODING_PCM_8BIT : { return 8; }
+            case AudioFormat.ENCODING_PCM_16BIT : { return 16; }
+            case AudioFormat.ENCODING_PCM_FLOAT : { return 32; }
+            default : { return 0; }
+        }
+    }
+
+
+
+    private int getNbrOfChannel()
+    {   // translate channelMode into a Wav header's number of channel
+        return (channelMode == AudioFormat.CHANNEL_IN_STEREO) ? 2 : 1;
+    }
+}
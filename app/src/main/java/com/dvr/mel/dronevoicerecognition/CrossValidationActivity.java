@@ -0,0 +1,119 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.view.View;
+import android.widget.Button;
+import android.widget.TextView;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+
+
+/**************************************************************************************************
+ *  CrossValidationActivity in a nutshell:                                                        *
+ *      _ runs CrossValidator over every user corpus (AppInfo.usersCorpora) in the background     *
+ *      _ shows per speaker and per command accuracy and the CPU time spent, dumps them to        *
+ *        [baseDir]/crossvalidation.txt (adb pull-able)                                           *
+ **************************************************************************************************/
+
+public class CrossValidationActivity extends AppCompatActivity
+{
+    static final String DUMP_FILE_NAME = "crossvalidation.txt";
+
+    /**** UI accessors variables ****/
+    TextView report_tv;
+    Button run_button;
+    Button dump_button;
+
+    /**** Last report, null until a run is over ****/
+    private String report = null;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState)
+    {
+        /**** Default minimal UI onCreate ****/
+        setTitle("Cross Validation");
+        super.onCreate(savedInstanceState);
+        if(getSupportActionBar() != null) getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        setContentView(R.layout.activity_cross_validation);
+
+
+        /**** Initialize buttons Accessors && actionListerner ****/
+        report_tv = (TextView) findViewById(R.id.cross_validation_report);
+        run_button = (Button) findViewById(R.id.cross_validation_run_button);
+        run_button.setOnClickListener(new View.OnClickListener()
+        {
+            @Override
+            public void onClick(View view)
+            { run(); }
+        });
+        dump_button = (Button) findViewById(R.id.cross_validation_dump_button);
+        dump_button.setOnClickListener(new View.OnClickListener()
+        {
+            @Override
+            public void onClick(View view)
+            {
+                if ( report == null )
+                    return;
+                File dumpFile = new File(AppInfo.baseDir, DUMP_FILE_NAME);
+                try ( Writer writer = new FileWriter(dumpFile) )
+                {
+                    writer.write(report);
+                    report_tv.append("\nSaved to " + dumpFile);
+                }
+                catch (IOException e)
+                {
+                    e.printStackTrace();
+                    report_tv.append("\nCouldn't write " + dumpFile);
+                }
+            }
+        });
+
+        report_tv.setText(AppInfo.usersCorpora.size() + " user corpora");
+    }
+
+    private void run()
+    {   // O(N^2) DTW, off the UI thread
+        if ( AppInfo.usersCorpora.size() < 2 )
+        {
+            report_tv.setText("At least 2 user corpora are needed");
+            return;
+        }
+
+        run_button.setEnabled(false);
+        report_tv.setText("Running...");
+        new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                RecognitionExecutor recognitionExecutor =
+                        new RecognitionExecutor( Runtime.getRuntime().availableProcessors(), AppInfo.DTW_BAND_RADIUS );
+                try
+                {
+                    CrossValidator.Result result = new CrossValidator(recognitionExecutor).run(
+                            AppInfo.corpusGlobalDir, new ArrayList<>(AppInfo.usersCorpora),
+                            VocabularyRegistry.ofAppInfo().getCommands(),
+                            new StreamingMfccExtractor(AppInfo.SAMPLE_RATE) );
+                    report = result.report();
+                }
+                finally
+                { recognitionExecutor.shutdown(); }
+
+                runOnUiThread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        report_tv.setText(report);
+                        run_button.setEnabled(true);
+                    }
+                });
+            }
+        }, "CrossValidation").start();
+    }
+}
@@ -0,0 +1,162 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**************************************************************************************************
+ *  CrossValidator in a nutshell:                                                                 *
+ *      _ leave-one-speaker-out cross-validation : every corpus is in turn the hypothesis,        *
+ *        recognized against all the other corpora as references, so the rate tells how the       *
+ *        recognition generalizes to a speaker it has never heard                                 *
+ *      _ every corpus is parametrized once (FeatureCache, so usually not at all once cached),    *
+ *        the same features serving as hypothesis once and as reference N-1 times                 *
+ *      _ each rotation is one RecognitionExecutor job, its (N-1)*V*V DTW spread over every core  *
+ *      _ reports per speaker and per command accuracy, and the CPU time spent : extraction       *
+ *        (single threaded) plus the DTW workers' busy time                                       *
+ *                                                                                                *
+ *  Limitations: _ O(N^2) DTW in the number of corpora, fine for tens of speakers                 *
+ *************************************************************************************************/
+
+
+
+
+class CrossValidator
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private final RecognitionExecutor recognitionExecutor;
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  CONSTRUCTOR                    *
+     *                                                 *
+     ***************************************************/
+
+
+
+    CrossValidator(RecognitionExecutor recognitionExecutor_)
+    {
+        recognitionExecutor = recognitionExecutor_;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   ROUTINES                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    Result run(File corpusGlobalDir, Collection<String> corpora, List<String> commands,
+               StreamingMfccExtractor extractor)
+    {   // features from each corpus's FeatureCache, computed (and cached) only if missing
+        long start = System.nanoTime();
+        FeatureMatrix[][] features = FeatureCache.loadCorpora(corpusGlobalDir, corpora, commands, extractor);
+        long extractionNanos = System.nanoTime() - start;
+
+        return run(new ArrayList<>(corpora), commands, features, extractionNanos);
+    }
+
+
+
+    Result run(List<String> corpora, List<String> commands, FeatureMatrix[][] features, long extractionNanos)
+    {   // features[c][w] : word w of corpus c, null if missing
+        long busyStart = recognitionExecutor.getBusyNanos();
+        ConfusionMatrix[] speakers = new ConfusionMatrix[corpora.size()];
+
+        for ( int h=0; h<speakers.length; ++h )
+        {
+            FeatureMatrix[][] references = new FeatureMatrix[speakers.length-1][];
+            for ( int c=0, r=0; c<speakers.length; ++c )
+                if ( c != h )
+                    references[r++] = features[c];
+            speakers[h] = recognitionExecutor.recognize(references, features[h]);
+        }
+
+        return new Result( corpora, commands, speakers, extractionNanos,
+                           recognitionExecutor.getBusyNanos() - busyStart );
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                     RESULT                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static class Result
+    {
+        final List<String> corpora;
+        final List<String> commands;
+        final ConfusionMatrix[] speakers; // speakers[c] : corpus c against all the others
+        final ConfusionMatrix overall;
+        final long extractionNanos;
+        final long recognitionNanos; // DTW workers' busy time
+
+        Result(List<String> corpora_, List<String> commands_, ConfusionMatrix[] speakers_,
+               long extractionNanos_, long recognitionNanos_)
+        {
+            corpora = corpora_;
+            commands = commands_;
+            speakers = speakers_;
+            extractionNanos = extractionNanos_;
+            recognitionNanos = recognitionNanos_;
+
+            overall = new ConfusionMatrix(commands.size());
+            for ( ConfusionMatrix speaker : speakers )
+                overall.addAll(speaker);
+        }
+
+        float getSpeakerAccuracy(int corpus)
+        {
+            return speakers[corpus].getRecognitionRate();
+        }
+
+        float getCommandAccuracy(int command)
+        {   // share of command's recordings recognized as command, over every rotation
+            int success = overall.get(command, command), total = 0;
+            for ( int j=0; j<commands.size(); ++j )
+                total += overall.get(command, j);
+            return total == 0 ? 0 : (float) success / total;
+        }
+
+        long getCpuNanos()
+        {
+            return extractionNanos + recognitionNanos;
+        }
+
+        String report()
+        {
+            StringBuilder sb = new StringBuilder();
+            sb.append( String.format(Locale.US, "%d speakers, %d commands, overall %.2f %%%n",
+                                     corpora.size(), commands.size(), 100*overall.getRecognitionRate()) );
+            sb.append( String.format(Locale.US, "cpu time %.1f ms (features %.1f ms, dtw %.1f ms)%n%n",
+                                     getCpuNanos()/1e6, extractionNanos/1e6, recognitionNanos/1e6) );
+
+            sb.append( String.format(Locale.US, "%-16s %8s%n", "speaker", "accuracy") );
+            for ( int c=0; c<corpora.size(); ++c )
+                sb.append( String.format(Locale.US, "%-16s %7.2f%%%n", corpora.get(c), 100*getSpeakerAccuracy(c)) );
+
+            sb.append( String.format(Locale.US, "%n%-16s %8s%n", "command", "accuracy") );
+            for ( int w=0; w<commands.size(); ++w )
+                sb.append( String.format(Locale.US, "%-16s %7.2f%%%n", commands.get(w), 100*getCommandAccuracy(w)) );
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**************************************************************************************************
+ *  DbaAverager in a nutshell:                                                                    *
+ *      _ DTW Barycenter Averaging : merges several recordings of a same command into one         *
+ *        centroid template, so recognition compares an utterance to a few centroids instead of   *
+ *        to every reference recording                                                            *
+ *      _ one iteration aligns every recording on the current centroid (same DTW recurrence, step *
+ *        weights and band as DtwEngine, full cost matrix kept to backtrack the warping path),    *
+ *        then replaces each centroid frame by the mean of every frame aligned with it            *
+ *      _ from scratch, the centroid starts as the medoid (recording with the smallest sum of DTW *
+ *        distances to the others) and runs ITERATIONS iterations. Given previous centroids       *
+ *        (warm start, the reference set changed a bit) only REFINE_ITERATIONS are run            *
+ *      _ centroids() splits the recordings in k clusters first (farthest first seeding, then     *
+ *        nearest centroid assignment), for commands pronounced in very different ways            *
+ *                                                                                                *
+ *  Limitations: _ not thread safe, the cost matrix is reused from one alignment to the next      *
+ *               _ a centroid keeps the length of its starting template                           *
+ *************************************************************************************************/
+
+
+
+
+class DbaAverager
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static final int ITERATIONS = 10; // from scratch, DBA usually converges within 5 to 10
+    static final int REFINE_ITERATIONS = 3; // from previous centroids
+    static final int CLUSTERING_ROUNDS = 2; // assignment + averaging rounds when k > 1
+
+    private final int bandRadius; // same as the DtwEngine the centroids are meant for
+    private final DtwEngine dtwEngine;
+    private float[] cost = new float[0]; // (I+1)*(J+1) cost matrix, grown on demand
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  CONSTRUCTOR                    *
+     *                                                 *
+     ***************************************************/
+
+
+
+    DbaAverager(int bandRadius_)
+    {
+        bandRadius = bandRadius_;
+        dtwEngine = new DtwEngine(bandRadius);
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   ROUTINES                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    FeatureMatrix average(List<FeatureMatrix> recordings, FeatureMatrix initial, int iterations)
+    {   // centroid of recordings, starting from initial (their medoid if null)
+        if ( recordings.isEmpty() )
+            return initial;
+
+        FeatureMatrix centroid = initial == null ? medoid(recordings) : initial;
+        for ( int n=0; n<iterations; ++n )
+            centroid = iterate(centroid, recordings);
+        return centroid;
+    }
+
+
+
+    FeatureMatrix[] centroids(List<FeatureMatrix> recordings, int k, FeatureMatrix[] previous)
+    {   // min(k, recordings) centroids, refined from previous when it holds as many of them
+        k = Math.min(k, recordings.size());
+        if ( k <= 0 )
+            return new FeatureMatrix[0];
+
+        boolean warmStart = previous != null && previous.length == k;
+        int iterations = warmStart ? REFINE_ITERATIONS : ITERATIONS;
+        if ( k == 1 )
+            return new FeatureMatrix[]{ average(recordings, warmStart ? previous[0] : null, iterations) };
+
+        FeatureMatrix[] centroids = warmStart ? previous.clone() : seeds(recordings, k);
+        for ( int round=0; round<CLUSTERING_ROUNDS; ++round )
+        {
+            List<List<FeatureMatrix>> clusters = assign(recordings, centroids);
+            for ( int c=0; c<k; ++c )
+                if ( !clusters.get(c).isEmpty() )
+                    centroids[c] = average(clusters.get(c), centroids[c], iterations);
+        }
+        return centroids;
+    }
+
+
+
+    FeatureMatrix medoid(List<FeatureMatrix> recordings)
+    {
+        float[] sums = new float[recordings.size()];
+        for ( int a=0; a<recordings.size(); ++a )
+            for ( int b=a+1; b<recordings.size(); ++b )
+            {
+                float distance = dtwEngine.distance(recordings.get(a), recordings.get(b));
+                sums[a] += distance;
+                sums[b] += distance;
+            }
+
+        int best = 0;
+        for ( int a=1; a<sums.length; ++a )
+            if ( sums[a] < sums[best] )
+                best = a;
+        return recordings.get(best);
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                 DBA ITERATION                   *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private FeatureMatrix iterate(FeatureMatrix centroid, List<FeatureMatrix> recordings)
+    {   // every centroid frame becomes the mean of the recordings' frames aligned with it
+        int I = centroid.nbFrames, dim = centroid.dim;
+        float[] sums = new float[I*dim];
+        int[] counts = new int[I];
+
+        for ( FeatureMatrix recording : recordings )
+            accumulate(centroid, recording, sums, counts);
+
+        float[] data = new float[I*dim];
+        for ( int i=0; i<I; ++i )
+            for ( int k=0; k<dim; ++k )
+                data[i*dim+k] = counts[i] == 0 ? centroid.data[i*dim+k] : sums[i*dim+k] / counts[i];
+        return new FeatureMatrix(data, I, dim);
+    }
+
+
+
+    private void accumulate(FeatureMatrix centroid, FeatureMatrix recording, float[] sums, int[] counts)
+    {   // adds every recording frame to the sum of the centroid frame it's aligned with
+        int I = centroid.nbFrames, J = recording.nbFrames, dim = centroid.dim;
+        if ( I == 0 || J == 0 || recording.dim != dim )
+            return;
+
+        // 1 - banded cost matrix, g(i,j) at cost[i*(J+1) + j], same recurrence as DtwEngine
+        int width = J+1;
+        if ( cost.length < (I+1)*width )
+            cost = new float[(I+1)*width];
+        Arrays.fill(cost, 0, (I+1)*width, Float.POSITIVE_INFINITY);
+        cost[0] = 0;
+
+        int radius = DtwEngine.effectiveRadius(I, J, bandRadius);
+        for ( int i=1; i<=I; ++i )
+        {
+            int high = DtwEngine.bandHigh(i, I, J, radius);
+            for ( int j=DtwEngine.bandLow(i, I, J, radius); j<=high; ++j )
+            {
+                float d = frameDistance(centroid, i-1, recording, j-1);
+                float g = Math.min( cost[(i-1)*width + j] + DtwEngine.W0*d, cost[(i-1)*width + j-1] + DtwEngine.W1*d );
+                cost[i*width + j] = Math.min( g, cost[i*width + j-1] + DtwEngine.W2*d );
+            }
+        }
+        if ( Float.isInfinite(cost[I*width + J]) )
+            return;
+
+        // 2 - backtrack the warping path from (I,J) to (1,1)
+        int i = I, j = J;
+        while ( true )
+        {
+            counts[i-1]++;
+            for ( int k=0; k<dim; ++k )
+                sums[(i-1)*dim+k] += recording.data[(j-1)*dim+k];
+            if ( i == 1 && j == 1 )
+                break;
+
+            float d = frameDistance(centroid, i-1, recording, j-1);
+            float vertical = i > 1 ? cost[(i-1)*width + j] + DtwEngine.W0*d : Float.POSITIVE_INFINITY;
+            float diagonal = i > 1 && j > 1 ? cost[(i-1)*width + j-1] + DtwEngine.W1*d : Float.POSITIVE_INFINITY;
+            float horizontal = j > 1 ? cost[i*width + j-1] + DtwEngine.W2*d : Float.POSITIVE_INFINITY;
+
+            if ( diagonal <= vertical && diagonal <= horizontal )
+            { --i; --j; }
+            else if ( vertical <= horizontal )
+                --i;
+            else
+                --j;
+        }
+    }
+
+
+
+    private static float frameDistance(FeatureMatrix a, int frameA, FeatureMatrix b, int frameB)
+    {   // squared euclidean distance, same as DtwEngine's d(i,j)
+        float d = 0;
+        for ( int k=0; k<a.dim; ++k )
+        {
+            float diff = a.data[frameA*a.dim+k] - b.data[frameB*b.dim+k];
+            d += diff*diff;
+        }
+        return d;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  CLUSTERING                     *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private FeatureMatrix[] seeds(List<FeatureMatrix> recordings, int k)
+    {   // medoid, then each time the recording farthest from every seed so far
+        FeatureMatrix[] seeds = new FeatureMatrix[k];
+        seeds[0] = medoid(recordings);
+
+        float[] nearest = new float[recordings.size()];
+        Arrays.fill(nearest, Float.POSITIVE_INFINITY);
+        for ( int s=1; s<k; ++s )
+        {
+            int farthest = -1;
+            for ( int r=0; r<recordings.size(); ++r )
+            {
+                nearest[r] = Math.min( nearest[r], dtwEngine.distance(seeds[s-1], recordings.get(r)) );
+                if ( farthest < 0 || nearest[r] > nearest[farthest] )
+                    farthest = r;
+            }
+            seeds[s] = recordings.get(farthest);
+        }
+        return seeds;
+    }
+
+
+
+    private List<List<FeatureMatrix>> assign(List<FeatureMatrix> recordings, FeatureMatrix[] centroids)
+    {   // each recording goes to its closest centroid
+        List<List<FeatureMatrix>> clusters = new ArrayList<>();
+        for ( int c=0; c<centroids.length; ++c )
+            clusters.add(new ArrayList<FeatureMatrix>());
+
+        for ( FeatureMatrix recording : recordings )
+        {
+            int closest = 0;
+            float best = Float.POSITIVE_INFINITY;
+            for ( int c=0; c<centroids.length; ++c )
+            {
+                float distance = dtwEngine.distance(centroids[c], recording, best);
+                if ( distance < best )
+                {
+                    best = distance;
+                    closest = c;
+                }
+            }
+            clusters.get(closest).add(recording);
+        }
+        return clusters;
+    }
+}
@@ -0,0 +1,300 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+
+/**************************************************************************************************
+ *  DroneCommandDispatcher in a nutshell:                                                         *
+ *      _ sends every recognized command to the drone as one DronePacket over a non-blocking,     *
+ *        connected DatagramChannel, from its own thread : dispatch() never blocks the caller     *
+ *        (LiveRecognizer's listener, on WavStreamHandler's thread)                               *
+ *      _ emergencyCommand (AppInfo.EMERGENCY_COMMAND, "etatdurgence") jumps ahead of everything  *
+ *        and supersedes every command still pending, the drone must not move once it's sent      *
+ *      _ redundant repeated commands are coalesced : same command as the last pending one, or    *
+ *        as the last sent one less than coalesceWindowNanos ago, only bumps its repeatCount      *
+ *      _ each packet carries its utterance's end of speech capture time and its send time        *
+ *      _ the thread sleeps in Selector.select() : woken up by dispatch(), or by the channel      *
+ *        when the socket's send buffer gets room again                                           *
+ *************************************************************************************************/
+
+
+
+
+class DroneCommandDispatcher extends Thread
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    /**** Dispatcher settings ****/
+    static final int MAX_PENDING = 8; // older commands are dropped beyond that, they'd be stale anyway
+    static final long DEFAULT_COALESCE_WINDOW_NANOS = 300000000L; // 300 ms
+
+    private final String emergencyCommand;
+    private final long coalesceWindowNanos;
+
+    /**** Network ****/
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(DronePacket.MAX_SIZE); // reused for every packet
+
+    /**** Pending commands, guarded by pending ****/
+    private final ArrayDeque<DronePacket> pending = new ArrayDeque<>();
+    private DronePacket pendingEmergency; // sent before anything in pending
+    private DronePacket lastSent; // only written by the dispatcher's thread
+
+    /**** Statistics, coalesced & superseded written under pending's lock ****/
+    private volatile int nextSequence = 0; // dispatcher's thread only
+    private volatile long coalescedCount = 0; // recognitions merged into another packet
+    private volatile long supersededCount = 0; // pending commands dropped by an emergency or by MAX_PENDING
+    private volatile long failedCount = 0; // packets the channel refused (eg: port unreachable)
+
+    /**** DroneCommandDispatcher's lifespan variable ****/
+    private volatile boolean runningState = true;
+
+
+
+    /***************************************************
+     *                                                 *
+     *           CONSTRUCTOR & "DESTRUCTOR"            *
+     *                                                 *
+     ***************************************************/
+
+
+
+    DroneCommandDispatcher(SocketAddress drone, String emergencyCommand_) throws IOException
+    {
+        this(drone, emergencyCommand_, DEFAULT_COALESCE_WINDOW_NANOS);
+    }
+
+
+
+    DroneCommandDispatcher(SocketAddress drone, String emergencyCommand_, long coalesceWindowNanos_)
+            throws IOException
+    {
+        super("DroneCommandDispatcher");
+        emergencyCommand = emergencyCommand_;
+        coalesceWindowNanos = coalesceWindowNanos_;
+
+        // connected : no per packet address resolution nor security check
+        channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        channel.connect(drone);
+        selector = Selector.open();
+        channel.register(selector, 0);
+    }
+
+
+
+    void close()
+    {
+        // stop the run loop / thread, wakes it up if it is sleeping in select()
+        runningState = false;
+        selector.wakeup();
+        try { join(); }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+
+        try
+        {
+            selector.close();
+            channel.close();
+        }
+        catch (IOException e) { e.printStackTrace(); }
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                 PRODUCER SIDE                   *
+     *                                                 *
+     ***************************************************/
+
+
+
+    void dispatch(String command, int commandIndex, float confidence, long speechEndNanos)
+    {   // queue a recognized command, any thread
+        boolean emergency = command.equals(emergencyCommand);
+
+        synchronized (pending)
+        {
+            if ( emergency )
+            {
+                supersededCount += pending.size();
+                pending.clear();
+                if ( pendingEmergency != null )
+                    coalesce(pendingEmergency, confidence, speechEndNanos);
+                else
+                    pendingEmergency = new DronePacket(command, commandIndex, true, confidence, speechEndNanos);
+            }
+            else
+            {
+                DronePacket last = pending.peekLast();
+                if ( last != null && last.command.equals(command) )
+                    coalesce(last, confidence, speechEndNanos);
+                else
+                {
+                    if ( pending.size() == MAX_PENDING )
+                    {
+                        pending.pollFirst();
+                        ++supersededCount;
+                    }
+                    pending.addLast( new DronePacket(command, commandIndex, false, confidence, speechEndNanos) );
+                }
+            }
+        }
+
+        selector.wakeup();
+    }
+
+
+
+    private void coalesce(DronePacket packet, float confidence, long speechEndNanos)
+    {   // one more recognition of an already pending command
+        ++packet.repeatCount;
+        packet.confidence = Math.max(packet.confidence, confidence);
+        packet.speechEndNanos = speechEndNanos; // latency is measured from the latest utterance
+        ++coalescedCount;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   RUN LOOP                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    @Override
+    public void run()
+    {
+        SelectionKey key = channel.keyFor(selector);
+        DronePacket current = null; // packet the channel refused to take so far
+
+        while (runningState)
+        {
+            try
+            {
+                // send as much as the socket takes
+                while ( true )
+                {
+                    current = preempt(current);
+                    if ( current == null )
+                        current = nextPacket();
+                    if ( current == null )
+                        break; // nothing left
+                    if ( !send(current) )
+                        break; // socket's send buffer is full, wait for OP_WRITE
+                    current = null;
+                }
+
+                // sleep until dispatch() or the socket wakes us up
+                key.interestOps( current == null ? 0 : SelectionKey.OP_WRITE );
+                selector.select();
+                selector.selectedKeys().clear();
+            }
+            catch (IOException e)
+            {   // eg: PortUnreachableException, nobody listening on the drone's side (yet)
+                e.printStackTrace();
+                ++failedCount;
+                current = null;
+            }
+        }
+    }
+
+
+
+    private DronePacket nextPacket()
+    {   // emergency first, then commands in their recognition order, null if there's none
+        synchronized (pending)
+        {
+            if ( pendingEmergency != null )
+            {
+                DronePacket packet = pendingEmergency;
+                pendingEmergency = null;
+                return packet;
+            }
+
+            DronePacket packet = pending.pollFirst();
+            while ( packet != null && isRepeatOfLastSent(packet) )
+            {   // same order again right after the previous one, tell the drone nothing new
+                coalescedCount += packet.repeatCount;
+                packet = pending.pollFirst();
+            }
+            return packet;
+        }
+    }
+
+
+
+    private DronePacket preempt(DronePacket current)
+    {   // a packet stuck waiting for the socket gives way to an emergency, which supersedes it
+        synchronized (pending)
+        {
+            if ( current == null || current.emergency || pendingEmergency == null )
+                return current;
+            ++supersededCount;
+            return null;
+        }
+    }
+
+
+
+    private boolean isRepeatOfLastSent(DronePacket packet)
+    {
+        return !packet.emergency && lastSent != null && lastSent.command.equals(packet.command)
+               && packet.speechEndNanos - lastSent.speechEndNanos < coalesceWindowNanos;
+    }
+
+
+
+    private boolean send(DronePacket packet) throws IOException
+    {   // false if the channel has no room for it right now
+        packet.sequence = nextSequence;
+        packet.sendNanos = System.nanoTime();
+
+        sendBuffer.clear();
+        packet.writeTo(sendBuffer);
+        sendBuffer.flip();
+        if ( channel.write(sendBuffer) == 0 )
+            return false;
+
+        ++nextSequence;
+        lastSent = packet;
+        PipelineLatency.recordSince(PipelineLatency.Stage.DISPATCH, packet.speechEndNanos);
+        return true;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   ACCESSORS                     *
+     *                                                 *
+     ***************************************************/
+
+
+
+    int getSentCount()
+    { return nextSequence; }
+
+    long getCoalescedCount()
+    { return coalescedCount; }
+
+    long getSupersededCount()
+    { return supersededCount; }
+
+    long getFailedCount()
+    { return failedCount; }
+}
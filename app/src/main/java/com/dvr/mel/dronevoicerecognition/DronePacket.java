@@ -0,0 +1,129 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/**************************************************************************************************
+ *  DronePacket in a nutshell:                                                                    *
+ *      _ one recognized command, as sent to the drone by DroneCommandDispatcher : a single UDP   *
+ *        datagram, big-endian (network order), fixed header then the command's name              *
+ *      _ layout :                                                                                *
+ *            int    MAGIC ("DVRC")          byte   VERSION          byte   flags (EMERGENCY)     *
+ *            int    sequence                short  commandIndex     short  repeatCount           *
+ *            float  confidence              long   speechEndNanos   long   sendNanos             *
+ *            byte   name's length           byte[] name (UTF-8)                                  *
+ *      _ speechEndNanos / sendNanos are System.nanoTime() values of the sender, only comparable  *
+ *        with timestamps taken on the same device (eg: LoopbackDrone)                            *
+ *************************************************************************************************/
+
+
+
+
+class DronePacket
+{
+    /***************************************************
+     *                                                 *
+     *                    FORMAT                       *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static final int MAGIC = 0x44565243; // "DVRC"
+    static final byte VERSION = 1;
+    static final byte FLAG_EMERGENCY = 0x01;
+    static final int HEADER_SIZE = 4 + 1 + 1 + 4 + 2 + 2 + 4 + 8 + 8 + 1;
+    static final int MAX_NAME_SIZE = 255;
+    static final int MAX_SIZE = HEADER_SIZE + MAX_NAME_SIZE;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+
+
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    final String command;
+    final int commandIndex; // VocabularyRegistry ID, VocabularyRegistry.UNKNOWN if unknown
+    final boolean emergency;
+    float confidence; // best confidence among the coalesced recognitions
+    long speechEndNanos; // capture time of the last sample of the (latest) utterance
+    int repeatCount = 1; // how many recognitions were coalesced into this packet
+    int sequence; // set by the dispatcher when sent
+    long sendNanos; // set by the dispatcher when sent
+
+
+
+    DronePacket(String command_, int commandIndex_, boolean emergency_, float confidence_, long speechEndNanos_)
+    {
+        command = command_;
+        commandIndex = commandIndex_;
+        emergency = emergency_;
+        confidence = confidence_;
+        speechEndNanos = speechEndNanos_;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *              ENCODING / DECODING                *
+     *                                                 *
+     ***************************************************/
+
+
+
+    void writeTo(ByteBuffer out)
+    {   // out must have MAX_SIZE bytes remaining
+        byte[] name = command.getBytes(UTF8);
+        int nameSize = Math.min(name.length, MAX_NAME_SIZE);
+
+        out.order(ByteOrder.BIG_ENDIAN);
+        out.putInt(MAGIC);
+        out.put(VERSION);
+        out.put( emergency ? FLAG_EMERGENCY : 0 );
+        out.putInt(sequence);
+        out.putShort( (short) commandIndex );
+        out.putShort( (short) Math.min(repeatCount, Short.MAX_VALUE) );
+        out.putFloat(confidence);
+        out.putLong(speechEndNanos);
+        out.putLong(sendNanos);
+        out.put( (byte) nameSize );
+        out.put(name, 0, nameSize);
+    }
+
+
+
+    static DronePacket readFrom(ByteBuffer in)
+    {   // null if in doesn't hold a valid packet
+        in.order(ByteOrder.BIG_ENDIAN);
+        if ( in.remaining() < HEADER_SIZE || in.getInt() != MAGIC || in.get() != VERSION )
+            return null;
+
+        boolean emergency = (in.get() & FLAG_EMERGENCY) != 0;
+        int sequence = in.getInt();
+        int commandIndex = in.getShort();
+        int repeatCount = in.getShort();
+        float confidence = in.getFloat();
+        long speechEndNanos = in.getLong();
+        long sendNanos = in.getLong();
+        int nameSize = in.get() & 0xFF;
+        if ( in.remaining() < nameSize )
+            return null;
+        byte[] name = new byte[nameSize];
+        in.get(name);
+
+        DronePacket packet = new DronePacket( new String(name, UTF8), commandIndex, emergency, confidence,
+                                              speechEndNanos );
+        packet.sequence = sequence;
+        packet.repeatCount = repeatCount;
+        packet.sendNanos = sendNanos;
+        return packet;
+    }
+}
@@ -0,0 +1,241 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import java.util.Arrays;
+
+/**************************************************************************************************
+ *  DtwEngine in a nutshell:                                                                      *
+ *      _ Dynamic Time Warping distance between two FeatureMatrix, same recurrence and step       *
+ *        weights as native dtw() :                                                               *
+ *            g(i,j) = min( g(i-1,j) + W0*d(i,j), g(i-1,j-1) + W1*d(i,j), g(i,j-1) + W2*d(i,j) )  *
+ *        d being the squared euclidean distance between two frames, result is g(I,J) / (I+J)     *
+ *      _ works straight on FeatureMatrix's flat float[], with two rolling rows instead of the    *
+ *        whole I*J cost matrix, rows are reused from one call to the next                        *
+ *      _ optional Sakoe-Chiba band : only cells within bandRadius frames of the diagonal         *
+ *        (i*J/I) are computed, radius being widened if needed so (I,J) stays reachable           *
+ *      _ early abandoning : every warping path goes through every row, so as soon as a whole     *
+ *        row is above the given threshold the template can't win and the call gives up           *
+ *                                                                                                *
+ *  Differences with native dtw() :                                                               *
+ *      _ every frame of both matrices is used (native starts at g(0,0) on frame 0 and never      *
+ *        reaches the last frames), and the "-1" after the normalization is dropped, neither      *
+ *        changes which template is the closest one                                               *
+ *                                                                                                *
+ *  Limitations: _ not thread safe, rows are shared between calls, use one DtwEngine per thread   *
+ *************************************************************************************************/
+
+
+
+
+class DtwEngine
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    /**** Step weights, same as native dtw() ****/
+    static final float W0 = 1; // vertical step, (i-1,j) -> (i,j)
+    static final float W1 = 1; // diagonal step, (i-1,j-1) -> (i,j)
+    static final float W2 = 2; // horizontal step, (i,j-1) -> (i,j)
+
+    static final int NO_BAND = -1;
+    static final float NO_THRESHOLD = Float.POSITIVE_INFINITY;
+    private static final float INF = Float.POSITIVE_INFINITY;
+
+    /**** Settings ****/
+    private final int bandRadius; // NO_BAND <=> full matrix
+
+    /**** Rolling rows, grown on demand then reused ****/
+    private float[] previousRow = new float[0];
+    private float[] currentRow = new float[0];
+    private int previousLow, previousHigh; // range of previousRow holding values, everything else is INF
+    private int currentLow, currentHigh; // same for currentRow, as left by the row before previousRow
+
+    /**** Statistics ****/
+    private long cellsComputed = 0;
+    private long abandonedCount = 0;
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  CONSTRUCTORS                   *
+     *                                                 *
+     ***************************************************/
+
+
+
+    DtwEngine()
+    {
+        this(NO_BAND);
+    }
+
+
+
+    DtwEngine(int bandRadius_)
+    {
+        bandRadius = bandRadius_;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   ROUTINES                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    float distance(FeatureMatrix reference, FeatureMatrix hypothesis)
+    {
+        return distance(reference, hypothesis, NO_THRESHOLD);
+    }
+
+
+
+    float distance(FeatureMatrix reference, FeatureMatrix hypothesis, float threshold)
+    {   // normalized distance, or Float.POSITIVE_INFINITY if it would be above threshold
+        if ( reference.dim != hypothesis.dim )
+            throw new IllegalArgumentException("Can't compare " + reference.dim + " and "
+                                               + hypothesis.dim + " coefficients frames");
+
+        return distance( reference.data, reference.nbFrames, hypothesis.data, hypothesis.nbFrames,
+                         reference.dim, threshold );
+    }
+
+
+
+    float distance(float[] reference, int I, float[] hypothesis, int J, int dim, float threshold)
+    {   // reference and hypothesis are frame-major, I and J frames of dim coefficients
+        if ( I == 0 || J == 0 )
+            return INF;
+
+        ensureCapacity(J+1);
+        float rawThreshold = threshold * (I+J); // compare rows against g directly, no division per row
+
+        // row 0 : only g(0,0) = 0 is reachable
+        Arrays.fill(previousRow, 0, J+1, INF);
+        previousRow[0] = 0;
+        previousLow = 0;
+        previousHigh = 0;
+        Arrays.fill(currentRow, 0, J+1, INF);
+        currentLow = 0;
+        currentHigh = -1;
+
+        int radius = effectiveRadius(I, J, bandRadius);
+        for ( int i=1; i<=I; ++i )
+        {
+            int low = bandLow(i, I, J, radius);
+            int high = bandHigh(i, I, J, radius);
+
+            // currentRow still holds row i-2, reset its cells to INF
+            if ( currentHigh >= currentLow )
+                Arrays.fill(currentRow, currentLow, currentHigh+1, INF);
+
+            int refOffset = (i-1)*dim;
+            float rowMinimum = INF;
+            float left = INF; // g(i, low-1), outside the band
+            for ( int j=low; j<=high; ++j )
+            {
+                int hypOffset = (j-1)*dim;
+                float d = 0;
+                for ( int k=0; k<dim; ++k )
+                {
+                    float diff = reference[refOffset+k] - hypothesis[hypOffset+k];
+                    d += diff*diff;
+                }
+
+                float g = Math.min( previousRow[j] + W0*d, previousRow[j-1] + W1*d );
+                g = Math.min( g, left + W2*d );
+                currentRow[j] = g;
+                left = g;
+                if ( g < rowMinimum )
+                    rowMinimum = g;
+            }
+            cellsComputed += high-low+1;
+
+            // swap rows
+            float[] tmp = previousRow; previousRow = currentRow; currentRow = tmp;
+            currentLow = previousLow; currentHigh = previousHigh;
+            previousLow = low; previousHigh = high;
+
+            if ( rowMinimum > rawThreshold )
+            {   // no path can come back under the threshold, costs only grow
+                ++abandonedCount;
+                return INF;
+            }
+        }
+
+        float result = previousRow[J] / (I+J);
+        return result > threshold ? INF : result;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  BAND ROUTINES                  *
+     *                                                 *
+     ***************************************************/
+    // shared with anything needing the exact same band (lower bounds, envelopes, ...)
+    // rows i in [1, I], columns j in [1, J], both 1-based as in the cost matrix
+
+
+
+    static int effectiveRadius(int I, int J, int bandRadius)
+    {   // row i's band has to overlap row i-1's one, which requires radius >= J/I
+        if ( bandRadius < 0 )
+            return Math.max(I, J);
+        return Math.max( bandRadius, (J+I-1)/I );
+    }
+
+
+
+    static int bandLow(int i, int I, int J, int radius)
+    {
+        return (int) Math.max( 1, (long) i*J/I - radius );
+    }
+
+
+
+    static int bandHigh(int i, int I, int J, int radius)
+    {
+        return (int) Math.min( J, (long) i*J/I + radius );
+    }
+
+
+
+    int getBandRadius()
+    {
+        return bandRadius;
+    }
+
+
+
+    long getCellsComputed()
+    {
+        return cellsComputed;
+    }
+
+
+
+    long getAbandonedCount()
+    {
+        return abandonedCount;
+    }
+
+
+
+    private void ensureCapacity(int length)
+    {
+        if ( previousRow.length < length )
+        {
+            previousRow = new float[length];
+            currentRow = new float[length];
+        }
+    }
+}
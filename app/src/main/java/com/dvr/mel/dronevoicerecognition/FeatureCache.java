@@ -0,0 +1,268 @@
+package com.dvr.mel.dronevoicerecognition;
+
+// NIO imports
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**************************************************************************************************
+ *  FeatureCache in a nutshell:                                                                   *
+ *      _ keep every command's MFCC of one corpus in a single binary file, right beside the       *
+ *        corpus's directory : [corpusGlobalDir]/[corpusName].features                            *
+ *      _ the file is memory-mapped when loaded, each matrix being bulk copied from the mapping   *
+ *      _ an entry is only trusted if its Wav file still has the same size and last modification  *
+ *        date, and if the extractor's parameters didn't change (StreamingMfccExtractor's hash),  *
+ *        otherwise the Wav file is read again (WavFileReader) and its features recomputed        *
+ *      _ nothing is written until save(), and only if something changed                          *
+ *                                                                                                *
+ *  File layout (LITTLE_ENDIAN) :                                                                 *
+ *      header : MAGIC, FORMAT_VERSION, parameter hash, entry count                     (4 ints)  *
+ *      entry  : name length (short), name (UTF-8), Wav size (long), Wav last modified (long),    *
+ *               nbFrames (int), dim (int), nbFrames*dim coefficients (float)                     *
+ *                                                                                                *
+ *  Limitations: _ not thread safe, one FeatureCache per corpus and per thread                    *
+ *************************************************************************************************/
+
+
+
+
+class FeatureCache
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static final String EXTENSION = ".features";
+    private static final int MAGIC = 0x4D464343; // "MFCC"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private final File cacheFile;
+    private final StreamingMfccExtractor extractor; // used for stale or missing entries
+    private final Map<String, Entry> entries = new LinkedHashMap<>(); // Wav file name -> entry
+    private boolean dirty = false; // entries differ from cacheFile's content
+
+    /**** Statistics ****/
+    private int hitCount = 0;
+    private int missCount = 0;
+
+
+
+    private static class Entry
+    {
+        final long wavSize;
+        final long wavLastModified;
+        final FeatureMatrix features;
+
+        Entry(long wavSize_, long wavLastModified_, FeatureMatrix features_)
+        {
+            wavSize = wavSize_;
+            wavLastModified = wavLastModified_;
+            features = features_;
+        }
+
+        boolean isValidFor(File wav)
+        {
+            return wav.length() == wavSize && wav.lastModified() == wavLastModified;
+        }
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  CONSTRUCTOR                    *
+     *                                                 *
+     ***************************************************/
+
+
+
+    FeatureCache(File cacheFile_, StreamingMfccExtractor extractor_)
+    {   // load cacheFile if it exists, an unreadable one is just ignored and rewritten on save()
+        cacheFile = cacheFile_;
+        extractor = extractor_;
+
+        try { load(); }
+        catch (FileNotFoundException e) { /* nothing cached yet */ }
+        catch (IOException | RuntimeException e)
+        {   // truncated or corrupted file
+            e.printStackTrace();
+            entries.clear();
+            dirty = true;
+        }
+    }
+
+
+
+    static File cacheFileOf(File corpusGlobalDir, String corpusName)
+    {
+        return new File(corpusGlobalDir, corpusName + EXTENSION);
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   ROUTINES                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    FeatureMatrix get(File wav) throws IOException
+    {   // wav's features, from the cache if they are still valid, computed (and cached) otherwise
+        Entry entry = entries.get(wav.getName());
+        if ( entry != null && entry.isValidFor(wav) )
+        {
+            ++hitCount;
+            return entry.features;
+        }
+
+        ++missCount;
+        WavFileReader reader = new WavFileReader(wav);
+        if ( reader.sampleRate != extractor.sampleRate || reader.nbrOfChannel != 1 )
+            throw new WavFormatException(wav, "expected mono " + extractor.sampleRate + " Hz, got "
+                                              + reader.nbrOfChannel + " channel(s) at " + reader.sampleRate + " Hz");
+        short[] samples = reader.readSamples();
+        FeatureMatrix features = extractor.extract(samples, 0, samples.length);
+        put(wav, features);
+        return features;
+    }
+
+
+
+    FeatureMatrix[] get(File corpusDir, List<String> commands)
+    {   // every command of a corpus, in commands' order, null for missing or unreadable recordings
+        FeatureMatrix[] features = new FeatureMatrix[commands.size()];
+        for ( int i=0; i<features.length; ++i )
+        {
+            File wav = new File(corpusDir, commands.get(i) + ".wav");
+            if ( !wav.exists() )
+                continue;
+            try { features[i] = get(wav); }
+            catch (IOException e) { e.printStackTrace(); }
+        }
+        return features;
+    }
+
+
+
+    void put(File wav, FeatureMatrix features)
+    {   // wav has to be complete (closed) already, its size and date are the entry's key
+        entries.put( wav.getName(), new Entry(wav.length(), wav.lastModified(), features) );
+        dirty = true;
+    }
+
+
+
+    static FeatureMatrix[][] loadCorpora(File corpusGlobalDir, Collection<String> corpora,
+                                         List<String> commands, StreamingMfccExtractor extractor)
+    {   // features of several corpora ( [corpus][command] ), saving back every cache that changed
+        // a corpus recorded as a CorpusContainer is read from it, its features being stored inside
+        FeatureMatrix[][] features = new FeatureMatrix[corpora.size()][];
+        int i = 0;
+        for ( String corpusName : corpora )
+        {
+            File containerFile = CorpusContainer.fileOf(corpusGlobalDir, corpusName);
+            if ( containerFile.exists() )
+            {
+                try { features[i] = CorpusContainer.loadFeatures(containerFile, commands, extractor); }
+                catch (IOException e)
+                {
+                    e.printStackTrace();
+                    features[i] = new FeatureMatrix[commands.size()];
+                }
+                ++i;
+                continue;
+            }
+
+            FeatureCache cache = new FeatureCache( cacheFileOf(corpusGlobalDir, corpusName), extractor );
+            features[i++] = cache.get( new File(corpusGlobalDir, corpusName), commands );
+            try { cache.save(); }
+            catch (IOException e) { e.printStackTrace(); }
+        }
+        return features;
+    }
+
+
+
+    int getHitCount()
+    {
+        return hitCount;
+    }
+
+
+
+    int getMissCount()
+    {
+        return missCount;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  FILE ROUTINES                  *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private void load() throws IOException
+    {
+        MappedByteBuffer mapping = FeatureMatrixIO.map(cacheFile);
+        if ( mapping.limit() < HEADER_SIZE || mapping.getInt() != MAGIC || mapping.getInt() != FORMAT_VERSION )
+            throw new IOException(cacheFile + " isn't a feature cache file");
+        if ( mapping.getInt() != extractor.getParameterHash() )
+        {   // computed with other parameters, every entry is stale
+            dirty = true;
+            return;
+        }
+
+        int nbEntries = mapping.getInt();
+        for ( int e=0; e<nbEntries; ++e )
+        {
+            String name = FeatureMatrixIO.getString(mapping);
+            long wavSize = mapping.getLong();
+            long wavLastModified = mapping.getLong();
+            entries.put( name, new Entry(wavSize, wavLastModified, FeatureMatrixIO.getMatrix(mapping)) );
+        }
+    }
+
+
+
+    void save() throws IOException
+    {   // write every entry to a temporary file, then rename it over cacheFile (FeatureMatrixIO.replace())
+        if ( !dirty )
+            return;
+
+        int size = HEADER_SIZE;
+        for ( Map.Entry<String, Entry> e : entries.entrySet() )
+            size += FeatureMatrixIO.sizeOf(e.getKey()) + 8 + 8 + FeatureMatrixIO.sizeOf(e.getValue().features);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(extractor.getParameterHash()).putInt(entries.size());
+        for ( Map.Entry<String, Entry> e : entries.entrySet() )
+        {
+            FeatureMatrixIO.putString(buffer, e.getKey());
+            buffer.putLong(e.getValue().wavSize).putLong(e.getValue().wavLastModified);
+            FeatureMatrixIO.putMatrix(buffer, e.getValue().features);
+        }
+        buffer.flip();
+
+        FeatureMatrixIO.replace(cacheFile, buffer);
+
+        dirty = false;
+    }
+}
@@ -0,0 +1,33 @@
+package com.dvr.mel.dronevoicerecognition;
+
+/**************************************************************************************************
+ *  FeatureMatrix in a nutshell:                                                                  *
+ *      _ cepstral coefficients of one utterance, as a flat primitive float[]                     *
+ *      _ frame-major layout : coefficient c of frame f <=> data[f*dim + c]                       *
+ *      _ immutable once built, so it can be shared between threads without any lock             *
+ *************************************************************************************************/
+
+
+
+
+class FeatureMatrix
+{
+    final float[] data; // nbFrames*dim coefficients
+    final int nbFrames; // number of analysed frames
+    final int dim; // number of coefficients per frame
+
+    FeatureMatrix(float[] data_, int nbFrames_, int dim_)
+    {
+        if ( data_.length < nbFrames_*dim_ )
+            throw new IllegalArgumentException("FeatureMatrix needs " + nbFrames_*dim_ + " values, got " + data_.length);
+
+        data = data_;
+        nbFrames = nbFrames_;
+        dim = dim_;
+    }
+
+    float get(int frame, int coefficient)
+    {
+        return data[frame*dim + coefficient];
+    }
+}
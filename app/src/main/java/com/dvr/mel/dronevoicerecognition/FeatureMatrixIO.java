@@ -0,0 +1,158 @@
+package com.dvr.mel.dronevoicerecognition;
+
+// NIO imports
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**************************************************************************************************
+ *  FeatureMatrixIO in a nutshell:                                                                *
+ *      _ binary routines shared by the files holding FeatureMatrix : FeatureCache, CentroidStore *
+ *        and CorpusContainer's feature section                                                   *
+ *      _ map() : the whole file, read-only and LITTLE_ENDIAN, bulk copied from afterwards        *
+ *      _ getMatrix() / putMatrix() : nbFrames (int), dim (int), then the nbFrames*dim            *
+ *        coefficients (float)                                                                    *
+ *      _ getString() / putString() : length (short), UTF-8 bytes                                 *
+ *      _ replace() : write a file's new content to a temporary file beside it, then rename it    *
+ *        over the file : a reader never sees it half written                                     *
+ *                                                                                                *
+ *  Free of any android.* import, as the command line tools use it too.                           *
+ *************************************************************************************************/
+
+
+
+
+final class FeatureMatrixIO
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+
+
+    private FeatureMatrixIO()
+    {
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                 MATRIX ROUTINES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static FeatureMatrix getMatrix(ByteBuffer buffer)
+    {   // reads a matrix at buffer's position and moves past it
+        int nbFrames = buffer.getInt();
+        int dim = buffer.getInt();
+        float[] data = new float[nbFrames*dim];
+        buffer.asFloatBuffer().get(data); // the view starts at buffer's position
+        buffer.position( buffer.position() + data.length*4 );
+        return new FeatureMatrix(data, nbFrames, dim);
+    }
+
+
+
+    static void putMatrix(ByteBuffer buffer, FeatureMatrix matrix)
+    {
+        int length = matrix.nbFrames*matrix.dim;
+        buffer.putInt(matrix.nbFrames).putInt(matrix.dim);
+        buffer.asFloatBuffer().put(matrix.data, 0, length);
+        buffer.position( buffer.position() + length*4 );
+    }
+
+
+
+    static int sizeOf(FeatureMatrix matrix)
+    {   // bytes written by putMatrix()
+        return 4 + 4 + matrix.nbFrames*matrix.dim*4;
+    }
+
+
+
+    static String getString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+
+
+    static void putString(ByteBuffer buffer, String s)
+    {
+        byte[] bytes = s.getBytes(UTF8);
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+
+
+    static int sizeOf(String s)
+    {   // bytes written by putString()
+        return 2 + s.getBytes(UTF8).length;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  FILE ROUTINES                  *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static MappedByteBuffer map(File file) throws IOException
+    {   // the mapping stays valid once the channel is closed
+        MappedByteBuffer mapping;
+        try ( RandomAccessFile input = new RandomAccessFile(file, "r");
+              FileChannel channel = input.getChannel() )
+        {
+            if ( channel.size() > Integer.MAX_VALUE )
+                throw new IOException(file + " is too big to be mapped");
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        mapping.order(ByteOrder.LITTLE_ENDIAN);
+        return mapping;
+    }
+
+
+
+    static void replace(File file, ByteBuffer... contents) throws IOException
+    {   // contents, one after the other, become file's content. Each rewrite gets its own temporary
+        // file, concurrent ones each rename a complete file
+        File temporary = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try ( RandomAccessFile output = new RandomAccessFile(temporary, "rw");
+              FileChannel channel = output.getChannel() )
+        {
+            for ( ByteBuffer content : contents )
+                while ( content.hasRemaining() )
+                    channel.write(content);
+        }
+        catch (IOException e)
+        {
+            temporary.delete();
+            throw e;
+        }
+
+        if ( !temporary.renameTo(file) )
+        {
+            temporary.delete();
+            throw new IOException("Couldn't replace " + file);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.dvr.mel.dronevoicerecognition;
+
+/**************************************************************************************************
+ *  Fft in a nutshell:                                                                            *
+ *      _ in-place iterative radix-2 complex FFT, size being a power of two                       *
+ *      _ twiddle factors and bit-reversal permutation computed once in the constructor,          *
+ *        transform() itself never allocates                                                      *
+ *      _ powerSpectrum() : |X[k]|^2 of a real frame, for k in [0, size/2]                        *
+ *************************************************************************************************/
+
+
+
+
+class Fft
+{
+    private final int size;
+    private final float[] cosTable; // cos(2*pi*k/size), k in [0, size/2[
+    private final float[] sinTable; // sin(2*pi*k/size), k in [0, size/2[
+    private final int[] bitReversed; // bit-reversal permutation of [0, size[
+
+    /**** Scratch buffers used by powerSpectrum() ****/
+    private final float[] re;
+    private final float[] im;
+
+
+
+    Fft(int size_)
+    {
+        if ( size_ < 2 || Integer.bitCount(size_) != 1 )
+            throw new IllegalArgumentException("Fft size has to be a power of two, got " + size_);
+
+        size = size_;
+        cosTable = new float[size/2];
+        sinTable = new float[size/2];
+        for ( int k=0; k<size/2; ++k )
+        {
+            double angle = 2*Math.PI*k/size;
+            cosTable[k] = (float) Math.cos(angle);
+            sinTable[k] = (float) Math.sin(angle);
+        }
+
+        int levels = Integer.numberOfTrailingZeros(size);
+        bitReversed = new int[size];
+        for ( int i=0; i<size; ++i )
+            bitReversed[i] = Integer.reverse(i) >>> (32-levels);
+
+        re = new float[size];
+        im = new float[size];
+    }
+
+
+
+    int size()
+    {
+        return size;
+    }
+
+
+
+    void transform(float[] real, float[] imag)
+    {   // forward transform, in place
+        for ( int i=0; i<size; ++i )
+        {
+            int j = bitReversed[i];
+            if ( j > i )
+            {
+                float tmp = real[i]; real[i] = real[j]; real[j] = tmp;
+                tmp = imag[i]; imag[i] = imag[j]; imag[j] = tmp;
+            }
+        }
+
+        for ( int half=1; half<size; half<<=1 )
+        {
+            int tableStep = size/(half*2);
+            for ( int start=0; start<size; start+=half*2 )
+            {
+                for ( int k=0; k<half; ++k )
+                {
+                    float wr = cosTable[k*tableStep];
+                    float wi = -sinTable[k*tableStep];
+                    int a = start+k;
+                    int b = a+half;
+                    float tr = real[b]*wr - imag[b]*wi;
+                    float ti = real[b]*wi + imag[b]*wr;
+                    real[b] = real[a]-tr;
+                    imag[b] = imag[a]-ti;
+                    real[a] += tr;
+                    imag[a] += ti;
+                }
+            }
+        }
+    }
+
+
+
+    void powerSpectrum(float[] frame, float[] power)
+    {   // frame : size real samples (left untouched), power : at least size/2+1 values
+        System.arraycopy(frame, 0, re, 0, size);
+        for ( int i=0; i<size; ++i )
+            im[i] = 0;
+
+        transform(re, im);
+
+        for ( int k=0; k<=size/2; ++k )
+            power[k] = re[k]*re[k] + im[k]*im[k];
+    }
+}
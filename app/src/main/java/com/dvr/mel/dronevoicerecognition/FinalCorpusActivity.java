@@ -5,14 +5,27 @@ import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.View;
+import android.widget.ProgressBar;
 import android.widget.TextView;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class FinalCorpusActivity extends AppCompatActivity {
     public Bundle b;
 
+    // the recognition runs there, one reference after the other, so the UI thread never waits for it
+    // the new corpus's features are loaded once per run (from its container), for every reference
+    private final ExecutorService recognitionExecutor = Executors.newSingleThreadExecutor();
+    private Future<?> recognitionTask;
+    private volatile boolean recognitionCancelled = false;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -39,17 +52,121 @@ public class FinalCorpusActivity extends AppCompatActivity {
             AppInfo.referencesCorpora.add(b.getString("name"));
             AppInfo.addCorpus(b.getString("name"), (Corpus) b.getSerializable("corpus"));
 
-            AppInfo.saveToSerializedFile();
+            AppInfoStore.save();
         }
 
         // yes - run the recognition code true all the references and display the success percent
+        // in background, the rate being updated as each reference completes
         else {
-            float percent = computeRecognitionRatio(
-                AppInfo.corpusGlobalDir.getAbsolutePath(),
-                new ArrayList<String>(AppInfo.referencesCorpora),
-                b.getString("name"));
+            middleLabel.setText("");
+            recognitionTask = recognitionExecutor.submit(new RecognitionRun(
+                    AppInfo.corpusGlobalDir,
+                    new ArrayList<>(AppInfo.referencesCorpora),
+                    corpusName));
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        cancelRecognition();
+        super.onDestroy();
+    }
+
+    /**
+     * Stops the recognition between two references, the one being computed can't be interrupted.
+     */
+    private void cancelRecognition() {
+        recognitionCancelled = true;
+        if (recognitionTask != null)
+            recognitionTask.cancel(false);
+        recognitionExecutor.shutdown();
+    }
+
+    /**
+     * Compares the new corpus with every reference, one after the other, posting the progress and
+     * the recognition rate of the references done so far to the UI thread.
+     * Features come from FeatureCache.loadCorpora(), which reads the corpora recorded as a
+     * CorpusContainer as well as the ones made of Wav files, and the DTW runs on a
+     * RecognitionExecutor spread over every core. A failure is shown in the labels, the progress
+     * bar being hidden either way.
+     */
+    private class RecognitionRun implements Runnable {
+        private final File corpusGlobalDir;
+        private final List<String> references;
+        private final String hypothese;
+
+        RecognitionRun(File corpusGlobalDir, List<String> references, String hypothese) {
+            this.corpusGlobalDir = corpusGlobalDir;
+            this.references = references;
+            this.hypothese = hypothese;
+        }
 
-            middleLabel.setText(Float.toString(percent));
+        @Override
+        public void run() {
+            try {
+                recognize();
+            } catch (RuntimeException e) {
+                // nobody reads the task's Future : report the failure here, e.g. features of another
+                // dimension than the references' (DtwEngine)
+                e.printStackTrace();
+                postProgress("échec de la reconnaissance : " + e.getMessage(), "erreur");
+            } finally {
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        ProgressBar progressBar = (ProgressBar) findViewById(R.id.progressBar);
+                        progressBar.setVisibility(View.INVISIBLE);
+                    }
+                });
+            }
+        }
+
+        /** Scores the hypothesis against every reference, posting the rate after each one. */
+        private void recognize() {
+            VocabularyRegistry vocabulary = VocabularyRegistry.ofAppInfo();
+            ConfusionMatrix confusion = vocabulary.newConfusionMatrix();
+            StreamingMfccExtractor extractor = new StreamingMfccExtractor(AppInfo.SAMPLE_RATE);
+
+            if (recognitionCancelled)
+                return;
+            postProgress("paramétrisation de " + hypothese, null);
+            FeatureMatrix[] hypothesis = FeatureCache.loadCorpora(corpusGlobalDir,
+                    Collections.singletonList(hypothese), vocabulary.getCommands(), extractor)[0];
+
+            RecognitionExecutor dtwExecutor = new RecognitionExecutor(
+                    Runtime.getRuntime().availableProcessors(), AppInfo.DTW_BAND_RADIUS);
+            try {
+                for (int r = 0; r < references.size(); r++) {
+                    if (recognitionCancelled)
+                        return;
+                    postProgress(String.format(Locale.FRANCE, "référence %d/%d : %s",
+                            r + 1, references.size(), references.get(r)), null);
+
+                    // confusion matrix of this reference, vocabulary x vocabulary
+                    FeatureMatrix[][] reference = FeatureCache.loadCorpora(corpusGlobalDir,
+                            Collections.singletonList(references.get(r)), vocabulary.getCommands(), extractor);
+                    confusion.addAll(dtwExecutor.recognize(reference, hypothesis));
+
+                    float ratio = confusion.getRecognitionRate();
+                    postProgress(String.format(Locale.FRANCE, "%d/%d références", r + 1, references.size()),
+                            String.format(Locale.FRANCE, "%.0f%%", ratio * 100));
+                }
+            } finally {
+                dtwExecutor.shutdown();
+            }
+        }
+
+        private void postProgress(final String progress, final String rate) {
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (recognitionCancelled)
+                        return;
+                    updateProgressLabel(progress);
+                    if (rate != null)
+                        ((TextView) findViewById(R.id.labelRecognition)).setText(rate);
+                }
+            });
         }
     }
 
@@ -59,9 +176,10 @@ public class FinalCorpusActivity extends AppCompatActivity {
      * @param view
      */
     public void corpusFailHandler(View view) {
+        cancelRecognition();
         AppInfo.clean(b.getString("name"));
 
-        AppInfo.saveToSerializedFile();
+        AppInfoStore.save();
 
         startActivity(new Intent(this, ManageCorporaActivity.class));
     }
@@ -74,41 +192,22 @@ public class FinalCorpusActivity extends AppCompatActivity {
      * @param view
      */
     public void corpusPassHandler(View view) {
+        cancelRecognition();
         // Mettre à jours la class AppInfo.
         AppInfo.addCorpus(b.getString("name"), (Corpus) b.getSerializable("corpus"));
 
-        AppInfo.saveToSerializedFile();
+        AppInfoStore.save();
 
         startActivity(new Intent(this, ManageCorporaActivity.class));
     }
 
     /**
-     * Function called from C++ code to update the message under the progress bar. only design and
-     * aesthetic
+     * Update the message under the progress bar, called on the UI thread as the recognition goes.
+     * only design and aesthetic
      * @param newText
      */
     public void updateProgressLabel(String newText) {
         TextView progressLabel = (TextView) findViewById(R.id.progressLabel);
         progressLabel.setText(newText);
     }
-
-    /**
-     * Will calculate the recognition rate reached by the corpus newly created. The algorithme allow
-     * to use multiple references in order to improve the results.
-     * @param pathToSDCard
-     * @param references
-     * @param hypothese     The corpus recently created
-     * @return
-     */
-    public native float computeRecognitionRatio(String pathToSDCard, List<String> references, String hypothese);
-
-    /**
-     * Load the C++ library into the application.
-     * Allow the use of all functions which can be find in the .cpp files.
-     */
-    static {
-        System.loadLibrary("native-lib");
-    }
-
-
 }
@@ -0,0 +1,85 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.view.View;
+import android.widget.Button;
+import android.widget.TextView;
+
+import java.io.File;
+import java.io.IOException;
+
+
+/**************************************************************************************************
+ *  LatencyDebugActivity in a nutshell:                                                           *
+ *      _ debug screen of PipelineLatency : count, mean, p50, p90, p99 and max of every stage     *
+ *      _ refresh / reset the histograms, dump them to [baseDir]/latency.txt (adb pull-able)      *
+ **************************************************************************************************/
+
+public class LatencyDebugActivity extends AppCompatActivity
+{
+    static final String DUMP_FILE_NAME = "latency.txt";
+
+    /**** UI accessors variables ****/
+    TextView report_tv;
+    Button refresh_button;
+    Button reset_button;
+    Button dump_button;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState)
+    {
+        /**** Default minimal UI onCreate ****/
+        setTitle("Pipeline Latency");
+        super.onCreate(savedInstanceState);
+        if(getSupportActionBar() != null) getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        setContentView(R.layout.activity_latency_debug);
+
+
+        /**** Initialize buttons Accessors && actionListerner ****/
+        report_tv = (TextView) findViewById(R.id.latency_report);
+        refresh_button = (Button) findViewById(R.id.latency_refresh_button);
+        refresh_button.setOnClickListener(new View.OnClickListener()
+        {
+            @Override
+            public void onClick(View view)
+            { refresh(); }
+        });
+        reset_button = (Button) findViewById(R.id.latency_reset_button);
+        reset_button.setOnClickListener(new View.OnClickListener()
+        {
+            @Override
+            public void onClick(View view)
+            {
+                PipelineLatency.reset();
+                refresh();
+            }
+        });
+        dump_button = (Button) findViewById(R.id.latency_dump_button);
+        dump_button.setOnClickListener(new View.OnClickListener()
+        {
+            @Override
+            public void onClick(View view)
+            {
+                File dumpFile = new File(AppInfo.baseDir, DUMP_FILE_NAME);
+                try
+                {
+                    PipelineLatency.dumpTo(dumpFile);
+                    report_tv.append("\nSaved to " + dumpFile);
+                }
+                catch (IOException e)
+                {
+                    e.printStackTrace();
+                    report_tv.append("\nCouldn't write " + dumpFile);
+                }
+            }
+        });
+
+        refresh();
+    }
+
+    private void refresh()
+    {   // values in ms, histograms keep filling up in the background
+        report_tv.setText( PipelineLatency.report() );
+    }
+}
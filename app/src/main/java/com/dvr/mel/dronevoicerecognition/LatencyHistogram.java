@@ -0,0 +1,151 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**************************************************************************************************
+ *  LatencyHistogram in a nutshell:                                                               *
+ *      _ log-linear histogram of durations in nanoseconds : values are split by power of 2, each *
+ *        power of 2 being split into SUB_BUCKETS linear buckets => ~3% relative precision from   *
+ *        1 ns up to 2^MAX_EXPONENT ns (~18 min), bigger values land in the last bucket           *
+ *      _ every bucket is allocated at construction, record() never allocates nor locks : one     *
+ *        atomic increment, so any thread may record while another one reads percentiles          *
+ *      _ percentile() returns the upper bound of the bucket holding it (never above getMax())    *
+ *************************************************************************************************/
+
+
+
+
+class LatencyHistogram
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // linear buckets per power of 2
+    static final int MAX_EXPONENT = 40; // 2^40 ns ~ 18 min
+    static final int BUCKET_COUNT = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   RECORDING                     *
+     *                                                 *
+     ***************************************************/
+
+
+
+    void record(long nanos)
+    {
+        if ( nanos < 0 )
+            nanos = 0; // nanoTime() taken on different cores may go slightly backward
+
+        counts.incrementAndGet( bucketOf(nanos) );
+        totalCount.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+
+        long currentMax = max.get();
+        while ( nanos > currentMax && !max.compareAndSet(currentMax, nanos) )
+            currentMax = max.get();
+    }
+
+
+
+    void reset()
+    {   // not atomic as a whole, a concurrent record() may be half forgotten
+        for ( int i=0; i<BUCKET_COUNT; ++i )
+            counts.set(i, 0);
+        totalCount.set(0);
+        totalNanos.set(0);
+        max.set(0);
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                    READING                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    long getCount()
+    { return totalCount.get(); }
+
+    long getMax()
+    { return max.get(); }
+
+    long getMean()
+    {
+        long count = totalCount.get();
+        return count == 0 ? 0 : totalNanos.get() / count;
+    }
+
+
+
+    long percentile(double percent)
+    {   // smallest recorded value bound v such as percent % of the values are <= v, 0 if empty
+        long count = 0;
+        for ( int i=0; i<BUCKET_COUNT; ++i )
+            count += counts.get(i);
+        if ( count == 0 )
+            return 0;
+
+        long rank = Math.max( 1, (long) Math.ceil(percent / 100.0 * count) );
+        long cumulated = 0;
+        for ( int i=0; i<BUCKET_COUNT; ++i )
+        {
+            cumulated += counts.get(i);
+            if ( cumulated >= rank )
+                return Math.min( upperBoundOf(i), max.get() );
+        }
+        return max.get();
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                BUCKET INDEXING                  *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static int bucketOf(long nanos)
+    {
+        if ( nanos < SUB_BUCKETS )
+            return (int) nanos; // first power of 2s are linear, one bucket per ns
+
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos); // nanos in [2^exponent, 2^(exponent+1)[
+        if ( exponent > MAX_EXPONENT )
+            return BUCKET_COUNT - 1;
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (nanos >>> shift) - SUB_BUCKETS; // top SUB_BUCKET_BITS+1 bits, minus the leading 1
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+
+
+    static long upperBoundOf(int bucket)
+    {   // biggest value landing in bucket
+        if ( bucket < SUB_BUCKETS )
+            return bucket;
+
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
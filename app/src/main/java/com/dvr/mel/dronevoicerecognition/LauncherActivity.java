@@ -59,12 +59,10 @@ public class LauncherActivity extends AppCompatActivity {
         AppInfo.baseDir = cw.getDir("data", Context.MODE_PRIVATE);
         // <=> /DATA/DATA/com.dvr.mel.dronevoicerecognition/app_data   (yes it prefixes with "app_")
 
-        // check if the file corpusInfoSaved exist (serialized)
-        File appInfoSave = new File(AppInfo.baseDir, AppInfo.serializedFileName);
-
-        // it doesn't exist
-        if ( ! appInfoSave.exists() ) {
-            Log.e("launcher", "le fichier serialisé n'existe pas");
+        // load the saved AppInfo (migrating the old serialized file if needed)
+        // nothing saved yet
+        if ( ! AppInfoStore.load() ) {
+            Log.e("launcher", "aucune sauvegarde d'AppInfo");
 
             // let's create a sufolder for stocking all of our Corpora
             AppInfo.corpusGlobalDir = new File(AppInfo.baseDir, "Corpus");
@@ -83,12 +81,7 @@ public class LauncherActivity extends AppCompatActivity {
             AppInfo.commands.add("arretetoi");
 
             // save the file
-           AppInfo.saveToSerializedFile();
-        }
-
-        // it exist
-        else {
-            AppInfo.loadFromSerializedFile();
+           AppInfoStore.save();
         }
     }
 }
\ No newline at end of file
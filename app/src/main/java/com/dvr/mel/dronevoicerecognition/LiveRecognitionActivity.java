@@ -0,0 +1,281 @@
+package com.dvr.mel.dronevoicerecognition;
+
+// UI imports
+import android.media.AudioFormat;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
+import android.view.View;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+// Recognition imports
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Locale;
+
+
+
+/**************************************************************************************************
+ *  LiveRecognitionActivity in a nutshell:                                                        *
+ *      _ "Test Corpus" entry of the main menu : recognize commands live, straight from the mic   *
+ *        stream, against every reference corpus (AppInfo.referencesCorpora)                      *
+ *      _ reference features are loaded from their FeatureCache in background, then the mic is    *
+ *        started with a LiveRecognizer as its UtteranceHandler : no Wav file is ever written     *
+ *      _ display each recognized command with its confidence and its latency, measured from the  *
+ *        end of speech to the decision                                                           *
+ *      _ send each recognized command to the drone through a DroneCommandDispatcher, to a        *
+ *        LoopbackDrone if AppInfo.DRONE_HOST isn't set (end of speech to packet latency logged)  *
+ *                                                                                                *
+ *   Author : https://github.com/Aryetis                                                          *
+ **************************************************************************************************/
+
+
+
+public class LiveRecognitionActivity extends AppCompatActivity
+{
+    /***************************************************
+     *                                                 *
+     *             VARIABLES DECLARATION               *
+     *                                                 *
+     ***************************************************/
+
+    /**** Class variables ****/
+    MicWavRecorderHandler mic; // null until references are loaded
+    LiveRecognizer recognizer; // mic's UtteranceHandler
+    DroneCommandDispatcher dispatcher; // where recognized commands go, null if the socket couldn't be opened
+    LoopbackDrone loopbackDrone; // stand-in drone, null if AppInfo.DRONE_HOST is set
+    private volatile boolean destroyed = false; // loading thread may end after the Activity
+
+    /**** UI accessors variables ****/
+    TextView commandTv; // Display the last recognized command
+    TextView detailsTv; // Display its confidence, latency, etc
+    ProgressBar talkingIndicator; // Circle Display bar, indicate when the user is talking
+
+    private static final String TAG = "LiveRecognition";
+
+
+    /***************************************************
+     *                                                 *
+     *              ACTIVITY STATE MACHINE             *
+     *                    METHODS                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState)
+    {
+        /********* Standard minimalist UI Initialization *********/
+        setTitle("Live Recognition");
+        super.onCreate(savedInstanceState);
+        if(getSupportActionBar() != null) getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        setContentView(R.layout.activity_live_recognition);
+
+        // initialize UI accessors
+        commandTv = (TextView) findViewById(R.id.recognizedCommandTextView);
+        detailsTv = (TextView) findViewById(R.id.recognitionDetailsTextView);
+        talkingIndicator = (ProgressBar) findViewById(R.id.live_talk_indicator);
+        talkingIndicator.setVisibility(View.INVISIBLE);
+        /*********************************************************/
+
+        if ( AppInfo.referencesCorpora.isEmpty() )
+        {   // nothing to compare the user's voice with
+            commandTv.setText(R.string.no_reference_corpus);
+            return;
+        }
+
+        // Loading (or computing) every reference's features may take a while, keep it off the UI thread
+        commandTv.setText(R.string.loading_references);
+        new Thread(loadingRoutine).start();
+    }
+
+    @Override
+    protected void onDestroy()
+    {
+        destroyed = true;
+
+        // close (and kill threads) MicWavRecorderHandler and its subsidiary WavStreamHandler
+        if ( mic != null )
+            mic.close();
+        closeDrone();
+        if ( recognizer != null )
+            Log.i(TAG, String.format( Locale.US, "templates pruned by their lower bound : %.1f%%",
+                                      recognizer.getPruningRate() * 100 ));
+
+        // Calling default onDestroy()
+        super.onDestroy();
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *              RECOGNIZER SETUP                   *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private final Runnable loadingRoutine = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            // a few centroids per command, or every reference recording, both indexed by command ID
+            VocabularyRegistry vocabulary = VocabularyRegistry.ofAppInfo();
+            FeatureMatrix[][] references = AppInfo.CENTROIDS_PER_COMMAND > 0
+                    ? CentroidStore.loadCentroids( AppInfo.corpusGlobalDir, AppInfo.referencesCorpora, vocabulary,
+                            new StreamingMfccExtractor(AppInfo.SAMPLE_RATE), AppInfo.CENTROIDS_PER_COMMAND,
+                            AppInfo.DTW_BAND_RADIUS )
+                    : FeatureCache.loadCorpora( AppInfo.corpusGlobalDir, AppInfo.referencesCorpora, vocabulary.getCommands(),
+                            new StreamingMfccExtractor(AppInfo.SAMPLE_RATE) );
+            recognizer = new LiveRecognizer( vocabulary, references,
+                    AppInfo.LIVE_LATENCY_BUDGET_MS * 1000000L, AppInfo.DTW_BAND_RADIUS, AppInfo.COMMAND_SHORTLIST_SIZE,
+                    recognitionListener );
+            openDrone(); // sockets can't be opened from the UI thread
+            runOnUiThread(startMicRoutine);
+        }
+    };
+
+
+
+    private final Runnable startMicRoutine = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            if ( destroyed )
+            {   // user left while we were loading
+                closeDrone();
+                return;
+            }
+
+            try
+            {
+                mic = new MicWavRecorderHandler( AppInfo.SAMPLE_RATE, AudioFormat.CHANNEL_IN_MONO,
+                        AudioFormat.ENCODING_PCM_16BIT, recognizer);
+                        // same audioFormat as the recorded corpora : 16KHz, mono, 16 bits
+            }
+            catch (MicWavRecorderHandlerException e)
+            {
+                e.printStackTrace();
+                commandTv.setText(R.string.mic_unavailable);
+                return;
+            }
+            mic.start(); // start MicWavRecorder's thread
+
+            commandTv.setText(R.string.speak_a_command);
+            detailsTv.setText( String.format(Locale.US, "%d templates", recognizer.getTemplateCount()) );
+        }
+    };
+
+
+
+    private void openDrone()
+    {   // Open the dispatcher towards the drone, or towards a local stand-in
+        try
+        {
+            InetSocketAddress drone;
+            if ( AppInfo.DRONE_HOST == null )
+            {
+                loopbackDrone = new LoopbackDrone();
+                loopbackDrone.start();
+                drone = loopbackDrone.getAddress();
+            }
+            else
+                drone = new InetSocketAddress(AppInfo.DRONE_HOST, AppInfo.DRONE_PORT);
+
+            dispatcher = new DroneCommandDispatcher(drone, AppInfo.EMERGENCY_COMMAND);
+            dispatcher.start();
+        }
+        catch (IOException e)
+        {   // recognition still works, commands just go nowhere
+            e.printStackTrace();
+        }
+    }
+
+
+
+    private void closeDrone()
+    {
+        if ( dispatcher != null )
+        {
+            dispatcher.close();
+            Log.i(TAG, "dispatcher sent : " + dispatcher.getSentCount()
+                    + " coalesced : " + dispatcher.getCoalescedCount()
+                    + " superseded : " + dispatcher.getSupersededCount()
+                    + " failed : " + dispatcher.getFailedCount() );
+            dispatcher = null;
+        }
+
+        if ( loopbackDrone != null )
+        {
+            loopbackDrone.close();
+            for ( LoopbackDrone.Reception reception : loopbackDrone.getReceived() )
+                Log.i(TAG, String.format( Locale.US, "#%d %s : speech end to packet %.1f ms (transit %.3f ms)",
+                        reception.packet.sequence, reception.packet.command,
+                        reception.getLatencyNanos() / 1e6, reception.getTransitNanos() / 1e6 ));
+            loopbackDrone = null;
+        }
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *              RECOGNITION CALLBACKS              *
+     *           (on WavStreamHandler's thread)        *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private final LiveRecognizer.Listener recognitionListener = new LiveRecognizer.Listener()
+    {
+        @Override
+        public void onSpeechStart()
+        {
+            runOnUiThread(new Runnable()
+            {
+                @Override
+                public void run()
+                { talkingIndicator.setVisibility(View.VISIBLE); }
+            });
+        }
+
+        @Override
+        public void onSpeechEnd()
+        {
+            runOnUiThread(new Runnable()
+            {
+                @Override
+                public void run()
+                { talkingIndicator.setVisibility(View.INVISIBLE); }
+            });
+        }
+
+        @Override
+        public void onCommandRecognized(final LiveRecognizer.Recognition recognition)
+        {
+            final String details = String.format( Locale.US, "confidence %.2f - latency %d ms - %d templates (%d pruned)%s",
+                    recognition.confidence, recognition.getLatencyNanos() / 1000000, recognition.templatesScored,
+                    recognition.templatesPruned, recognition.budgetExceeded ? " (budget exceeded)" : "" );
+            Log.i(TAG, recognition.command + " : " + details);
+            if ( dispatcher != null )
+                dispatcher.dispatch( recognition.command, recognition.commandIndex, recognition.confidence,
+                                     recognition.speechEndNanos );
+
+            runOnUiThread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    commandTv.setText(recognition.command);
+                    detailsTv.setText(details);
+                    PipelineLatency.recordSince(PipelineLatency.Stage.UI_HANDOFF, recognition.speechEndNanos);
+                }
+            });
+        }
+    };
+}
@@ -0,0 +1,271 @@
+package com.dvr.mel.dronevoicerecognition;
+
+/**************************************************************************************************
+ *  LiveRecognizer in a nutshell:                                                                 *
+ *      _ UtteranceHandler recognizing commands as they are spoken : nothing is written, each     *
+ *        utterance's MFCC (computed while it was spoken) are scored in memory against every      *
+ *        reference template with a DtwEngine, on WavStreamHandler's thread                       *
+ *      _ templates are scored in the TemplateIndex's lower bound order (most promising first),   *
+ *        with the best distances so far as early abandoning threshold. Once a template's lower   *
+ *        bound can't beat them, it is pruned without any DTW, and so are all the following ones  *
+ *      _ with a shortlist size, only the templates of the closest commands (TemplateIndex's      *
+ *        mean frame shortlist) are considered at all, for vocabularies of hundreds of commands   *
+ *      _ strict latency budget : once latencyBudgetNanos have elapsed since the VAD closed the   *
+ *        utterance, remaining templates are skipped and the best command so far is emitted       *
+ *      _ every Recognition carries its command, a confidence (how far the runner-up command is)  *
+ *        and its latency from the end of speech (capture time of its last sample) to decision    *
+ *************************************************************************************************/
+
+
+
+
+class LiveRecognizer implements UtteranceHandler
+{
+    interface Listener
+    {   // called on WavStreamHandler's thread
+        void onSpeechStart();
+        void onSpeechEnd(); // every utterance, even the ones too short to be recognized
+        void onCommandRecognized(Recognition recognition);
+    }
+
+
+
+    static class Recognition
+    {
+        final String command; // recognized command
+        final int commandIndex; // its VocabularyRegistry ID
+        final float distance; // DTW distance to the closest template
+        final float confidence; // 1 - distance / runner-up command's distance, in [0, 1]
+        final long speechEndNanos; // System.nanoTime() of the utterance's last sample capture
+        final long decisionNanos; // System.nanoTime() once the command was chosen
+        final int templatesScored; // by DTW or by lower bound
+        final int templatesPruned; // scored by their lower bound only
+        final boolean budgetExceeded; // some templates were skipped to meet the latency budget
+
+        Recognition(String command_, int commandIndex_, float distance_, float confidence_, long speechEndNanos_,
+                    long decisionNanos_, int templatesScored_, int templatesPruned_, boolean budgetExceeded_)
+        {
+            command = command_;
+            commandIndex = commandIndex_;
+            distance = distance_;
+            confidence = confidence_;
+            speechEndNanos = speechEndNanos_;
+            decisionNanos = decisionNanos_;
+            templatesScored = templatesScored_;
+            templatesPruned = templatesPruned_;
+            budgetExceeded = budgetExceeded_;
+        }
+
+        long getLatencyNanos()
+        {   // end of speech to decision, VAD's hangover included
+            return decisionNanos - speechEndNanos;
+        }
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static final int MIN_UTTERANCE_FRAMES = 10; // shorter utterances (< ~115 ms) are clicks, not commands
+
+    private final VocabularyRegistry vocabulary;
+    private final TemplateIndex templates; // every reference's commands, reference after reference
+    private final long latencyBudgetNanos;
+    private final int shortlistSize; // commands considered per utterance, <= 0 for all of them
+    private final Listener listener;
+
+    private final DtwEngine dtwEngine;
+    private final float[] bestPerCommand; // reused for every utterance
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  CONSTRUCTOR                    *
+     *                                                 *
+     ***************************************************/
+
+
+
+    LiveRecognizer(VocabularyRegistry vocabulary_, FeatureMatrix[][] references, long latencyBudgetNanos_,
+                   int bandRadius, Listener listener_)
+    {   // every command considered for every utterance
+        this(vocabulary_, references, latencyBudgetNanos_, bandRadius, 0, listener_);
+    }
+
+
+
+    LiveRecognizer(VocabularyRegistry vocabulary_, FeatureMatrix[][] references, long latencyBudgetNanos_,
+                   int bandRadius, int shortlistSize_, Listener listener_)
+    {   // references[r][c] : command c (VocabularyRegistry ID) of reference corpus r, null if missing
+        vocabulary = vocabulary_;
+        latencyBudgetNanos = latencyBudgetNanos_;
+        shortlistSize = shortlistSize_;
+        listener = listener_;
+        dtwEngine = new DtwEngine(bandRadius);
+        bestPerCommand = new float[vocabulary.size()];
+
+        int nbTemplates = 0;
+        for ( FeatureMatrix[] reference : references )
+            for ( FeatureMatrix template : reference )
+                if ( template != null && template.nbFrames > 0 )
+                    ++nbTemplates;
+
+        FeatureMatrix[] matrices = new FeatureMatrix[nbTemplates];
+        int[] templateCommands = new int[nbTemplates];
+        int t = 0;
+        for ( FeatureMatrix[] reference : references )
+            for ( int c=0; c<reference.length && c<vocabulary.size(); ++c )
+                if ( reference[c] != null && reference[c].nbFrames > 0 )
+                {
+                    matrices[t] = reference[c];
+                    templateCommands[t++] = c;
+                }
+        templates = new TemplateIndex(matrices, templateCommands, bandRadius);
+    }
+
+
+
+    int getTemplateCount()
+    {
+        return templates.size();
+    }
+
+
+
+    float getPruningRate()
+    {   // share of the templates scored so far without any DTW
+        return templates.getPruningRate();
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *              UTTERANCE CALLBACKS                *
+     *                                                 *
+     ***************************************************/
+
+
+
+    @Override
+    public void onUtteranceStart(long startSample)
+    {
+        listener.onSpeechStart();
+    }
+
+
+
+    @Override
+    public void write(short[] samples, int offset, int length)
+    {   // nothing to write, features are all we need
+    }
+
+
+
+    @Override
+    public void onUtteranceEnd(long length, FeatureMatrix features, long speechEndNanos)
+    {
+        listener.onSpeechEnd();
+        if ( features.nbFrames < MIN_UTTERANCE_FRAMES || templates.size() == 0 )
+            return;
+
+        Recognition recognition = recognize(features, speechEndNanos, System.nanoTime()+latencyBudgetNanos);
+        if ( recognition != null )
+        {
+            PipelineLatency.record(PipelineLatency.Stage.RECOGNITION, recognition.getLatencyNanos());
+            listener.onCommandRecognized(recognition);
+        }
+    }
+
+
+
+    @Override
+    public void close()
+    {
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   SCORING                       *
+     *                                                 *
+     ***************************************************/
+
+
+
+    Recognition recognize(FeatureMatrix features, long speechEndNanos, long deadlineNanos)
+    {
+        for ( int c=0; c<bestPerCommand.length; ++c )
+            bestPerCommand[c] = Float.POSITIVE_INFINITY;
+        int best = -1, runnerUp = -1; // commands holding the 2 smallest distances
+
+        int scored = 0, pruned = 0;
+        boolean budgetExceeded = false;
+        int nbOrdered = templates.orderByLowerBound(features, shortlistSize);
+        for ( int o=0; o<nbOrdered; ++o )
+        {
+            if ( scored > 0 && System.nanoTime() > deadlineNanos )
+            {
+                budgetExceeded = true;
+                break;
+            }
+
+            // a template can only matter if it improves its command AND enters the top 2
+            int t = templates.getOrdered(o);
+            int c = templates.getCommand(t);
+            float threshold = bestPerCommand[c];
+            if ( runnerUp >= 0 )
+                threshold = Math.min(threshold, bestPerCommand[runnerUp]);
+
+            float bound = templates.getBound(t);
+            if ( runnerUp >= 0 && bound >= bestPerCommand[runnerUp] )
+            {   // bounds only grow from here, none of the remaining templates can enter the top 2
+                pruned += nbOrdered - o;
+                scored += nbOrdered - o;
+                break;
+            }
+            ++scored;
+            if ( bound >= threshold )
+            {
+                ++pruned;
+                continue;
+            }
+
+            float distance = dtwEngine.distance(templates.getTemplate(t), features, threshold);
+            if ( distance >= bestPerCommand[c] )
+                continue;
+            bestPerCommand[c] = distance;
+
+            // update top 2
+            if ( c == best )
+                continue;
+            if ( best < 0 || distance < bestPerCommand[best] )
+            {
+                runnerUp = best;
+                best = c;
+            }
+            else if ( c != runnerUp && (runnerUp < 0 || distance < bestPerCommand[runnerUp]) )
+                runnerUp = c;
+        }
+
+        templates.addStatistics(scored, pruned);
+        if ( best < 0 )
+            return null;
+
+        float bestDistance = bestPerCommand[best];
+        float runnerUpDistance = runnerUp < 0 ? Float.POSITIVE_INFINITY : bestPerCommand[runnerUp];
+        float confidence = ( Float.isInfinite(runnerUpDistance) || runnerUpDistance <= 0 )
+                           ? 1 : 1 - bestDistance/runnerUpDistance;
+
+        return new Recognition( vocabulary.nameOf(best), best, bestDistance, confidence, speechEndNanos,
+                                System.nanoTime(), scored, pruned, budgetExceeded );
+    }
+}
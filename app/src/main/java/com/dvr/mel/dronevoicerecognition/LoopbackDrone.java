@@ -0,0 +1,179 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**************************************************************************************************
+ *  LoopbackDrone in a nutshell:                                                                  *
+ *      _ stand-in drone listening on 127.0.0.1 (ephemeral port), so DroneCommandDispatcher can   *
+ *        be exercised and measured without any hardware                                          *
+ *      _ decodes every DronePacket it receives and timestamps it (System.nanoTime()) as soon as  *
+ *        receive() returns : same device => same clock as the packet's speechEndNanos, so        *
+ *        getLatencyNanos() is the actual end of speech to packet latency                         *
+ *      _ every packet is kept (getReceived()), for latency distribution / ordering checks        *
+ *************************************************************************************************/
+
+
+
+
+class LoopbackDrone extends Thread
+{
+    static class Reception
+    {
+        final DronePacket packet;
+        final long receiveNanos; // System.nanoTime() when receive() returned
+
+        Reception(DronePacket packet_, long receiveNanos_)
+        {
+            packet = packet_;
+            receiveNanos = receiveNanos_;
+        }
+
+        long getLatencyNanos()
+        {   // end of speech to reception
+            return receiveNanos - packet.speechEndNanos;
+        }
+
+        long getTransitNanos()
+        {   // dispatcher's send to reception
+            return receiveNanos - packet.sendNanos;
+        }
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private final DatagramChannel channel; // blocking, this thread does nothing but wait for packets
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(DronePacket.MAX_SIZE);
+    private final List<Reception> received = new ArrayList<>(); // guarded by itself
+    private volatile long malformedCount = 0;
+
+
+
+    /***************************************************
+     *                                                 *
+     *           CONSTRUCTOR & "DESTRUCTOR"            *
+     *                                                 *
+     ***************************************************/
+
+
+
+    LoopbackDrone() throws IOException
+    {
+        super("LoopbackDrone");
+        setDaemon(true);
+        channel = DatagramChannel.open();
+        channel.socket().bind( new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0) );
+    }
+
+
+
+    void close()
+    {   // closing the channel wakes receive() up with an AsynchronousCloseException
+        try { channel.close(); }
+        catch (IOException e) { e.printStackTrace(); }
+        try { join(); }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+
+
+    InetSocketAddress getAddress()
+    {   // where DroneCommandDispatcher should send its packets
+        return (InetSocketAddress) channel.socket().getLocalSocketAddress();
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   RUN LOOP                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    @Override
+    public void run()
+    {
+        while ( channel.isOpen() )
+        {
+            try
+            {
+                receiveBuffer.clear();
+                channel.receive(receiveBuffer);
+                long receiveNanos = System.nanoTime();
+
+                receiveBuffer.flip();
+                DronePacket packet = DronePacket.readFrom(receiveBuffer);
+                if ( packet == null )
+                {
+                    ++malformedCount;
+                    continue;
+                }
+
+                synchronized (received)
+                {
+                    received.add( new Reception(packet, receiveNanos) );
+                    received.notifyAll();
+                }
+            }
+            catch (AsynchronousCloseException e) { break; } // close()
+            catch (IOException e) { e.printStackTrace(); }
+        }
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   ACCESSORS                     *
+     *                                                 *
+     ***************************************************/
+
+
+
+    List<Reception> getReceived()
+    {   // copy of every packet received so far, in reception order
+        synchronized (received)
+        {
+            return new ArrayList<>(received);
+        }
+    }
+
+
+
+    boolean awaitReceived(int count, long timeoutMillis) throws InterruptedException
+    {   // wait until at least count packets were received, false on timeout
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (received)
+        {
+            while ( received.size() < count )
+            {
+                long remaining = deadline - System.currentTimeMillis();
+                if ( remaining <= 0 )
+                    return false;
+                received.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+
+
+    long getMalformedCount()
+    { return malformedCount; }
+}
@@ -29,8 +29,23 @@ public class MainMenuActivity extends AppCompatActivity {
         startActivity(intent);
     }
 
+    public void startLiveRecognitionActivity(View view) {
+        Intent intent = new Intent(this, LiveRecognitionActivity.class);
+        startActivity(intent);
+    }
+
     public void startMicCalibrationActivity(View view) {
         Intent intent = new Intent(this, MicCalibrationActivity.class);
         startActivity(intent);
     }
+
+    public void startLatencyDebugActivity(View view) {
+        Intent intent = new Intent(this, LatencyDebugActivity.class);
+        startActivity(intent);
+    }
+
+    public void startCrossValidationActivity(View view) {
+        Intent intent = new Intent(this, CrossValidationActivity.class);
+        startActivity(intent);
+    }
 }
@@ -9,8 +9,10 @@ import android.view.View;
 import android.widget.Button;
 import android.widget.ProgressBar;
 import android.widget.TextView;
+import android.widget.Toast;
 // Corpus management imports
 import java.io.File;
+import java.io.IOException;
 
 
 
@@ -37,7 +39,7 @@ import java.io.File;
 
 
 
-public class MicActivity extends AppCompatActivity
+public class MicActivity extends AppCompatActivity implements CommandSequencer.Listener
 {
     /***************************************************
      *                                                 *
@@ -51,7 +53,8 @@ public class MicActivity extends AppCompatActivity
 
     /**** Class variables ****/
     MicWavRecorderHandler mic;
-    private int curCommandListIndex = 0; // iterator used to iterate over the commandList list
+    CorpusRecorder recorder; // mic's UtteranceHandler, one Wav file per command
+    private int curCommandListIndex = 0; // UI's copy of recorder's CommandSequencer index, updated by its events
     private boolean recordingState = false;
 
     /**** UI accessors variables ****/
@@ -61,6 +64,7 @@ public class MicActivity extends AppCompatActivity
 
     /**** State machine variable ****/
     private boolean recordingCompleted = false;
+    private boolean leaving = false; // already moving to another Activity, later events are ignored
 
 
     /***************************************************
@@ -111,16 +115,28 @@ public class MicActivity extends AppCompatActivity
         // Initialize MicWavRecorder (will set output Folder and files)
         try
         {
-            mic = new MicWavRecorderHandler( 16000, AudioFormat.CHANNEL_IN_MONO,
-                    AudioFormat.ENCODING_PCM_16BIT, this);
+            recorder = new CorpusRecorder( this, AppInfo.SAMPLE_RATE, AudioFormat.CHANNEL_IN_MONO,
+                    AudioFormat.ENCODING_PCM_16BIT);
+            mic = new MicWavRecorderHandler( AppInfo.SAMPLE_RATE, AudioFormat.CHANNEL_IN_MONO,
+                    AudioFormat.ENCODING_PCM_16BIT, recorder);
                     // create MicWavRecorder according to the audioFormat we need for this Application
                     // <=> Recording @ 16KHz, mono, 16 bits, PCM RIFF Wav
+                    // each utterance it detects being written to a Wav file by recorder
         }
         catch (MicWavRecorderHandlerException e)
         {
             e.printStackTrace();
             System.exit(0);
         }
+        catch (IOException e)
+        {   // the corpus's container can't be created : tell the user rather than wait for a recording
+            e.printStackTrace();
+            Toast.makeText(this, "Can't record corpus " + corpusName + " : " + e.getMessage(),
+                           Toast.LENGTH_LONG).show();
+            leaving = true;
+            finish();
+            return;
+        }
         mic.start(); // start MicWavRecorder's thread
 
         // Initialize UI
@@ -135,7 +151,8 @@ public class MicActivity extends AppCompatActivity
             destroyCorpus();
 
         // close (and kill threads) MicWavRecorderHandler and its subsidiary WavStreamHandler
-        mic.close();
+        if ( mic != null ) // null if the recording session couldn't start
+            mic.close();
 
         // Calling default onDestroy()
         super.onDestroy();
@@ -161,7 +178,7 @@ public class MicActivity extends AppCompatActivity
 
     public String getCurrentCommandName()
     {   // return string containing text of current command being recorded
-        if ( curCommandListIndex >= AppInfo.commands.size() )
+        if ( curCommandListIndex < 0 || curCommandListIndex >= AppInfo.commands.size() )
             return null; // return null if going OOB
         else
             return AppInfo.commands.get(curCommandListIndex);
@@ -171,16 +188,30 @@ public class MicActivity extends AppCompatActivity
 
     private void previousCommand()
     {   // Iterate to the previous command to be recorded in command's list
-        --curCommandListIndex;
-        updateActivity();
+        // the recorder's sequencer owns the index, the UI gets updated by the resulting event
+        recorder.getSequencer().previous();
     }
 
 
 
-    public void nextCommand()
-    {   // iterate to the next command to be recorded listed in commands's List
-        ++curCommandListIndex;
-        updateActivity();
+    @Override
+    public void onSequencerEvent(CommandSequencer.Event event)
+    {   // UI thread, events in the order the pipeline published them
+        switch (event.type)
+        {
+            case SPEECH_START :
+            case SPEECH_END :
+            { toggleRecordingState(); break; }
+            case COMMAND_CHANGED :
+            {
+                // the sequencer's index may have moved again since, it's the one that counts
+                curCommandListIndex = recorder.getSequencer().current();
+                updateActivity();
+                if ( event.speechEndNanos != 0 )
+                    PipelineLatency.recordSince(PipelineLatency.Stage.UI_HANDOFF, event.speechEndNanos);
+                break;
+            }
+        }
     }
 
 
@@ -195,6 +226,8 @@ public class MicActivity extends AppCompatActivity
     private void updateActivity()
     {   // update UI and state variables
         // DO NOT CHANGE THE CURRENT COMMAND BEING RECORDED !
+        if ( leaving )
+            return;
 
         // update back_button text and handle enter() & exit()
         switch (curCommandListIndex)
@@ -251,10 +284,15 @@ public class MicActivity extends AppCompatActivity
         // This is not a mic related IO operation so it DOES NOT belong to the "Controller"/MicWavRecorderHandler
         boolean destroySuccess = true;
 
+        // recordings of the corpus's container
+        File containerFile = CorpusContainer.fileOf(AppInfo.corpusGlobalDir, corpusName);
+        if ( containerFile.exists() )
+            destroySuccess = containerFile.delete();
+
         // get corpus's specific directory
         File corpusDir = new File( AppInfo.baseDir, corpusName);
         if (!corpusDir.exists())
-            return true;
+            return destroySuccess;
 
         // delete its internal files ( *.wav )
         String[] commandFiles = corpusDir.list();
@@ -279,6 +317,7 @@ public class MicActivity extends AppCompatActivity
 
     private void goToPreviousActivity()
     {   // Close & clean mic (File, outputStream, thread, etc)
+        leaving = true;
         mic.close();
 
         // Load MainMenuActivity
@@ -290,6 +329,7 @@ public class MicActivity extends AppCompatActivity
 
     private void goToNextActivity()
     {   // Close & clean mic (File, outputStream, thread, etc)
+        leaving = true;
         mic.close();
 
         /**** Load FinalCorpusActivity ****/
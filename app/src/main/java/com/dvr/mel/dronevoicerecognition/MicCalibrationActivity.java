@@ -85,14 +85,14 @@ public class MicCalibrationActivity extends AppCompatActivity
     protected void onDestroy()
     {
         // Save settings/serialize file
-        AppInfo.saveToSerializedFile();
+        AppInfoStore.save();
 
         // Calling default onDestroy()
         super.onDestroy();
     }
 
     protected void saveSensibility(View view) {
-        AppInfo.saveToSerializedFile();
+        AppInfoStore.save();
     }
 
     @Override
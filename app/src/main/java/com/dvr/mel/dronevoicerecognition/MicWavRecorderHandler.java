@@ -4,16 +4,15 @@ package com.dvr.mel.dronevoicerecognition;
 import android.media.AudioFormat;
 import android.media.AudioRecord;
 import android.media.MediaRecorder;
-// StreamBuffer Queue imports
-import java.util.LinkedList;
-import java.util.Queue;
+import android.util.Log;
 
 /**************************************************************************************************
  *  MicWavRecorderHandler in a nutshell:                                                          *
  *      _ Initialize a "Microphone Input Stream" using AudioRecord                                *                                *
  *      _ Handle creation/destruction of a WavStreamHandler Thread to compute streamBuffers       *
- *      _ fill a Queue of streamBuffer containing Audio stream                                    *
- *      _ notify WavStreamHandler's thread every time a buffer is filled and queued,              *
+ *      _ fill StreamBuffers taken from a fixed StreamBufferPool with the Audio stream            *
+ *      _ queue them through a lock-free ring (StreamBufferRing), unparking WavStreamHandler's    *
+ *        thread every time a buffer is filled and queued,                                        *
  *        based on "Producer/Consumer" Algorithm                                                  *
  *                                                                                                *
  * Limitations: _ don't try to use multiple MicWavRecorders at the same time... Just don't, ok... *
@@ -59,16 +58,14 @@ class MicWavRecorderHandler extends Thread
      ***************************************************/
 
 
-    /**** Lock Object for Critical Section ****/
-    static final Object lock = new Object(); // shared lock with WavStreamHandler for "producer/consumer" problem resolution
-
     /**** AudioRecord's settings (AUDIO FORMAT SETTINGS) ****/
     int SAMPLE_RATE; // in our usecase<=>16000, 16KHz
     int CHANNEL_MODE; // in our usecase<=>AudioFormat.CHANNEL_IN_MONO<=>mono signal
     int ENCODING_FORMAT; // in our usecase<=>AudioFormat.ENCODING_PCM_16BIT<=>16 bits
 
     /**** Associated threads ****/
-    MicActivity uiActivity; // Activity "linked to"/"which started" this MicWavRecorder
+    UtteranceHandler utteranceHandler; // what to do with each utterance (record a corpus, recognize commands, ...)
+                                       // provided by the Activity which started this MicWavRecorder
     private WavStreamHandler audioAnalyser;
                                   // used to analyse mic's input buffer without blocking
                                   // this thread from filling it. ("Producer, Consumer" problem)
@@ -76,10 +73,10 @@ class MicWavRecorderHandler extends Thread
 
     /**** Audio associated variables ****/
     private AudioRecord mic; // "Mic Audio Input" Object
-    private short[] streamBuffer; // buffer used to constantly listen to the mic
     int bufferSizeByte; // size of following buffers IN BYTE
     int bufferSizeElmt; // number of Element per buffer
-    Queue<short[]> streamBufferQueue; // streamBuffer filled are pushed onto this Queue, waiting for their treatment
+    StreamBufferPool streamBufferPool; // fixed set of streamBuffers, filled ones wait there for their treatment
+                                       // then get released back to us once consumed
 
     /**** MicWavRecorder's lifespan variable ****/
     private volatile boolean runningState = true; // describe MicWavRecorder's lifespan
@@ -96,7 +93,7 @@ class MicWavRecorderHandler extends Thread
 
 
     MicWavRecorderHandler( int SAMPLE_RATE_, int CHANNEL_MODE_, int ENCODING_FORMAT_,
-                    MicActivity uiActivity_) throws MicWavRecorderHandlerException
+                    UtteranceHandler utteranceHandler_) throws MicWavRecorderHandlerException
     {   // Initializing "USER DETERMINED VARIABLES"
         SAMPLE_RATE = SAMPLE_RATE_;
         CHANNEL_MODE = CHANNEL_MODE_;
@@ -121,14 +118,12 @@ class MicWavRecorderHandler extends Thread
         if ( mic.getState() != AudioRecord.STATE_INITIALIZED )
             throw new MicWavRecorderHandlerException("Couldn't instantiate AudioRecord properly");
 
-        // Initializing streamBufferQueue
-        streamBufferQueue = new LinkedList<>();
-
-        // Initializing buffers
-        streamBuffer = new short[bufferSizeElmt];
+        // Initializing streamBufferPool, every buffer is allocated right now
+        streamBufferPool = new StreamBufferPool( AppInfo.STREAM_BUFFER_POOL_SIZE, bufferSizeElmt,
+                                                 AppInfo.OVERLOAD_POLICY );
 
-        // Link current MivWavRecorder's thread to its MicActivity's thread
-        uiActivity = uiActivity_;
+        // Link current MivWavRecorder's thread to whatever handles its utterances
+        utteranceHandler = utteranceHandler_;
 
         // Initialize and start the WavStreamHandler's thread that will detect audio's spikes
         audioAnalyser = new WavStreamHandler(this);
@@ -145,7 +140,15 @@ class MicWavRecorderHandler extends Thread
         mic.stop();
         mic.release();
 
-        //closing AudioAnalyser
+        // closing streamBufferPool, wakes up WavStreamHandler if it is parked waiting for a buffer
+        streamBufferPool.close();
+        Log.i("MicWavRecorderHandler", "streamBufferPool " + streamBufferPool.getPolicy()
+                + " high-water mark : " + streamBufferPool.getHighWaterMark() + "/" + streamBufferPool.getPoolSize()
+                + " dropped : " + streamBufferPool.getDroppedCount()
+                + " dropped newest : " + streamBufferPool.getDroppedNewestCount()
+                + " blocked : " + streamBufferPool.getBlockedCount() );
+
+        //closing AudioAnalyser, returns once its thread is over and its UtteranceHandler closed
         audioAnalyser.close();
 
         // stop the run loop / thread
@@ -168,14 +171,20 @@ class MicWavRecorderHandler extends Thread
         while(runningState)
         {
             // update streamBuffer / produce a streamBuffer
-            mic.read(streamBuffer, 0, bufferSizeElmt);// read() IS A BLOCKING METHOD !!!
+            StreamBuffer streamBuffer = streamBufferPool.acquire();
+            long readStartNanos = System.nanoTime();
+            streamBuffer.length = mic.read(streamBuffer.data, 0, bufferSizeElmt);// read() IS A BLOCKING METHOD !!!
                                                       // it will wait for the buffer to be filled before returning it
+            if ( streamBuffer.length <= 0 )
+                continue; // AudioRecord error code, nothing worth queuing
+            streamBuffer.captureNanos = System.nanoTime();
+            PipelineLatency.record(PipelineLatency.Stage.CAPTURE, streamBuffer.captureNanos - readStartNanos);
+
+            // queue buffer for the Consumer and switch to a free one, unparks Consumer if it was waiting
+            // if the pool is exhausted <=> consumer is falling behind, AppInfo.OVERLOAD_POLICY applies
+            if ( !streamBufferPool.publish() )
+                break; // pool closed
 
-            synchronized(lock) // CRITICAL SECTION : synchronize on the same lock with Consumer
-            {
-                streamBufferQueue.add(streamBuffer); // add buffer to the Queue shared with Consumer
-                lock.notify(); // notify consumer that a streamBuffer is ready to be consumed
-            }
         }
     }
 
@@ -0,0 +1,150 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**************************************************************************************************
+ *  NativeRecognizer in a nutshell:                                                               *
+ *      _ native DTW over feature matrices held in direct ByteBuffers, read in place with         *
+ *        GetDirectBufferAddress(), nothing is copied on the way in                               *
+ *      _ distance() / closest() : same DTW as DtwEngine (band, early abandoning, g(I,J)/(I+J)),  *
+ *        closest() scoring every template packed in one buffer within a single JNI call          *
+ *      _ buffers must be direct and in ByteOrder.nativeOrder(), allocate them once with          *
+ *        allocateFeatures() / pack() and reuse them from one utterance to the next one           *
+ *      _ shape metadata (frames, dim) is passed along, a buffer's position and limit are ignored *
+ *      _ buffers are checked in Java, native-lib is only loaded by the first native call         *
+ *                                                                                                *
+ *  Features come from StreamingMfccExtractor, as the ones of FeatureCache, CorpusContainer,      *
+ *  CentroidStore and TemplateIndex. Never mix them with native parametrisation()'s : it removes  *
+ *  the silence and normalises the whole signal first, so its MFCC live on another scale.         *
+ *************************************************************************************************/
+
+
+
+
+class NativeRecognizer
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static final int BYTES_PER_COEFFICIENT = 4;
+
+    private NativeRecognizer() {} // static only
+
+
+
+    /***************************************************
+     *                                                 *
+     *                    BUFFERS                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static ByteBuffer allocateFeatures(int nbFrames, int dim)
+    {
+        return ByteBuffer.allocateDirect(nbFrames*dim*BYTES_PER_COEFFICIENT).order(ByteOrder.nativeOrder());
+    }
+
+
+
+    static ByteBuffer pack(FeatureMatrix... matrices)
+    {   // every matrix one after the other, as closest() expects its templates
+        int nbValues = 0;
+        for ( FeatureMatrix matrix : matrices )
+            nbValues += matrix.nbFrames*matrix.dim;
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(nbValues*BYTES_PER_COEFFICIENT).order(ByteOrder.nativeOrder());
+        FloatBuffer floats = buffer.asFloatBuffer();
+        for ( FeatureMatrix matrix : matrices )
+            floats.put(matrix.data, 0, matrix.nbFrames*matrix.dim);
+        return buffer;
+    }
+
+
+
+    static FeatureMatrix toFeatureMatrix(ByteBuffer features, int nbFrames, int dim)
+    {   // copies back to the Java heap, for DtwEngine & co
+        float[] data = new float[nbFrames*dim];
+        features.duplicate().order(ByteOrder.nativeOrder()).asFloatBuffer().get(data);
+        return new FeatureMatrix(data, nbFrames, dim);
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   ROUTINES                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static float distance(ByteBuffer reference, int refFrames, ByteBuffer hypothesis, int hypFrames,
+                          int dim, int bandRadius, float threshold)
+    {   // normalized distance, or Float.POSITIVE_INFINITY if it would be above threshold
+        checkBuffer(reference, (long) refFrames*dim*BYTES_PER_COEFFICIENT, "reference");
+        checkBuffer(hypothesis, (long) hypFrames*dim*BYTES_PER_COEFFICIENT, "hypothesis");
+
+        return Library.nativeDistance(reference, refFrames, hypothesis, hypFrames, dim, bandRadius, threshold);
+    }
+
+
+
+    static int closest(ByteBuffer templates, int[] frameCounts, ByteBuffer hypothesis, int hypFrames,
+                       int dim, int bandRadius, float[] distances)
+    {   // index of the closest template (first one wins ties), -1 if none
+        // distances (may be null) gets each template's distance, +INF for the abandoned ones
+        long nbFrames = 0;
+        for ( int count : frameCounts )
+            nbFrames += count;
+        checkBuffer(templates, nbFrames*dim*BYTES_PER_COEFFICIENT, "templates");
+        checkBuffer(hypothesis, (long) hypFrames*dim*BYTES_PER_COEFFICIENT, "hypothesis");
+
+        return Library.nativeClosest(templates, frameCounts, hypothesis, hypFrames, dim, bandRadius, distances);
+    }
+
+
+
+    private static void checkBuffer(ByteBuffer buffer, long neededBytes, String name)
+    {   // native code reads the raw memory, anything else than a big enough direct buffer in native order is a bug
+        if ( buffer == null || !buffer.isDirect() )
+            throw new IllegalArgumentException(name + " must be a direct ByteBuffer");
+        if ( buffer.order() != ByteOrder.nativeOrder() )
+            throw new IllegalArgumentException(name + " must be in ByteOrder.nativeOrder()");
+        if ( buffer.capacity() < neededBytes )
+            throw new IllegalArgumentException(name + " holds " + buffer.capacity() + " bytes, "
+                                               + neededBytes + " needed");
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                 NATIVE METHODS                  *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private static class Library
+    {   // native-lib is only loaded by the first native call, once the buffers have been checked :
+        // the buffer helpers and the argument checks run on a desktop JVM too
+        static
+        {
+            System.loadLibrary("native-lib");
+        }
+
+        static native float nativeDistance(ByteBuffer reference, int refFrames, ByteBuffer hypothesis,
+                                           int hypFrames, int dim, int bandRadius, float threshold);
+
+        static native int nativeClosest(ByteBuffer templates, int[] frameCounts, ByteBuffer hypothesis,
+                                        int hypFrames, int dim, int bandRadius, float[] distances);
+    }
+}
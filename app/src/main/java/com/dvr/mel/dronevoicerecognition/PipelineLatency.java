@@ -0,0 +1,115 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**************************************************************************************************
+ *  PipelineLatency in a nutshell:                                                                *
+ *      _ one LatencyHistogram per stage of the capture to decision pipeline, shared by every     *
+ *        thread of it (mic, WavStreamHandler, UI, DroneCommandDispatcher), always on             *
+ *      _ buffer level stages, measured from streamBuffer.captureNanos (mic.read() returned) :    *
+ *            CAPTURE      time mic.read() blocked to fill the buffer                             *
+ *            DEQUEUE      WavStreamHandler took the buffer from the StreamBufferPool             *
+ *            VAD          VAD decided on every frame of the buffer                               *
+ *            WRITE        buffer's utterance samples handed over to the UtteranceHandler         *
+ *                         (disk write for CorpusRecorder)                                        *
+ *      _ utterance level stages, measured from the capture of the utterance's last sample (so    *
+ *        the VAD's hangover is included) :                                                       *
+ *            RECOGNITION  LiveRecognizer chose a command                                         *
+ *            UI_HANDOFF   UI thread ran the update (next command / recognized command)           *
+ *            DISPATCH     command's packet handed over to the drone's socket                     *
+ *      _ report() / dumpTo() : count, mean, p50, p90, p99 and max of each stage, in ms           *
+ *************************************************************************************************/
+
+
+
+
+class PipelineLatency
+{
+    enum Stage { CAPTURE, DEQUEUE, VAD, WRITE, RECOGNITION, UI_HANDOFF, DISPATCH }
+
+    private static final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+    static
+    {
+        for ( int i=0; i<histograms.length; ++i )
+            histograms[i] = new LatencyHistogram();
+    }
+
+    private PipelineLatency() {} // static only, like AppInfo
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   RECORDING                     *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static void record(Stage stage, long elapsedNanos)
+    {
+        histograms[stage.ordinal()].record(elapsedNanos);
+    }
+
+
+
+    static void recordSince(Stage stage, long startNanos)
+    {   // startNanos being a System.nanoTime() value
+        histograms[stage.ordinal()].record( System.nanoTime() - startNanos );
+    }
+
+
+
+    static LatencyHistogram get(Stage stage)
+    {
+        return histograms[stage.ordinal()];
+    }
+
+
+
+    static void reset()
+    {
+        for ( LatencyHistogram histogram : histograms )
+            histogram.reset();
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   REPORTING                     *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static String report()
+    {   // one line per stage, unused stages included
+        StringBuilder sb = new StringBuilder();
+        sb.append( String.format(Locale.US, "%-12s %7s %8s %8s %8s %8s %8s%n",
+                                 "stage", "count", "mean", "p50", "p90", "p99", "max") );
+        for ( Stage stage : Stage.values() )
+        {
+            LatencyHistogram h = get(stage);
+            sb.append( String.format(Locale.US, "%-12s %7d %8.2f %8.2f %8.2f %8.2f %8.2f%n",
+                                     stage.name(), h.getCount(), h.getMean()/1e6, h.percentile(50)/1e6,
+                                     h.percentile(90)/1e6, h.percentile(99)/1e6, h.getMax()/1e6) );
+        }
+        return sb.toString();
+    }
+
+
+
+    static void dumpTo(File file) throws IOException
+    {
+        try ( Writer writer = new FileWriter(file) )
+        {
+            writer.write("# latency per pipeline stage, in ms\n");
+            writer.write( report() );
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import java.io.IOException;
+
+/**************************************************************************************************
+ *  PreRollBuffer in a nutshell:                                                                  *
+ *      _ keep the last few hundred milliseconds of the mic stream in a preallocated circular     *
+ *        short[], so an utterance's onset is not lost when the VAD detects it a bit late or      *
+ *        when it lies in an already consumed streamBuffer                                        *
+ *      _ only the tail of a pushed buffer that can still fit is copied, audio that would be      *
+ *        overwritten right away is never copied at all                                           *
+ *      _ samples are addressed by their absolute stream position, same as VoiceActivityDetector  *
+ *************************************************************************************************/
+
+
+
+
+class PreRollBuffer
+{
+    interface SampleSink
+    {   // whatever receives an utterance's samples (Wav file, feature extractor, ...)
+        void write(short[] samples, int offset, int length) throws IOException;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private final short[] ring; // preallocated once
+    private int writeIndex = 0; // next slot to be written in ring
+    private int count = 0; // valid samples in ring
+    private long endPosition = 0; // absolute stream position right after the newest sample
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  CONSTRUCTOR                    *
+     *                                                 *
+     ***************************************************/
+
+
+
+    PreRollBuffer(int capacity)
+    {
+        ring = new short[Math.max(1, capacity)];
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   ROUTINES                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    void push(short[] samples, int offset, int length)
+    {   // append samples[offset, offset+length[, oldest samples are overwritten
+        endPosition += length;
+
+        // skip whatever would be overwritten by this very same push
+        if ( length > ring.length )
+        {
+            offset += length-ring.length;
+            length = ring.length;
+        }
+
+        int firstPart = Math.min(length, ring.length-writeIndex);
+        System.arraycopy(samples, offset, ring, writeIndex, firstPart);
+        System.arraycopy(samples, offset+firstPart, ring, 0, length-firstPart);
+
+        writeIndex = (writeIndex+length) % ring.length;
+        count = Math.min(ring.length, count+length);
+    }
+
+
+
+    void flushTo(long from, SampleSink sink) throws IOException
+    {   // hand samples [from, endPosition[ to sink, in order, in at most 2 contiguous writes
+        // from is clamped to the oldest sample still available
+        long available = Math.min(count, endPosition-from);
+        if ( available <= 0 )
+            return;
+
+        int length = (int) available;
+        int start = (writeIndex-length+ring.length) % ring.length;
+        int firstPart = Math.min(length, ring.length-start);
+        sink.write(ring, start, firstPart);
+        if ( firstPart < length )
+            sink.write(ring, 0, length-firstPart);
+    }
+
+
+
+    long getStartPosition()
+    {   // absolute position of the oldest sample still available
+        return endPosition-count;
+    }
+
+
+
+    long getEndPosition()
+    {
+        return endPosition;
+    }
+
+
+
+    void clear(long position)
+    {   // forget everything, next pushed sample being at the given absolute position
+        writeIndex = 0;
+        count = 0;
+        endPosition = position;
+    }
+}
@@ -0,0 +1,237 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**************************************************************************************************
+ *  RecognitionExecutor in a nutshell:                                                            *
+ *      _ scores a new corpus against the reference corpora (FinalCorpusActivity) : every         *
+ *        word of every reference corpus is compared (DTW) to every word of the hypothesis        *
+ *        corpus, the closest hypothesis word gets a vote in the confusion matrix                 *
+ *      _ each (reference, referenceWord, hypothesisWord) DTW is its own task on a work-stealing  *
+ *        ForkJoinPool, so every core gets some work whatever the number of references            *
+ *      _ nothing is locked while merging : the last task of a (reference, referenceWord) row     *
+ *        (counted down through an AtomicIntegerArray) picks the row's closest word and           *
+ *        increments the confusion matrix, itself an AtomicIntegerArray                           *
+ *      _ tasks of a same row share their best distance so far (CAS on its float bits), later     *
+ *        tasks use it as DtwEngine's early abandoning threshold                                  *
+ *      _ leaf tasks add up the time they spend computing (getBusyNanos()), i.e. the CPU time     *
+ *        spent on DTW by every worker, whatever the number of cores                              *
+ *                                                                                                *
+ *  Words are identified by their index in the vocabulary, same order for references and          *
+ *  hypothesis. A missing recording (null FeatureMatrix) never gets any vote.                     *
+ *************************************************************************************************/
+
+
+
+
+class RecognitionExecutor
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private final ForkJoinPool pool;
+    private final ThreadLocal<DtwEngine> dtwEngines; // DtwEngine reuses its rows, so one per worker
+
+    private static final int TASK_GRAIN = 1; // DTW per leaf task, one DTW already is ~0.1-1 ms
+
+    private final AtomicLong busyNanos = new AtomicLong(); // summed over leaf tasks, since construction
+
+
+
+    /***************************************************
+     *                                                 *
+     *           CONSTRUCTOR & "DESTRUCTOR"            *
+     *                                                 *
+     ***************************************************/
+
+
+
+    RecognitionExecutor()
+    {
+        this( Runtime.getRuntime().availableProcessors(), DtwEngine.NO_BAND );
+    }
+
+
+
+    RecognitionExecutor(int parallelism, final int bandRadius)
+    {
+        pool = new ForkJoinPool(parallelism);
+        dtwEngines = new ThreadLocal<DtwEngine>()
+        {
+            @Override
+            protected DtwEngine initialValue()
+            {
+                return new DtwEngine(bandRadius);
+            }
+        };
+    }
+
+
+
+    void shutdown()
+    {
+        pool.shutdown();
+    }
+
+
+
+    long getBusyNanos()
+    {
+        return busyNanos.get();
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   ROUTINES                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    ConfusionMatrix recognize(FeatureMatrix[][] references, FeatureMatrix[] hypothesis)
+    {   // references[r][w] : word w of reference corpus r, hypothesis[w] : word w of the tested corpus
+        Job job = new Job(references, hypothesis);
+        if ( job.nbTasks > 0 )
+            pool.invoke( new DtwTask(job, 0, job.nbTasks) );
+
+        ConfusionMatrix confusion = new ConfusionMatrix(job.vocabularySize);
+        for ( int i=0; i<confusion.counts.length; ++i )
+            confusion.counts[i] = job.confusion.get(i);
+        return confusion;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                     TASKS                       *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private static class Job
+    {   // everything shared by the tasks of one recognize() call
+        final FeatureMatrix[][] references;
+        final FeatureMatrix[] hypothesis;
+        final int vocabularySize;
+        final int nbTasks; // references.length * vocabularySize * vocabularySize
+
+        final float[] distances; // distances[row*vocabularySize + hypothesisWord], row = r*vocabularySize + referenceWord
+        final AtomicIntegerArray pendingTasks; // per row, tasks not done yet
+        final AtomicIntegerArray bestDistanceBits; // per row, Float.floatToIntBits of the best distance so far
+        final AtomicIntegerArray confusion;
+
+        Job(FeatureMatrix[][] references_, FeatureMatrix[] hypothesis_)
+        {
+            references = references_;
+            hypothesis = hypothesis_;
+            vocabularySize = hypothesis.length;
+            int nbRows = references.length*vocabularySize;
+            nbTasks = nbRows*vocabularySize;
+
+            distances = new float[nbTasks];
+            pendingTasks = new AtomicIntegerArray(nbRows);
+            bestDistanceBits = new AtomicIntegerArray(nbRows);
+            for ( int row=0; row<nbRows; ++row )
+            {
+                pendingTasks.set(row, vocabularySize);
+                bestDistanceBits.set(row, Float.floatToIntBits(Float.POSITIVE_INFINITY));
+            }
+            confusion = new AtomicIntegerArray(vocabularySize*vocabularySize);
+        }
+    }
+
+
+
+    private class DtwTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = -6926339333295832612L;
+
+        private final Job job;
+        private final int from, to; // tasks [from, to[
+
+        DtwTask(Job job_, int from_, int to_)
+        {
+            job = job_;
+            from = from_;
+            to = to_;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ( to-from <= TASK_GRAIN )
+            {
+                long start = System.nanoTime();
+                for ( int task=from; task<to; ++task )
+                    computeOne(task);
+                busyNanos.addAndGet( System.nanoTime() - start );
+                return;
+            }
+
+            int middle = (from+to) >>> 1;
+            invokeAll( new DtwTask(job, from, middle), new DtwTask(job, middle, to) );
+        }
+
+        private void computeOne(int task)
+        {
+            int V = job.vocabularySize;
+            int row = task / V;
+            int hypothesisWord = task % V;
+            FeatureMatrix reference = job.references[row / V][row % V];
+            FeatureMatrix hypothesis = job.hypothesis[hypothesisWord];
+
+            float distance = Float.POSITIVE_INFINITY;
+            if ( reference != null && hypothesis != null )
+            {
+                float best = Float.intBitsToFloat( job.bestDistanceBits.get(row) );
+                distance = dtwEngines.get().distance(reference, hypothesis, best);
+                lowerBest(row, distance);
+            }
+            job.distances[task] = distance;
+
+            // last task of the row : every distance of the row is visible, vote for the closest word
+            if ( job.pendingTasks.decrementAndGet(row) == 0 )
+                vote(row);
+        }
+
+        private void lowerBest(int row, float distance)
+        {
+            int current;
+            do
+            {
+                current = job.bestDistanceBits.get(row);
+                if ( !(distance < Float.intBitsToFloat(current)) )
+                    return;
+            }
+            while ( !job.bestDistanceBits.compareAndSet(row, current, Float.floatToIntBits(distance)) );
+        }
+
+        private void vote(int row)
+        {   // first closest word wins ties
+            int V = job.vocabularySize;
+            int closest = -1;
+            float minimum = Float.POSITIVE_INFINITY;
+            for ( int word=0; word<V; ++word )
+                if ( job.distances[row*V + word] < minimum )
+                {
+                    minimum = job.distances[row*V + word];
+                    closest = word;
+                }
+
+            if ( closest >= 0 )
+                job.confusion.incrementAndGet( (row % V)*V + closest );
+        }
+    }
+}
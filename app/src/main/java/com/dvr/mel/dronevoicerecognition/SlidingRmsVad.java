@@ -0,0 +1,222 @@
+package com.dvr.mel.dronevoicerecognition;
+
+/**************************************************************************************************
+ *  SlidingRmsVad in a nutshell:                                                                  *
+ *      _ VoiceActivityDetector working on 10 ms frames instead of whole capture buffers          *
+ *      _ keep the energy of the last WINDOW_FRAMES frames in a ring, the window's RMS is updated *
+ *        in O(1) per frame (add the new frame, remove the oldest one)                            *
+ *      _ first CALIBRATION_FRAMES frames calibrate the silence's energy, then it keeps adapting  *
+ *        to the background noise as long as the user is not speaking                             *
+ *      _ onset threshold  <=> silence RMS * sensitivity                                          *
+ *        offset threshold <=> silence RMS * sensitivity * OFFSET_RATIO (hysteresis)              *
+ *      _ speech only ends after hangoverFrames windows in a row below the offset threshold,      *
+ *        reported end being the end of the last single frame above it                            *
+ *                                                                                                *
+ *  Every comparison is done on energies (squared RMS), no sqrt() on the consumer thread          *
+ *************************************************************************************************/
+
+
+
+
+class SlidingRmsVad implements VoiceActivityDetector
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    /**** Detector settings ****/
+    static final int FRAME_DURATION_MS = 10; // duration of one analysed frame
+    static final int WINDOW_FRAMES = 3; // frames in the sliding RMS window <=> 30 ms
+    static final int CALIBRATION_FRAMES = 10; // frames used to calibrate silence <=> 100 ms
+    static final int DEFAULT_HANGOVER_FRAMES = 10; // silent frames needed to end speech <=> 100 ms
+    static final double OFFSET_RATIO = 0.5; // offset threshold / onset threshold, in RMS
+    static final double NOISE_ADAPTATION = 0.1; // weight of a new silent window in the silence's energy
+    static final double MIN_NOISE_ENERGY = 1.0; // keep thresholds meaningful on digital silence
+
+    private final int frameSize; // samples per frame
+    private final double onsetRatio; // onset threshold / silence, in energy
+    private final double offsetRatio; // offset threshold / silence, in energy
+    private final int hangoverFrames;
+
+    /**** Sliding window ****/
+    private final long[] frameEnergies = new long[WINDOW_FRAMES]; // sum of squares of the last frames
+    private int windowIndex; // slot of the oldest frame in frameEnergies
+    private long windowEnergy; // sum of frameEnergies
+
+    /**** Current (partial) frame ****/
+    private long frameEnergy; // sum of squares of the current frame so far
+    private int frameFill; // samples already in the current frame
+
+    /**** Stream state ****/
+    private long position; // absolute position of the next sample
+    private long framesDone; // complete frames processed so far
+    private double noiseEnergy; // silence's mean energy per sample
+    private boolean speaking;
+    private int silentFrames; // frames in a row below offset threshold while speaking
+    private long lastSpeechEnd; // end of the last frame above offset threshold
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  CONSTRUCTORS                   *
+     *                                                 *
+     ***************************************************/
+
+
+
+    SlidingRmsVad(int sampleRate, double sensitivity)
+    {
+        this(sampleRate, sensitivity, DEFAULT_HANGOVER_FRAMES);
+    }
+
+
+
+    SlidingRmsVad(int sampleRate, double sensitivity, int hangoverFrames_)
+    {
+        frameSize = sampleRate * FRAME_DURATION_MS / 1000;
+        onsetRatio = sensitivity * sensitivity;
+        offsetRatio = onsetRatio * OFFSET_RATIO * OFFSET_RATIO;
+        hangoverFrames = hangoverFrames_;
+        reset();
+    }
+
+
+
+    @Override
+    public void reset()
+    {
+        for ( int i=0; i<WINDOW_FRAMES; ++i )
+            frameEnergies[i] = 0;
+        windowIndex = 0;
+        windowEnergy = 0;
+        frameEnergy = 0;
+        frameFill = 0;
+        position = 0;
+        framesDone = 0;
+        noiseEnergy = 0;
+        speaking = false;
+        silentFrames = 0;
+        lastSpeechEnd = 0;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                FRAME PROCESSING                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    @Override
+    public void process(short[] samples, int offset, int length, Listener listener)
+    {
+        int end = offset+length;
+        for ( int i=offset; i<end; ++i )
+        {
+            int s = samples[i];
+            frameEnergy += s*s;
+            ++position;
+
+            if ( ++frameFill == frameSize )
+            {
+                onFrame(listener);
+                frameEnergy = 0;
+                frameFill = 0;
+            }
+        }
+    }
+
+
+
+    private void onFrame(Listener listener)
+    {   // called once per complete frame, position being the end of that frame
+        // slide the window : O(1)
+        windowEnergy += frameEnergy - frameEnergies[windowIndex];
+        frameEnergies[windowIndex] = frameEnergy;
+        windowIndex = (windowIndex+1) % WINDOW_FRAMES;
+        ++framesDone;
+
+        /**** Silence calibration ****/
+        if ( framesDone <= CALIBRATION_FRAMES )
+        {   // running mean of the first frames' energy
+            noiseEnergy += ( (double) frameEnergy/frameSize - noiseEnergy ) / framesDone;
+            return;
+        }
+
+        double windowMeanEnergy = (double) windowEnergy / (WINDOW_FRAMES*frameSize);
+        double noise = Math.max(noiseEnergy, MIN_NOISE_ENERGY);
+
+        /**** Detect if ( "User starts talking" ) ****/
+        if ( !speaking )
+        {
+            if ( windowMeanEnergy >= noise*onsetRatio )
+            {
+                speaking = true;
+                silentFrames = 0;
+                lastSpeechEnd = position;
+                listener.onSpeechStart( getOnsetPosition(noise) );
+            }
+            else
+            {   // "User is STILL NOT talking" => keep tracking background noise
+                noiseEnergy += (windowMeanEnergy - noiseEnergy) * NOISE_ADAPTATION;
+            }
+            return;
+        }
+
+        /**** Detect if ( "User is still talking" ) ****/
+        // the window decides, but the end is only moved by frames that are loud on their own,
+        // otherwise the window would drag the end WINDOW_FRAMES-1 frames too far
+        if ( frameEnergy >= noise*offsetRatio*frameSize )
+            lastSpeechEnd = position;
+
+        if ( windowMeanEnergy >= noise*offsetRatio )
+        {
+            silentFrames = 0;
+            return;
+        }
+
+        /**** Detect if ( "User stops talking" ) ****/
+        if ( ++silentFrames >= hangoverFrames )
+        {
+            speaking = false;
+            listener.onSpeechEnd(lastSpeechEnd);
+        }
+    }
+
+
+
+    private long getOnsetPosition(double noise)
+    {   // start of the oldest frame of the window already above the offset threshold
+        // so the onset is not delayed by the window's length
+        double frameThreshold = noise*offsetRatio*frameSize;
+        for ( int k=WINDOW_FRAMES; k>0; --k )
+        {   // k frames ago, oldest first
+            long energy = frameEnergies[ (windowIndex-k+WINDOW_FRAMES) % WINDOW_FRAMES ];
+            if ( energy >= frameThreshold )
+                return Math.max(0, position - (long) k*frameSize);
+        }
+        return position - frameSize;
+    }
+
+
+
+    @Override
+    public long getPosition()
+    {
+        return position;
+    }
+
+
+
+    boolean isSpeaking()
+    {
+        return speaking;
+    }
+}
@@ -0,0 +1,26 @@
+package com.dvr.mel.dronevoicerecognition;
+
+/**************************************************************************************************
+ *  StreamBuffer in a nutshell:                                                                   *
+ *      _ one reusable capture buffer, owned by StreamBufferPool                                  *
+ *      _ travels from MicWavRecorderHandler (filled by mic.read()) to WavStreamHandler and back  *
+ *      _ never reallocated, so the steady state of the recording pipeline allocates nothing      *
+ *      _ stamped with the time its last sample was captured, so any later stage can tell how     *
+ *        long ago a given sample was spoken                                                      *
+ *************************************************************************************************/
+
+
+
+
+class StreamBuffer
+{
+    final short[] data; // PCM samples, sized once to bufferSizeElmt
+    int length; // number of valid samples in data, as returned by mic.read()
+    long captureNanos; // System.nanoTime() when mic.read() returned <=> data[length-1]'s capture time
+
+    StreamBuffer(int bufferSizeElmt)
+    {
+        data = new short[bufferSizeElmt];
+        length = 0;
+    }
+}
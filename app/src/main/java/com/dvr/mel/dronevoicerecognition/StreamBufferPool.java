@@ -0,0 +1,185 @@
+package com.dvr.mel.dronevoicerecognition;
+
+/**************************************************************************************************
+ *  StreamBufferPool in a nutshell:                                                               *
+ *      _ fixed set of StreamBuffer, allocated once at construction                               *
+ *      _ filledBuffers ring : producer (MicWavRecorderHandler) => consumer (WavStreamHandler)    *
+ *      _ freeBuffers ring   : consumer => producer, buffers released once consumed               *
+ *      _ the producer always holds exactly one buffer (currentBuffer) that it fills              *
+ *      _ when no free buffer is left, apply the OverloadPolicy and count what got lost           *
+ *                                                                                                *
+ *  OverloadPolicy:                                                                               *
+ *      _ BLOCK : producer waits for the consumer to release a buffer, mic input is NOT read      *
+ *                meanwhile (AudioRecord will overrun on its own, uncounted by us)                *
+ *      _ DROP_OLDEST : producer steals back the oldest queued buffer, its audio is lost          *
+ *      _ DROP_NEWEST : producer keeps its current buffer and reads the next mic input over it,   *
+ *                      the read it held is lost, the first read once the consumer released a     *
+ *                      buffer gets published                                                     *
+ *                                                                                                *
+ * Limitations: _ same as StreamBufferRing, ONE producer thread and ONE consumer thread           *
+ *              _ at least 3 buffers : one being filled, one being consumed, one queued           *
+ *************************************************************************************************/
+
+
+
+
+class StreamBufferPool
+{
+    enum OverloadPolicy { BLOCK, DROP_OLDEST, DROP_NEWEST }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    /**** Pool settings ****/
+    private final OverloadPolicy policy;
+    private final int poolSize;
+
+    /**** Buffer rings ****/
+    private final StreamBufferRing<StreamBuffer> filledBuffers; // waiting to be consumed
+    private final StreamBufferRing<StreamBuffer> freeBuffers; // waiting to be filled
+
+    /**** Producer owned buffer ****/
+    private StreamBuffer currentBuffer; // only touched by the producer's thread
+
+    /**** Overload counters, only written by the producer ****/
+    private volatile long droppedCount = 0; // buffers stolen back from the queue (DROP_OLDEST)
+    private volatile long droppedNewestCount = 0; // mic reads overwritten before being published (DROP_NEWEST)
+    private volatile long blockedCount = 0; // times the producer had to wait for a free buffer (BLOCK)
+
+
+
+    /***************************************************
+     *                                                 *
+     *           CONSTRUCTOR & "DESTRUCTOR"            *
+     *                                                 *
+     ***************************************************/
+
+
+
+    StreamBufferPool(int poolSize_, int bufferSizeElmt, OverloadPolicy policy_)
+    {
+        if ( poolSize_ < 3 )
+            throw new IllegalArgumentException("StreamBufferPool needs at least 3 buffers");
+
+        poolSize = poolSize_;
+        policy = policy_;
+
+        // both rings can hold every buffer of the pool, so offer() on them never fails
+        filledBuffers = new StreamBufferRing<>(poolSize);
+        freeBuffers = new StreamBufferRing<>(poolSize);
+
+        // allocate every buffer right now, never again
+        currentBuffer = new StreamBuffer(bufferSizeElmt);
+        for ( int i=1; i<poolSize; ++i )
+            freeBuffers.offer( new StreamBuffer(bufferSizeElmt) );
+    }
+
+
+
+    void close()
+    {   // wake up both sides, take() and publish() will then give up
+        filledBuffers.close();
+        freeBuffers.close();
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                 PRODUCER SIDE                   *
+     *                                                 *
+     ***************************************************/
+
+
+
+    StreamBuffer acquire()
+    {   // buffer the producer has to fill next
+        return currentBuffer;
+    }
+
+
+
+    boolean publish()
+    {   // queue currentBuffer for the consumer and switch to a free one, according to the policy
+        // return false if the pool got closed
+        StreamBuffer next = freeBuffers.poll();
+
+        if ( next == null && policy == OverloadPolicy.DROP_NEWEST )
+        {   // keep currentBuffer, next mic.read() will overwrite it
+            ++droppedNewestCount;
+            return true;
+        }
+
+        if ( next == null && policy == OverloadPolicy.DROP_OLDEST )
+        {   // steal back the oldest queued buffer, consumer will never see it
+            next = filledBuffers.poll();
+            if ( next != null )
+                ++droppedCount;
+        }
+
+        if ( next == null )
+        {   // BLOCK, or DROP_OLDEST with the consumer holding everything (nothing to steal) : wait
+            ++blockedCount;
+            next = freeBuffers.take();
+            if ( next == null )
+                return false; // pool closed
+        }
+
+        filledBuffers.offer(currentBuffer);
+        currentBuffer = next;
+        return true;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                 CONSUMER SIDE                   *
+     *                                                 *
+     ***************************************************/
+
+
+
+    StreamBuffer take()
+    {   // next filled buffer, wait for one if needed, null if the pool got closed
+        return filledBuffers.take();
+    }
+
+
+
+    void release(StreamBuffer buffer)
+    {   // give a consumed buffer back to the producer
+        freeBuffers.offer(buffer);
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   STATISTICS                    *
+     *                                                 *
+     ***************************************************/
+
+
+
+    int getQueueDepth() { return filledBuffers.size(); }
+
+    int getHighWaterMark() { return filledBuffers.getHighWaterMark(); }
+
+    int getPoolSize() { return poolSize; }
+
+    OverloadPolicy getPolicy() { return policy; }
+
+    long getDroppedCount() { return droppedCount; }
+
+    long getDroppedNewestCount() { return droppedNewestCount; }
+
+    long getBlockedCount() { return blockedCount; }
+}
@@ -0,0 +1,243 @@
+package com.dvr.mel.dronevoicerecognition;
+
+// Lock-free ring imports
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**************************************************************************************************
+ *  StreamBufferRing in a nutshell:                                                               *
+ *      _ bounded Single-Producer/Single-Consumer queue, preallocated slots, no lock, no monitor   *
+ *      _ head/tail are ever-increasing sequence counters, slot index <=> sequence & mask         *
+ *      _ tail is only written by the producer, head is advanced by CAS so that the producer     *
+ *        may also steal the oldest element (see StreamBufferPool's DROP_OLDEST policy)           *
+ *      _ waiting side spins a bit, then parks until the other side unparks it                    *
+ *      _ keep track of the queue depth and its high-water mark, to know how close the consumer   *
+ *        is from falling behind the producer                                                     *
+ *                                                                                                *
+ * Limitations: _ ONE producer thread and ONE consumer thread, no more. That's the whole point.   *
+ *                (the producer stealing through poll() being the only exception)                 *
+ *              _ capacity is rounded up to the next power of two                                 *
+ *************************************************************************************************/
+
+
+
+
+class StreamBufferRing<E>
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+    /**** Wait strategy settings ****/
+    private static final int SPIN_TRIES = 100; // busy spins before yielding
+    private static final int YIELD_TRIES = 10; // yields before parking
+
+    /**** Ring storage ****/
+    private final Object[] slots; // preallocated once, never resized
+    private final int mask; // slots.length-1, slots.length being a power of two
+
+    /**** Sequence counters ****/
+    private final AtomicLong head = new AtomicLong(0); // next sequence to consume, advanced by CAS
+    private final AtomicLong tail = new AtomicLong(0); // next sequence to produce, only written by producer
+
+    /**** Parked threads ****/
+    private volatile Thread parkedConsumer; // set while the consumer is parked waiting for an element
+    private volatile Thread parkedProducer; // set while the producer is parked waiting for a free slot
+
+    /**** Ring's lifespan variable ****/
+    private volatile boolean closed = false;
+
+    /**** Statistics ****/
+    private volatile int highWaterMark = 0; // max depth ever observed, only written by producer
+
+
+
+    /***************************************************
+     *                                                 *
+     *           CONSTRUCTOR & "DESTRUCTOR"            *
+     *                                                 *
+     ***************************************************/
+
+
+
+    StreamBufferRing(int capacity)
+    {
+        if ( capacity < 1 )
+            throw new IllegalArgumentException("capacity must be positive");
+
+        int size = Integer.highestOneBit(capacity);
+        if ( size < capacity )
+            size <<= 1;
+
+        slots = new Object[size];
+        mask = size-1;
+    }
+
+
+
+    void close()
+    {   // wake up whoever is waiting, take() and put() will then give up
+        closed = true;
+        LockSupport.unpark(parkedConsumer);
+        LockSupport.unpark(parkedProducer);
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                 PRODUCER SIDE                   *
+     *                                                 *
+     ***************************************************/
+
+
+
+    boolean offer(E element)
+    {   // try to publish element, return false right away if the ring is full
+        long t = tail.get();
+        if ( t - head.get() > mask )
+            return false;
+
+        slots[(int) t & mask] = element;
+        tail.set(t+1); // volatile write, must be visible before we check parkedConsumer below
+
+        int depth = (int) (t+1 - head.get());
+        if ( depth > highWaterMark )
+            highWaterMark = depth;
+
+        Thread consumer = parkedConsumer;
+        if ( consumer != null )
+            LockSupport.unpark(consumer);
+        return true;
+    }
+
+
+
+    boolean put(E element)
+    {   // publish element, wait for a free slot if the ring is full
+        // return false if the ring got closed while waiting
+        int tries = 0;
+        while ( !offer(element) )
+        {
+            if ( closed )
+                return false;
+            tries = backOff(tries, true);
+        }
+        return true;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                 CONSUMER SIDE                   *
+     *                                                 *
+     ***************************************************/
+
+
+
+    @SuppressWarnings("unchecked")
+    E poll()
+    {   // try to consume an element, return null right away if the ring is empty
+        // slot is read BEFORE claiming it, the producer can't overwrite it until head moves past it
+        // slot isn't nulled afterward : once head moved, the producer may already be reusing it
+        long h;
+        E element;
+        do
+        {
+            h = head.get();
+            if ( h >= tail.get() )
+                return null;
+            element = (E) slots[(int) h & mask];
+        }
+        while ( !head.compareAndSet(h, h+1) );
+
+        Thread producer = parkedProducer;
+        if ( producer != null )
+            LockSupport.unpark(producer);
+        return element;
+    }
+
+
+
+    E take()
+    {   // consume an element, wait for one if the ring is empty
+        // return null if the ring got closed while waiting
+        int tries = 0;
+        E element;
+        while ( (element = poll()) == null )
+        {
+            if ( closed )
+                return null;
+            tries = backOff(tries, false);
+        }
+        return element;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                 WAIT STRATEGY                   *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private int backOff(int tries, boolean producerSide)
+    {   // spin, then yield, then park until the other side unparks us
+        if ( tries < SPIN_TRIES )
+            return tries+1;
+
+        if ( tries < SPIN_TRIES+YIELD_TRIES )
+        {
+            Thread.yield();
+            return tries+1;
+        }
+
+        Thread current = Thread.currentThread();
+        if ( producerSide )
+        {
+            parkedProducer = current;
+            if ( size() > mask && !closed ) // re-check after advertising ourselves, or we may never wake up
+                LockSupport.park(this);
+            parkedProducer = null;
+        }
+        else
+        {
+            parkedConsumer = current;
+            if ( size() == 0 && !closed )
+                LockSupport.park(this);
+            parkedConsumer = null;
+        }
+        return tries;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   STATISTICS                    *
+     *                                                 *
+     ***************************************************/
+
+
+
+    int size()
+    {   // current queue depth, approximative if called while both sides are running
+        return (int) (tail.get() - head.get());
+    }
+
+    int capacity()
+    {
+        return slots.length;
+    }
+
+    int getHighWaterMark()
+    {
+        return highWaterMark;
+    }
+}
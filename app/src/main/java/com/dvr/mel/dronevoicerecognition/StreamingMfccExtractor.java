@@ -0,0 +1,377 @@
+package com.dvr.mel.dronevoicerecognition;
+
+/**************************************************************************************************
+ *  StreamingMfccExtractor in a nutshell:                                                         *
+ *      _ compute MFCC while samples are being recorded, frame after frame, instead of reading    *
+ *        the Wav file back once the session is over                                              *
+ *      _ same parameters as native parametrisation()/computeMFCC() : 25 ms frames, 10 ms step,   *
+ *        12 coefficients, 20 filters, Hann window, FFT size being the next power of two          *
+ *      _ same filterbank as libmfccOptim (linear centers up to filter 14, logarithmic after,     *
+ *        same magnitude factors), followed by a log and a DCT                                    *
+ *      _ every table and scratch buffer is allocated once, feed() only allocates when the        *
+ *        utterance outgrows the preallocated feature storage                                     *
+ *      _ powerSpectra() / fromPowerSpectra() split extract() in two, so a parameter sweep can    *
+ *        share the FFT frames between extractors differing only by numFilters or dimMfcc         *
+ *                                                                                                *
+ *  Differences with native computeMFCC() :                                                       *
+ *      _ samples are scaled by 1/32768 instead of the whole signal's norm (unknown while         *
+ *        streaming), which only shifts the 0th coefficient                                       *
+ *      _ only complete frames are kept, no zero padded last frame                                *
+ *************************************************************************************************/
+
+
+
+
+class StreamingMfccExtractor
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    /**** Default parameters, matching native parametrisation() ****/
+    static final int DEFAULT_FRAME_MS = 25;
+    static final int DEFAULT_STEP_MS = 10;
+    static final int DEFAULT_DIM_MFCC = 12;
+    static final int DEFAULT_NUM_FILTERS = 20;
+    private static final int INITIAL_FRAMES = 200; // preallocated feature storage <=> 2 s of speech
+    private static final int FORMAT_VERSION = 1; // bump it whenever the computation itself changes
+
+    /**** Parameters ****/
+    final int sampleRate;
+    final int frameLength; // samples per frame
+    final int frameStep; // samples between two frame starts
+    final int dimMfcc; // coefficients kept per frame
+    final int numFilters; // mel filters
+
+    /**** Precomputed tables ****/
+    private final Fft fft;
+    private final float[] window; // Hann window, frameLength values
+    private final float[][] filterWeights; // [filter][bin - filterFirstBin[filter]]
+    private final int[] filterFirstBin;
+    private final float[][] dctTable; // [coefficient][filter], normalization included
+
+    /**** Scratch buffers ****/
+    private final short[] history; // circular, last frameLength samples
+    private final float[] frame; // fft.size() windowed samples, zero padded
+    private final float[] power; // fft.size()/2+1 spectrum values
+    private final float[] logEnergies; // numFilters values
+
+    /**** Stream state ****/
+    private int historyIndex = 0; // next slot to be written in history
+    private long samplesFed = 0; // samples fed since last reset()
+    private long nextFrameEnd; // samplesFed value at which the next frame is complete
+
+    /**** Output ****/
+    private float[] features; // frame-major coefficients, grows by doubling
+    private int nbFrames = 0;
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  CONSTRUCTORS                   *
+     *                                                 *
+     ***************************************************/
+
+
+
+    StreamingMfccExtractor(int sampleRate_)
+    {
+        this(sampleRate_, DEFAULT_FRAME_MS, DEFAULT_STEP_MS, DEFAULT_DIM_MFCC, DEFAULT_NUM_FILTERS);
+    }
+
+
+
+    StreamingMfccExtractor(int sampleRate_, int frameMs, int stepMs, int dimMfcc_, int numFilters_)
+    {
+        if ( dimMfcc_ > numFilters_ )
+            throw new IllegalArgumentException("dimMfcc can't be greater than numFilters");
+
+        sampleRate = sampleRate_;
+        frameLength = sampleRate*frameMs/1000;
+        frameStep = sampleRate*stepMs/1000;
+        dimMfcc = dimMfcc_;
+        numFilters = numFilters_;
+
+        int fftSize = Integer.highestOneBit(frameLength);
+        if ( fftSize < frameLength )
+            fftSize <<= 1;
+        fft = new Fft(fftSize);
+
+        // Hann window
+        window = new float[frameLength];
+        for ( int i=0; i<frameLength; ++i )
+            window[i] = (float) (0.5 - 0.5*Math.cos(2*Math.PI*i/(frameLength-1)));
+
+        // libmfccOptim's triangular filters, only their non-zero bins are stored
+        filterWeights = new float[numFilters][];
+        filterFirstBin = new int[numFilters];
+        int nbBins = fftSize/2+1;
+        for ( int l=1; l<=numFilters; ++l )
+        {
+            float previous = centerFrequency(l-1);
+            float center = centerFrequency(l);
+            float next = centerFrequency(l+1);
+            float magnitude = magnitudeFactor(l);
+
+            int first = (int) Math.ceil(previous*fftSize/sampleRate);
+            int last = Math.min(nbBins-1, (int) Math.floor(next*fftSize/sampleRate));
+            first = Math.min(first, last);
+            float[] weights = new float[last-first+1];
+            for ( int k=first; k<=last; ++k )
+            {
+                float frequency = (float) k*sampleRate/fftSize;
+                float weight = 0;
+                if ( frequency >= previous && frequency < center )
+                    weight = (frequency-previous)/(center-previous);
+                else if ( frequency >= center && frequency < next )
+                    weight = (frequency-next)/(center-next);
+                weights[k-first] = weight*magnitude;
+            }
+            filterWeights[l-1] = weights;
+            filterFirstBin[l-1] = first;
+        }
+
+        // DCT with libmfccOptim's normalization factors
+        dctTable = new float[dimMfcc][numFilters];
+        for ( int i=0; i<dimMfcc; ++i )
+        {
+            double normalization = Math.sqrt( (i == 0 ? 1.0 : 2.0) / numFilters );
+            for ( int l=1; l<=numFilters; ++l )
+                dctTable[i][l-1] = (float) (normalization * Math.cos( (i*Math.PI/numFilters)*(l-0.5) ));
+        }
+
+        history = new short[frameLength];
+        frame = new float[fftSize];
+        power = new float[nbBins];
+        logEnergies = new float[numFilters];
+        features = new float[INITIAL_FRAMES*dimMfcc];
+        reset();
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                STREAMING ROUTINES               *
+     *                                                 *
+     ***************************************************/
+
+
+
+    void reset()
+    {   // start a new utterance, keeps every preallocated buffer
+        historyIndex = 0;
+        samplesFed = 0;
+        nextFrameEnd = frameLength;
+        nbFrames = 0;
+    }
+
+
+
+    void feed(short[] samples, int offset, int length)
+    {   // append samples[offset, offset+length[ to the current utterance
+        int end = offset+length;
+        for ( int i=offset; i<end; ++i )
+        {
+            history[historyIndex] = samples[i];
+            historyIndex = (historyIndex+1) % frameLength;
+
+            if ( ++samplesFed == nextFrameEnd )
+            {
+                computeFrame();
+                nextFrameEnd += frameStep;
+            }
+        }
+    }
+
+
+
+    FeatureMatrix finish(long keptSamples)
+    {   // close the current utterance, keeping frames lying entirely in its first keptSamples samples
+        // then reset() for the next one
+        int kept = 0;
+        if ( keptSamples >= frameLength )
+            kept = (int) Math.min(nbFrames, (keptSamples-frameLength)/frameStep + 1);
+
+        float[] data = new float[kept*dimMfcc];
+        System.arraycopy(features, 0, data, 0, data.length);
+        reset();
+        return new FeatureMatrix(data, kept, dimMfcc);
+    }
+
+
+
+    FeatureMatrix extract(short[] samples, int offset, int length)
+    {   // whole utterance at once, for recordings already in memory
+        reset();
+        feed(samples, offset, length);
+        return finish(length);
+    }
+
+
+
+    int getFrameCount()
+    {
+        return nbFrames;
+    }
+
+
+
+    int getNbBins()
+    {   // values per frame in powerSpectra()
+        return power.length;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *              SHARED POWER SPECTRA               *
+     *                                                 *
+     ***************************************************/
+
+
+
+    float[] powerSpectra(short[] samples, int offset, int length)
+    {   // power spectrum of every complete frame, frame-major (getNbBins() values each), same frames as extract()
+        int count = length < frameLength ? 0 : (length-frameLength)/frameStep + 1;
+        float[] spectra = new float[count*power.length];
+        for ( int f=0; f<count; ++f )
+        {
+            int start = offset + f*frameStep;
+            for ( int i=0; i<frameLength; ++i )
+                frame[i] = window[i] * samples[start+i] / 32768f;
+            for ( int i=frameLength; i<frame.length; ++i )
+                frame[i] = 0;
+
+            fft.powerSpectrum(frame, power);
+            System.arraycopy(power, 0, spectra, f*power.length, power.length);
+        }
+        return spectra;
+    }
+
+
+
+    FeatureMatrix fromPowerSpectra(float[] spectra)
+    {   // MFCC of spectra computed by an extractor with the same sampleRate, frameLength and frameStep
+        if ( spectra.length % power.length != 0 )
+            throw new IllegalArgumentException("spectra of another FFT size");
+
+        int count = spectra.length / power.length;
+        float[] data = new float[count*dimMfcc];
+        for ( int f=0; f<count; ++f )
+        {
+            System.arraycopy(spectra, f*power.length, power, 0, power.length);
+            computeLogEnergies();
+            computeCepstrum(data, f*dimMfcc);
+        }
+        return new FeatureMatrix(data, count, dimMfcc);
+    }
+
+
+
+    int getParameterHash()
+    {   // changes whenever any parameter changing the output does, used to invalidate stored features
+        int hash = FORMAT_VERSION;
+        hash = 31*hash + sampleRate;
+        hash = 31*hash + frameLength;
+        hash = 31*hash + frameStep;
+        hash = 31*hash + dimMfcc;
+        hash = 31*hash + numFilters;
+        return hash;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                FRAME COMPUTATION                *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private void computeFrame()
+    {   // history holds the last frameLength samples, oldest one at historyIndex
+        for ( int i=0; i<frameLength; ++i )
+            frame[i] = window[i] * history[(historyIndex+i) % frameLength] / 32768f;
+        for ( int i=frameLength; i<frame.length; ++i )
+            frame[i] = 0;
+
+        fft.powerSpectrum(frame, power);
+        computeLogEnergies();
+
+        if ( (nbFrames+1)*dimMfcc > features.length )
+        {   // utterance outgrew the storage, double it
+            float[] bigger = new float[features.length*2];
+            System.arraycopy(features, 0, bigger, 0, features.length);
+            features = bigger;
+        }
+        computeCepstrum(features, nbFrames*dimMfcc);
+        ++nbFrames;
+    }
+
+
+
+    private void computeLogEnergies()
+    {   // filterbank, then log ( log(0) being undefined, 0 stays 0 as in libmfccOptim )
+        for ( int l=0; l<numFilters; ++l )
+        {
+            float[] weights = filterWeights[l];
+            int first = filterFirstBin[l];
+            float energy = 0;
+            for ( int k=0; k<weights.length; ++k )
+                energy += power[first+k]*weights[k];
+            logEnergies[l] = energy > 0 ? (float) Math.log(energy) : 0;
+        }
+    }
+
+
+
+    private void computeCepstrum(float[] out, int outOffset)
+    {
+        for ( int i=0; i<dimMfcc; ++i )
+        {
+            float[] cosines = dctTable[i];
+            float sum = 0;
+            for ( int l=0; l<numFilters; ++l )
+                sum += logEnergies[l]*cosines[l];
+            out[outOffset+i] = sum;
+        }
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *           libmfccOptim's FILTER LAYOUT          *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static float centerFrequency(int filterBand)
+    {   // equally spaced up to filter 14, then on a logarithmic scale
+        if ( filterBand == 0 )
+            return 0;
+        if ( filterBand <= 14 )
+            return 200.0f*filterBand/3.0f;
+        return (float) (Math.pow(1.0711703, filterBand-14.0) * 1073.4);
+    }
+
+
+
+    static float magnitudeFactor(int filterBand)
+    {
+        if ( filterBand >= 1 && filterBand <= 14 )
+            return 0.015f;
+        if ( filterBand >= 15 && filterBand <= 48 )
+            return 2.0f / (centerFrequency(filterBand+1) - centerFrequency(filterBand-1));
+        return 0;
+    }
+}
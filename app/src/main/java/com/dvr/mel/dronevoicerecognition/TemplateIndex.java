@@ -0,0 +1,380 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import java.util.Arrays;
+
+/**************************************************************************************************
+ *  TemplateIndex in a nutshell:                                                                  *
+ *      _ reference templates, each one with its lower and upper envelopes precomputed, so a      *
+ *        template can be rejected by a cheap LB_Keogh lower bound instead of a full DTW          *
+ *      _ lower bound : every warping path goes through every hypothesis frame j, with a step     *
+ *        weight >= 1, against a reference frame of j's band. The squared distance to the band's  *
+ *        envelope [L, U] (per coefficient) is below any of these frame distances, so             *
+ *            LB = sum over j of dist^2(hypothesis[j], [L(j), U(j)]) / (I+J)  <=  DTW distance    *
+ *        holding for any band radius (DtwEngine's band, same rows for a given column). The first *
+ *        and last columns use the exact d(1,1) and d(I,J) when bigger (LB_Kim's endpoints)       *
+ *      _ envelopes are stored as sparse tables (min / max over 2^level frames from each frame),  *
+ *        so the envelope of any window is 2 lookups, whatever the hypothesis length              *
+ *      _ orderByLowerBound() computes every bound of an utterance and sorts the templates by it, *
+ *        best candidates first : the caller runs DTW on them while their bound is below its best *
+ *        distance so far and counts the others as pruned (addStatistics())                       *
+ *      _ sorting allocates nothing : bound and template index are packed in one long per         *
+ *        template (a non negative float's bits sort as an int), sorted in a reused long[]        *
+ *      _ shortlisting, for big vocabularies : given a shortlist size, only the templates of the  *
+ *        commands whose mean frame is the closest to the utterance's are bounded and returned,   *
+ *        the others are left out without even a lower bound (a heuristic, not a bound)           *
+ *                                                                                                *
+ *  Limitations: _ not thread safe, bounds and order are reused from one utterance to the next    *
+ *                 (same as DtwEngine's rows)                                                     *
+ *************************************************************************************************/
+
+
+
+
+class TemplateIndex
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private final FeatureMatrix[] templates;
+    private final int[] commandIds; // VocabularyRegistry ID of each template's command
+    private final int nbCommands;
+    private final int bandRadius; // same as the DtwEngine scoring the survivors
+
+    /**** Mean frame of each template, means[t*dim + k], for shortlisting ****/
+    private final float[] means;
+
+    /**** Envelopes, lower[t][level][i*dim + k] = min of coefficient k over frames [i, i+2^level[ ****/
+    private final float[][][] lower;
+    private final float[][][] upper;
+
+    /**** Last utterance's bounds, reused ****/
+    private final float[] bounds;
+    private final int[] order; // templates, smallest bound first, order[0, orderedCount[
+    private int orderedCount = 0;
+    private final long[] sortKeys; // scratch, (bound's bits << 32) | template, or command for shortlisting
+    private final float[] commandGaps; // distance between an utterance's mean frame and each command's
+    private final boolean[] shortlisted; // commands kept by the last shortlist()
+    private final float[] utteranceMean; // utterance's mean frame, for shortlisting
+
+    /**** Statistics ****/
+    private long candidateCount = 0; // templates considered
+    private long prunedCount = 0; // rejected by their lower bound, without any DTW
+    private long shortlistedOutCount = 0; // left out by shortlisting, without any bound
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  CONSTRUCTOR                    *
+     *                                                 *
+     ***************************************************/
+
+
+
+    TemplateIndex(FeatureMatrix[] templates_, int bandRadius_)
+    {   // every template being its own command
+        this(templates_, identity(templates_.length), bandRadius_);
+    }
+
+
+
+    TemplateIndex(FeatureMatrix[] templates_, int[] commandIds_, int bandRadius_)
+    {   // templates must all be non empty and share the same dim
+        templates = templates_;
+        commandIds = commandIds_;
+        bandRadius = bandRadius_;
+        lower = new float[templates.length][][];
+        upper = new float[templates.length][][];
+        bounds = new float[templates.length];
+        order = new int[templates.length];
+
+        int maxId = -1;
+        for ( int id : commandIds )
+            maxId = Math.max(maxId, id);
+        nbCommands = maxId + 1;
+        commandGaps = new float[nbCommands];
+        shortlisted = new boolean[nbCommands];
+        sortKeys = new long[Math.max(templates.length, nbCommands)];
+
+        int dim = templates.length == 0 ? 0 : templates[0].dim;
+        utteranceMean = new float[dim];
+        means = new float[templates.length*dim];
+        for ( int t=0; t<templates.length; ++t )
+            meanFrame(templates[t], means, t*dim);
+
+        for ( int t=0; t<templates.length; ++t )
+        {
+            FeatureMatrix template = templates[t];
+            int nbLevels = 32 - Integer.numberOfLeadingZeros(template.nbFrames);
+            lower[t] = new float[nbLevels][];
+            upper[t] = new float[nbLevels][];
+            lower[t][0] = Arrays.copyOf(template.data, template.nbFrames*template.dim);
+            upper[t][0] = lower[t][0];
+
+            for ( int level=1; level<nbLevels; ++level )
+            {   // window of 2^level frames = 2 windows of 2^(level-1) frames
+                int half = 1 << (level-1);
+                int nbWindows = template.nbFrames - (1 << level) + 1;
+                float[] lowerPrevious = lower[t][level-1], upperPrevious = upper[t][level-1];
+                float[] lowerLevel = new float[nbWindows*template.dim];
+                float[] upperLevel = new float[nbWindows*template.dim];
+                for ( int v=0; v<nbWindows*template.dim; ++v )
+                {
+                    int w = v + half*template.dim;
+                    lowerLevel[v] = Math.min( lowerPrevious[v], lowerPrevious[w] );
+                    upperLevel[v] = Math.max( upperPrevious[v], upperPrevious[w] );
+                }
+                lower[t][level] = lowerLevel;
+                upper[t][level] = upperLevel;
+            }
+        }
+    }
+
+
+
+    int size()
+    {
+        return templates.length;
+    }
+
+
+
+    FeatureMatrix getTemplate(int t)
+    {
+        return templates[t];
+    }
+
+
+
+    int getCommand(int t)
+    {
+        return commandIds[t];
+    }
+
+
+
+    private static int[] identity(int length)
+    {
+        int[] ids = new int[length];
+        for ( int i=0; i<length; ++i )
+            ids[i] = i;
+        return ids;
+    }
+
+
+
+    private static void meanFrame(FeatureMatrix matrix, float[] output, int offset)
+    {
+        for ( int k=0; k<matrix.dim; ++k )
+            output[offset+k] = 0;
+        for ( int i=0; i<matrix.nbFrames; ++i )
+            for ( int k=0; k<matrix.dim; ++k )
+                output[offset+k] += matrix.data[i*matrix.dim+k];
+        for ( int k=0; k<matrix.dim; ++k )
+            output[offset+k] /= Math.max(1, matrix.nbFrames);
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                 LOWER BOUNDS                    *
+     *                                                 *
+     ***************************************************/
+
+
+
+    float lowerBound(int t, FeatureMatrix hypothesis, float threshold)
+    {   // lower bound of DtwEngine's distance, or Float.POSITIVE_INFINITY once it's above threshold
+        FeatureMatrix template = templates[t];
+        int I = template.nbFrames, J = hypothesis.nbFrames, dim = template.dim;
+        if ( J == 0 )
+            return Float.POSITIVE_INFINITY;
+        if ( hypothesis.dim != dim )
+            throw new IllegalArgumentException("Can't compare " + dim + " and " + hypothesis.dim
+                                               + " coefficients frames");
+
+        float[] h = hypothesis.data;
+        float rawThreshold = threshold * (I+J);
+        int radius = DtwEngine.effectiveRadius(I, J, bandRadius);
+        float sum = 0;
+
+        for ( int j=1; j<=J; ++j )
+        {
+            // rows whose band holds column j (a few more at worst), 1-based
+            int first = (int) Math.max( 1, (long) (j-radius)*I/J );
+            int last = (int) Math.min( I, ((long) (j+radius+1)*I + J-1)/J );
+
+            // sparse table lookup : 2 windows of 2^level frames covering [first, last]
+            int level = 31 - Integer.numberOfLeadingZeros(last-first+1);
+            float[] lowerLevel = lower[t][level], upperLevel = upper[t][level];
+            int a = (first-1)*dim, b = (last - (1 << level))*dim;
+            int hOffset = (j-1)*dim;
+
+            float column = 0;
+            for ( int k=0; k<dim; ++k )
+            {
+                float value = h[hOffset+k];
+                float low = Math.min( lowerLevel[a+k], lowerLevel[b+k] );
+                float high = Math.max( upperLevel[a+k], upperLevel[b+k] );
+                if ( value > high )
+                    column += (value-high)*(value-high);
+                else if ( value < low )
+                    column += (low-value)*(low-value);
+            }
+
+            // every path starts at (1,1) and ends at (I,J), their exact distances are tighter
+            if ( j == 1 )
+                column = Math.max( column, frameDistance(template.data, 0, h, 0, dim) );
+            if ( j == J )
+                column = Math.max( column, frameDistance(template.data, (I-1)*dim, h, hOffset, dim) );
+
+            sum += column;
+            if ( sum > rawThreshold )
+                return Float.POSITIVE_INFINITY;
+        }
+        return sum / (I+J);
+    }
+
+
+
+    private static float frameDistance(float[] reference, int refOffset, float[] hypothesis, int hypOffset, int dim)
+    {   // squared euclidean distance, same as DtwEngine's d(i,j)
+        float d = 0;
+        for ( int k=0; k<dim; ++k )
+        {
+            float diff = reference[refOffset+k] - hypothesis[hypOffset+k];
+            d += diff*diff;
+        }
+        return d;
+    }
+
+
+
+    int orderByLowerBound(FeatureMatrix hypothesis)
+    {   // number of templates ordered, read them with getOrdered(), smallest lower bound first
+        return orderByLowerBound(hypothesis, 0);
+    }
+
+
+
+    int orderByLowerBound(FeatureMatrix hypothesis, int shortlistSize)
+    {   // same, for the templates of the shortlistSize closest commands only (every one if <= 0)
+        boolean shortlisting = shortlistSize > 0 && shortlistSize < nbCommands;
+        if ( shortlisting )
+            shortlist(hypothesis, shortlistSize);
+
+        int n = 0;
+        for ( int t=0; t<templates.length; ++t )
+            if ( !shortlisting || shortlisted[commandIds[t]] )
+            {
+                bounds[t] = lowerBound(t, hypothesis, Float.POSITIVE_INFINITY);
+                sortKeys[n++] = sortKey(bounds[t], t);
+            }
+        shortlistedOutCount += templates.length - n;
+
+        Arrays.sort(sortKeys, 0, n); // ties keep the templates' order
+        for ( int o=0; o<n; ++o )
+            order[o] = (int) sortKeys[o];
+        orderedCount = n;
+        return n;
+    }
+
+
+
+    int getOrdered(int o)
+    {   // o-th template of the last orderByLowerBound(), o < the count it returned
+        if ( o >= orderedCount )
+            throw new IndexOutOfBoundsException(o + " >= " + orderedCount + " ordered templates");
+        return order[o];
+    }
+
+
+
+    private static long sortKey(float key, int index)
+    {   // key >= 0 (or +INF) : its bits compare as the floats do, index breaks ties
+        return ( (long) Float.floatToIntBits(key + 0f) << 32 ) | index; // + 0f turns -0 into +0
+    }
+
+
+
+    private void shortlist(FeatureMatrix hypothesis, int shortlistSize)
+    {   // commands whose closest template, by mean frame, is among the shortlistSize closest ones
+        int dim = hypothesis.dim;
+        float[] mean = utteranceMean;
+        meanFrame(hypothesis, mean, 0);
+
+        Arrays.fill(commandGaps, Float.POSITIVE_INFINITY);
+        for ( int t=0; t<templates.length; ++t )
+        {
+            float gap = 0;
+            for ( int k=0; k<dim; ++k )
+                gap += (means[t*dim+k] - mean[k]) * (means[t*dim+k] - mean[k]);
+            commandGaps[commandIds[t]] = Math.min( commandGaps[commandIds[t]], gap );
+        }
+
+        for ( int c=0; c<nbCommands; ++c )
+            sortKeys[c] = sortKey(commandGaps[c], c);
+        Arrays.sort(sortKeys, 0, nbCommands);
+
+        Arrays.fill(shortlisted, false);
+        for ( int i=0; i<shortlistSize; ++i )
+            shortlisted[(int) sortKeys[i]] = true;
+    }
+
+
+
+    float getBound(int t)
+    {   // template t's lower bound, as computed by the last orderByLowerBound()
+        return bounds[t];
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  STATISTICS                     *
+     *                                                 *
+     ***************************************************/
+
+
+
+    void addStatistics(int candidates, int pruned)
+    {
+        candidateCount += candidates;
+        prunedCount += pruned;
+    }
+
+
+
+    long getCandidateCount()
+    {
+        return candidateCount;
+    }
+
+
+
+    long getPrunedCount()
+    {
+        return prunedCount;
+    }
+
+
+
+    long getShortlistedOutCount()
+    {
+        return shortlistedOutCount;
+    }
+
+
+
+    float getPruningRate()
+    {   // share of the templates considered so far that didn't need any DTW
+        return candidateCount == 0 ? 0 : (float) prunedCount / candidateCount;
+    }
+}
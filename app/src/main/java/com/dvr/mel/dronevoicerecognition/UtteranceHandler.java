@@ -0,0 +1,32 @@
+package com.dvr.mel.dronevoicerecognition;
+
+/**************************************************************************************************
+ *  UtteranceHandler in a nutshell:                                                               *
+ *      _ what WavStreamHandler does with each utterance the VAD delimits, so the same capture    *
+ *        pipeline can record a corpus (CorpusRecorder) or recognize commands live                *
+ *        (LiveRecognizer) without knowing which Activity is driving it                           *
+ *      _ every call happens on WavStreamHandler's thread, in that order :                        *
+ *            onUtteranceStart()   VAD detected an onset                                          *
+ *            write()              every sample of the utterance, pre-roll included, as they come *
+ *                                 (hangover included too, see onUtteranceEnd())                  *
+ *            onUtteranceEnd()     VAD detected the end, features are already computed            *
+ *      _ implementations should return quickly, the consumer doesn't take any streamBuffer       *
+ *        meanwhile                                                                               *
+ *************************************************************************************************/
+
+
+
+
+interface UtteranceHandler extends PreRollBuffer.SampleSink
+{
+    void onUtteranceStart(long startSample);
+
+    void onUtteranceEnd(long length, FeatureMatrix features, long speechEndNanos);
+        // length : samples actually belonging to the utterance, written ones past it are hangover
+        // features : MFCC of those length samples
+        // speechEndNanos : System.nanoTime() at which the last sample of the utterance was captured
+
+    void close();
+        // called once WavStreamHandler's thread is over (see WavStreamHandler.close()), never concurrently
+        // with the calls above
+}
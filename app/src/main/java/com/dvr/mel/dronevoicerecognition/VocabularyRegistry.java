@@ -0,0 +1,107 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**************************************************************************************************
+ *  VocabularyRegistry in a nutshell:                                                             *
+ *      _ the recognized vocabulary, built from AppInfo.commands : every command gets an          *
+ *        integer ID (its index in AppInfo.commands), used instead of its name wherever a         *
+ *        command is recognized or counted : reference templates and centroids (FeatureCache,     *
+ *        CentroidStore), the recognizers (LiveRecognizer, TemplateIndex, RecognitionExecutor),   *
+ *        confusion matrices and drone packets. Recordings keep being named after the command     *
+ *      _ immutable : build a new one with ofAppInfo() whenever the commands change, a running    *
+ *        recognizer keeps the vocabulary it was built with                                       *
+ *      _ newConfusionMatrix() : a ConfusionMatrix over the IDs, as RecognitionExecutor returns   *
+ *************************************************************************************************/
+
+
+
+
+class VocabularyRegistry
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static final int UNKNOWN = -1; // ID of a command out of the vocabulary
+
+    private final List<String> commands; // ordered by ID
+    private final Map<String, Integer> ids = new HashMap<>(); // command -> ID
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  CONSTRUCTOR                    *
+     *                                                 *
+     ***************************************************/
+
+
+
+    VocabularyRegistry(List<String> commands_)
+    {   // IDs are commands_'s indexes, a command can't be registered twice
+        commands = Collections.unmodifiableList(new ArrayList<>(commands_));
+        for ( int id=0; id<commands.size(); ++id )
+            if ( ids.put(commands.get(id), id) != null )
+                throw new IllegalArgumentException("command " + commands.get(id) + " is registered twice");
+    }
+
+
+
+    static VocabularyRegistry ofAppInfo()
+    {
+        return new VocabularyRegistry(AppInfo.commands);
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   ROUTINES                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    int size()
+    {
+        return commands.size();
+    }
+
+
+
+    int idOf(String command)
+    {   // command's ID, or UNKNOWN
+        Integer id = ids.get(command);
+        return id == null ? UNKNOWN : id;
+    }
+
+
+
+    String nameOf(int id)
+    {
+        return commands.get(id);
+    }
+
+
+
+    List<String> getCommands()
+    {   // unmodifiable, ordered by ID
+        return commands;
+    }
+
+
+
+    ConfusionMatrix newConfusionMatrix()
+    {
+        return new ConfusionMatrix(size());
+    }
+}
@@ -0,0 +1,34 @@
+package com.dvr.mel.dronevoicerecognition;
+
+/**************************************************************************************************
+ *  VoiceActivityDetector in a nutshell:                                                          *
+ *      _ pluggable speech/silence decision stage used by WavStreamHandler                        *
+ *      _ fed with the mic stream, buffer after buffer, whatever their size                       *
+ *      _ report speech boundaries as ABSOLUTE sample positions in the stream (first sample ever  *
+ *        processed being position 0), so boundaries don't depend on capture buffers' edges       *
+ *************************************************************************************************/
+
+
+
+
+interface VoiceActivityDetector
+{
+    interface Listener
+    {
+        // speech begins at startSample, called while processing the buffer where it was detected
+        void onSpeechStart(long startSample);
+
+        // speech ended right before endSample, endSample may lie in an already processed buffer
+        // because of the hangover delay
+        void onSpeechEnd(long endSample);
+    }
+
+    // analyse samples[offset, offset+length[, calling listener back for each detected boundary
+    void process(short[] samples, int offset, int length, Listener listener);
+
+    // absolute position of the next sample to be processed
+    long getPosition();
+
+    // forget everything, including noise calibration and position
+    void reset();
+}
@@ -0,0 +1,191 @@
+package com.dvr.mel.dronevoicerecognition;
+
+// NIO imports
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**************************************************************************************************
+ *  WavFileReader in a nutshell:                                                                  *
+ *      _ read back PCM RIFF Wav files, the ones written by WavFileSink or any other 16 bits PCM  *
+ *      _ the whole file is memory-mapped, samples are bulk copied from the mapping's             *
+ *        LITTLE_ENDIAN ShortBuffer view, no intermediate byte[] and no per-sample decoding       *
+ *      _ chunks are walked as the RIFF format intends ("LIST" or any unknown chunk before        *
+ *        "data" is skipped), instead of assuming a 44 bytes header                               *
+ *      _ checkCanonicalHeader() is stricter, for the batch evaluator : the file must start with  *
+ *        the very 44 bytes header WavFileSink.fillHeader() writes for its format and length      *
+ *                                                                                                *
+ *  refers to : http://soundfile.sapp.org/doc/WaveFormat/ for more information on WAV header      *
+ *************************************************************************************************/
+
+
+
+
+class WavFileReader
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    /**** Audio format, read from the "fmt " sub-chunk ****/
+    int sampleRate;
+    int nbrOfChannel;
+    int bitsPerSample;
+
+    /**** PCM data ****/
+    private final File file;
+    private MappedByteBuffer mapping; // whole file, LITTLE_ENDIAN
+    private int dataOffset; // first byte of the "data" sub-chunk's PCM audio
+    private int dataLength; // PCM audio length in bytes
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  CONSTRUCTOR                    *
+     *                                                 *
+     ***************************************************/
+
+
+
+    WavFileReader(File file_) throws IOException
+    {   // map the file and parse its header, samples are only copied by readSamples()
+        file = file_;
+
+        try ( RandomAccessFile input = new RandomAccessFile(file, "r");
+              FileChannel channel = input.getChannel() )
+        {   // the mapping stays valid once the channel is closed
+            if ( channel.size() > Integer.MAX_VALUE )
+                throw new WavFormatException(file, "too big to be mapped");
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        mapping.order(ByteOrder.LITTLE_ENDIAN);
+
+        parseHeader();
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   ROUTINES                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    short[] readSamples()
+    {   // every sample of the file, channels interleaved
+        short[] samples = new short[getNbrOfSamples()];
+        mapping.position(dataOffset);
+        mapping.slice().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(samples);
+        return samples;
+    }
+
+
+
+    int getNbrOfSamples()
+    {
+        return dataLength/2;
+    }
+
+
+
+    void checkCanonicalHeader() throws WavFormatException
+    {   // same header, byte for byte, as the one WavFileSink would have written for this audio
+        if ( dataOffset != WavFileSink.HEADER_SIZE )
+            throw new WavFormatException(file, "\"data\" sub-chunk at byte " + dataOffset + " instead of "
+                                               + WavFileSink.HEADER_SIZE);
+        if ( dataOffset + dataLength != mapping.limit() )
+            throw new WavFormatException(file, (mapping.limit() - dataOffset - dataLength) + " bytes after the PCM data");
+
+        ByteBuffer expected = ByteBuffer.allocate(WavFileSink.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        WavFileSink.fillHeader(expected, sampleRate, nbrOfChannel, bitsPerSample, dataLength);
+        for ( int i=0; i<WavFileSink.HEADER_SIZE; ++i )
+            if ( mapping.get(i) != expected.get(i) )
+                throw new WavFormatException(file, "unexpected " + headerField(i) + " (byte " + i + ")");
+    }
+
+
+
+    private static String headerField(int offset)
+    {   // name of the canonical header field holding offset, see WavFileSink.fillHeader()
+        if ( offset < 4 )  return "RIFF id";
+        if ( offset < 8 )  return "RIFF chunk size";
+        if ( offset < 12 ) return "WAVE format";
+        if ( offset < 16 ) return "\"fmt \" id";
+        if ( offset < 20 ) return "\"fmt \" sub-chunk size";
+        if ( offset < 22 ) return "audio format";
+        if ( offset < 24 ) return "number of channels";
+        if ( offset < 28 ) return "sample rate";
+        if ( offset < 32 ) return "byte rate";
+        if ( offset < 34 ) return "block alignment";
+        if ( offset < 36 ) return "bits per sample";
+        if ( offset < 40 ) return "\"data\" id";
+        return "\"data\" sub-chunk size";
+    }
+
+
+
+    private void parseHeader() throws WavFormatException
+    {
+        // RIFF chunk descriptor
+        if ( mapping.limit() < 12 || !hasId(0, "RIFF") || !hasId(8, "WAVE") )
+            throw new WavFormatException(file, "not a RIFF WAVE file");
+
+        boolean fmtFound = false;
+        int position = 12;
+        while ( position+8 <= mapping.limit() )
+        {
+            long chunkSize = mapping.getInt(position+4) & 0xFFFFFFFFL;
+            int chunkStart = position+8;
+
+            if ( hasId(position, "fmt ") )
+            {
+                if ( chunkSize < 16 || chunkStart+16 > mapping.limit() )
+                    throw new WavFormatException(file, "truncated \"fmt \" sub-chunk");
+                if ( mapping.getShort(chunkStart) != 1 )
+                    throw new WavFormatException(file, "compressed audio isn't supported");
+                nbrOfChannel = mapping.getShort(chunkStart+2);
+                sampleRate = mapping.getInt(chunkStart+4);
+                bitsPerSample = mapping.getShort(chunkStart+14);
+                if ( bitsPerSample != 16 )
+                    throw new WavFormatException(file, bitsPerSample + " bits samples aren't supported");
+                fmtFound = true;
+            }
+            else if ( hasId(position, "data") )
+            {
+                if ( !fmtFound )
+                    throw new WavFormatException(file, "\"data\" sub-chunk before \"fmt \"");
+                dataOffset = chunkStart;
+                // a recording interrupted before its header was completed says 0, trust the file's size then
+                long available = mapping.limit()-chunkStart;
+                dataLength = (int) ( (chunkSize == 0 || chunkSize > available) ? available : chunkSize );
+                dataLength -= dataLength % 2;
+                return;
+            }
+
+            position = (int) Math.min( mapping.limit(), chunkStart + chunkSize + (chunkSize & 1) ); // chunks are word aligned
+        }
+
+        throw new WavFormatException(file, "no \"data\" sub-chunk");
+    }
+
+
+
+    private boolean hasId(int position, String id)
+    {
+        for ( int i=0; i<4; ++i )
+            if ( mapping.get(position+i) != (byte) id.charAt(i) )
+                return false;
+        return true;
+    }
+}
@@ -0,0 +1,220 @@
+package com.dvr.mel.dronevoicerecognition;
+
+// NIO imports
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**************************************************************************************************
+ *  WavFileSink in a nutshell:                                                                    *
+ *      _ write PCM RIFF Wav files through a FileChannel, one file at a time                      *
+ *      _ samples go through a reusable direct ByteBuffer in LITTLE_ENDIAN order, a whole short[] *
+ *        is copied with one bulk put() on its ShortBuffer view, no per-sample byte shuffling     *
+ *      _ write a dummy header when opening, then patch it with a positional write on the SAME    *
+ *        channel when closing, and actually close that channel (no more leaked descriptors)      *
+ *                                                                                                *
+ *  refers to : http://soundfile.sapp.org/doc/WaveFormat/ for more information on WAV header      *
+ *************************************************************************************************/
+
+
+
+
+class WavFileSink
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static final int HEADER_SIZE = 44; // PCM RIFF Wav header size, in bytes
+
+    /**** Audio format ****/
+    private final int sampleRate; // in our usecase<=>16000, 16KHz
+    private final int nbrOfChannel; // 1 <=> mono, 2 <=> stereo
+    private final int bitsPerSample; // in our usecase<=>16 bits
+
+    /**** Reusable buffers ****/
+    private final ByteBuffer dataBuffer; // direct, little-endian, sized once
+    private final ShortBuffer dataView; // dataBuffer seen as shorts, target of the bulk put()
+    private final ByteBuffer headerBuffer; // direct, little-endian, HEADER_SIZE bytes
+
+    /**** Current output ****/
+    private RandomAccessFile outputFile;
+    private FileChannel channel;
+    private long audioLength; // Total length in bytes of the currently written PCM Audio's stream
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  CONSTRUCTOR                    *
+     *                                                 *
+     ***************************************************/
+
+
+
+    WavFileSink(int sampleRate_, int nbrOfChannel_, int bitsPerSample_, int maxSamplesPerWrite)
+    {
+        sampleRate = sampleRate_;
+        nbrOfChannel = nbrOfChannel_;
+        bitsPerSample = bitsPerSample_;
+
+        dataBuffer = ByteBuffer.allocateDirect(maxSamplesPerWrite*2).order(ByteOrder.LITTLE_ENDIAN);
+        dataView = dataBuffer.asShortBuffer(); // view inherits dataBuffer's byte order
+        headerBuffer = ByteBuffer.allocateDirect(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *               OUTPUT FILE ROUTINES              *
+     *                                                 *
+     ***************************************************/
+
+
+
+    void open(File file) throws IOException
+    {   // set the output file, previous one has to be closed first
+        // overWrite the file if it exists
+        if ( channel != null )
+            throw new IOException("WavFileSink is already writing " + file);
+
+        outputFile = new RandomAccessFile(file, "rw");
+        channel = outputFile.getChannel();
+        channel.truncate(0);
+        audioLength = 0;
+
+        // write DUMMY Wav header, will be completed in close() cause we need to know
+        // PCM Audio's Length before writing it
+        headerBuffer.clear();
+        while ( headerBuffer.hasRemaining() )
+            headerBuffer.put((byte) 0);
+        headerBuffer.flip();
+        writeFully(headerBuffer, 0);
+        channel.position(HEADER_SIZE);
+    }
+
+
+
+    void write(short[] samples, int offset, int length) throws IOException
+    {   // append samples[offset, offset+length[ to the PCM data, chunked by dataBuffer's capacity
+        int capacity = dataView.capacity();
+        while ( length > 0 )
+        {
+            int chunk = Math.min(length, capacity);
+
+            dataView.clear();
+            dataView.put(samples, offset, chunk); // bulk copy, converted to little-endian on the fly
+            dataBuffer.clear();
+            dataBuffer.limit(chunk*2);
+            while ( dataBuffer.hasRemaining() )
+                channel.write(dataBuffer);
+
+            audioLength += chunk*2;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+
+
+    void close() throws IOException
+    {   // complete Wav header with a positional write and release the file, does nothing if not opened
+        if ( channel == null )
+            return;
+
+        try
+        {
+            headerBuffer.clear();
+            fillHeader(headerBuffer, sampleRate, nbrOfChannel, bitsPerSample, audioLength);
+            headerBuffer.flip();
+            writeFully(headerBuffer, 0);
+        }
+        finally
+        {
+            channel.close();
+            outputFile.close();
+            channel = null;
+            outputFile = null;
+        }
+    }
+
+
+
+    void truncate(long audioLength_) throws IOException
+    {   // drop PCM data past audioLength_ bytes, does nothing if it's already shorter
+        if ( channel == null || audioLength_ >= audioLength )
+            return;
+
+        audioLength = Math.max(0, audioLength_);
+        channel.truncate(HEADER_SIZE+audioLength);
+        channel.position(HEADER_SIZE+audioLength);
+    }
+
+
+
+    boolean isOpen()
+    {
+        return channel != null;
+    }
+
+
+
+    long getAudioLength()
+    {
+        return audioLength;
+    }
+
+
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException
+    {   // positional write, doesn't move the channel's position
+        while ( buffer.hasRemaining() )
+            position += channel.write(buffer, position);
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  HEADER ROUTINE                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static void fillHeader(ByteBuffer header, int sampleRate, int nbrOfChannel, int bitsPerSample,
+                           long audioLength)
+    {   // put a complete Wav header at header's position, header HAS TO be in LITTLE_ENDIAN order
+        int bytePerSecond = bitsPerSample * sampleRate * nbrOfChannel / 8;
+        long dataAndSubHeaderSize = audioLength+36;
+        // (file Size-8)
+        // <=> (AudioLength+36)
+        // <=> (AudioLength+RIFF chunk + "fmt" sub-chunk + ("data" subchunk-audioData) )
+
+        // RIFF chunk descriptor
+        header.put((byte) 'R').put((byte) 'I').put((byte) 'F').put((byte) 'F'); // RIFF (start of "RIFF" chunk descriptor)
+        header.putInt((int) dataAndSubHeaderSize);
+        header.put((byte) 'W').put((byte) 'A').put((byte) 'V').put((byte) 'E'); // WAVE
+        // "fmt" sub-chunk
+        header.put((byte) 'f').put((byte) 'm').put((byte) 't').put((byte) ' '); // fmt (start of "fmt" sub-chunk)
+        header.putInt(16); // size of the fmt sub-chunk (minus the "fmt" start block 12->15) // 16 because it's PCM
+        header.putShort((short) 1); // compression setting, 1<=> no compression
+        header.putShort((short) nbrOfChannel); // number of channel
+        header.putInt(sampleRate); // sample rate (Hz)
+        header.putInt(bytePerSecond); // bytePerSecond
+        header.putShort((short) (nbrOfChannel*bitsPerSample/8)); // block alignment / number of bytes for one sample
+        header.putShort((short) bitsPerSample); // bitsPerSample
+        // "data" sub-chunk
+        header.put((byte) 'd').put((byte) 'a').put((byte) 't').put((byte) 'a'); // data (start of "data" sub-chunk)
+        header.putInt((int) audioLength); // Actual Audio Data (PCM) length
+    }
+}
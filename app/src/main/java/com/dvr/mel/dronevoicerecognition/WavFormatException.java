@@ -0,0 +1,18 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import java.io.File;
+import java.io.IOException;
+
+
+
+
+// custom Exception, thrown by WavFileReader for a file which isn't a PCM Wav file it can read
+class WavFormatException extends IOException
+{
+    private static final long serialVersionUID = 8848693827011951734L;
+
+    WavFormatException(File file, String message)
+    {
+        super(file + " : " + message);
+    }
+}
@@ -1,19 +1,18 @@
 package com.dvr.mel.dronevoicerecognition;
 
-import android.media.AudioFormat;
 // Stream specific imports
-import java.io.DataOutputStream;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 
 /**************************************************************************************************
  *  MicWavRecorder in a nutshell:                                                                 *
- *      _ evaluate mic stream, determine if it is relevant or not (silence) using RMS method      *
- *      _ handle IO stream, create PCM RIFF Wav files (dynamic header creation)                   *
- *      _ keep track of a silenceBuffer (for future optimized clean up algorithm)                 *
- *      _ triggers UI update based on mic stream                                                  *
+ *      _ evaluate mic stream, determine if it is relevant or not (silence) using a frame level   *
+ *        VoiceActivityDetector (SlidingRmsVad), so utterances start and stop on the exact sample *
+ *      _ keep a pre-roll of the last AppInfo.PRE_ROLL_MS of audio, flushed at the head of each   *
+ *        new utterance so its onset is never clipped                                             *
+ *      _ compute each utterance's MFCC while it is being spoken (StreamingMfccExtractor), so     *
+ *        they are ready as soon as the user stops talking                                        *
+ *      _ hand every utterance (samples, boundaries, features) over to micHandler's               *
+ *        UtteranceHandler : CorpusRecorder writes Wav files, LiveRecognizer recognizes commands  *
  *                                                                                                *
  *   Author : https://github.com/Aryetis                                                          *
  *************************************************************************************************/
@@ -33,41 +32,39 @@ class WavStreamHandler extends Thread
 
     /**** Associated thread ****/
     private MicWavRecorderHandler micHandler;
+    private UtteranceHandler utteranceHandler; // what to do with each utterance, micHandler's one
 
     /**** Audio associated variables ****/
-    private double silenceAvgRMSAmp = 0; // silence's average amplitude
-    private int bufferSizeByte; // bufferSizeByte = micHandler.bufferSizeByte; // size of following buffers IN BYTE
-    private int bufferSizeElmt; // bufferSizeElmt = micHandler.bufferSizeElmt; // number of Element per buffer
-    static private short[] streamBuffer; // copy of a queued streamBuffer, because we don't want to
-                                         // hold the producer's thread in hostage during our computing process
-                                         // basic "Producer/Consumer" protocol stuff
-    private long audioLength; // Total length in bytes of the currently recorded PCM Audio's stream
+    private int sampleRate;
+    private StreamingMfccExtractor mfccExtractor; // cepstral coefficients of the current utterance, computed as it goes
+    private VoiceActivityDetector vad; // speech/silence decision stage, works on 10 ms frames
+    private PreRollBuffer preRoll; // last samples of the stream, flushed when the user starts talking
+    private int preRollSamples; // how many samples before the onset are kept in a recording
+    private StreamBuffer streamBuffer; // streamBuffer taken from micHandler's StreamBufferPool, ours until
+                                       // released back, so the producer can't overwrite it meanwhile
 
     /**** State machine states variables ****/
-    private boolean userSpeaking = false; // boolean describing if user is currently speaking or not (using audioAnalyser)
-
-    /**** File Output and File stream variables ****/
-    private String commandName; // text of the current command being recorded (eg: "Avance", "Recule", etc)
-    private File corpusDir; // corpus's specific directory ( should be something like [corpusGlobalDir]/corpusName/ )
-    private File commandFile; // outputFile's path ( should be something like [corpusDir]/[orderName].wav" )
-    private FileOutputStream fos ; // stream used to fill the outputFile
-    private DataOutputStream dos; // middle-man stream between a short[] and a File
-                                  // because there is no direct way to write a short[] to a File .... Thanks Java
-
-    /**** WavStreamHandler's lifespan variable ****/
-    private volatile boolean runningState = true;
-
-    /**** UI Critical Section Routine ****/
-    private final Runnable nextCommandRoutine = new Runnable()
-    {
+    private boolean userSpeaking = false; // boolean describing if user is currently speaking or not (using vad)
+    private long bufferPosition; // absolute stream position of streamBuffer's first sample
+    private int writeCursor; // first sample of streamBuffer not written yet
+    private long utteranceStart; // absolute stream position of the current utterance's first sample
+    private final PreRollBuffer.SampleSink utteranceSink = new PreRollBuffer.SampleSink()
+    {   // every sample of the current utterance goes through here, from preRoll or from streamBuffer
         @Override
-        public void run()
+        public void write(short[] samples, int offset, int length) throws IOException
         {
-            micHandler.uiActivity.nextCommand();
-            synchronized (this) { this.notify(); }
+            utteranceHandler.write(samples, offset, length);
+            mfccExtractor.feed(samples, offset, length);
         }
     };
 
+    /**** Pre-roll settings ****/
+    private static final int PRE_ROLL_MARGIN_MS = 50; // extra pre-roll capacity, the VAD's onset may
+                                                       // lie up to its window's length in the past
+
+    /**** WavStreamHandler's lifespan variable ****/
+    private volatile boolean runningState = true;
+
 
 
 
@@ -84,37 +81,30 @@ class WavStreamHandler extends Thread
 
         // Link WavStreamHandler's Thread with MicWavRecorderHandler's Thread
         micHandler = micHandler_;
+        utteranceHandler = micHandler.utteranceHandler;
 
         // Initializing intern variables
-        bufferSizeByte = micHandler.bufferSizeByte;
-        bufferSizeElmt = micHandler.bufferSizeElmt;
-        streamBuffer = new short[bufferSizeElmt];
-
-        // Set output file and stream
-        // create specific corpus's subdirectory
-        corpusDir = new File(AppInfo.corpusGlobalDir, MicActivity.corpusName);
-        if ( !corpusDir.exists())
-            try
-            {
-                if ( ! corpusDir.mkdir() )
-                    throw new IOException("Couldn't create the following directory : "+corpusDir);
-            }
-            catch ( IOException ie ) { ie.printStackTrace(); }
-        // Update file's output
-        commandName = micHandler.uiActivity.getCurrentCommandName();
-        setOutput( commandName+".wav" );
+        sampleRate = micHandler.SAMPLE_RATE;
+        mfccExtractor = new StreamingMfccExtractor( sampleRate );
+        vad = new SlidingRmsVad( sampleRate, AppInfo.SENSITIVITY );
+        preRollSamples = sampleRate * AppInfo.PRE_ROLL_MS / 1000;
+        preRoll = new PreRollBuffer( preRollSamples + sampleRate * PRE_ROLL_MARGIN_MS / 1000 );
     }
 
 
 
     void close()
-    {
-        // close FileOutputStream and DataOutputStream
-        try { dos.close(); fos.close();}
-        catch (IOException e) { e.printStackTrace(); }
+    {   // micHandler's streamBufferPool has to be closed first, so take() doesn't wait anymore
 
-        // stop the run loop / thread
+        // stop the run loop / thread, then wait for the streamBuffer being consumed (if any) :
+        // utteranceHandler must never be closed while this thread may still be writing to it
         runningState = false;
+        if ( Thread.currentThread() != this )
+            try { join(); }
+            catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+
+        // close current output, if any
+        utteranceHandler.close();
     }
 
 
@@ -133,18 +123,18 @@ class WavStreamHandler extends Thread
 
         while (runningState)
         {
-            synchronized (MicWavRecorderHandler.lock) // CRITICAL SECTION : synchronize on the same lock with Producer
-            {
-                while (micHandler.streamBufferQueue.peek() == null)
-                {   // while streamBufferQueue is empty / nothing to consume =>  wait
-                    try { MicWavRecorderHandler.lock.wait(); } catch (InterruptedException ie) { ie.printStackTrace();}
-                }
-                // dequeuing streamBuffer from the Queue, immediately copy it in order to not hold back the "producer"
-                streamBuffer = micHandler.streamBufferQueue.remove();
-            }
+            // dequeuing streamBuffer from the pool, spin then park while it is empty
+            // no lock involved, so we never hold back the "producer"
+            streamBuffer = micHandler.streamBufferPool.take();
+            if ( streamBuffer == null )
+                break; // streamBufferPool has been closed <=> MicWavRecorderHandler is closing
+            PipelineLatency.recordSince(PipelineLatency.Stage.DEQUEUE, streamBuffer.captureNanos);
 
             // Consume the streamBuffer asynchronously
             computeStreamBuffer();
+
+            // give it back to the producer
+            micHandler.streamBufferPool.release(streamBuffer);
         }
     }
 
@@ -157,237 +147,93 @@ class WavStreamHandler extends Thread
 
 
     private void computeStreamBuffer()
-    {
-        /**** First silence calibration ****/
-        if ( silenceAvgRMSAmp == 0 )
-        {   // if silenceAvgRMSAmp has'nt been initialized
-            // just calibrate the silence value
-            silenceAvgRMSAmp = getRMSValue();
-            return;
-        }
+    {   // feed the streamBuffer to the VAD, which calls vadListener back on every speech boundary
+        // every sample between a start and an end boundary gets written, boundaries being sample-accurate
+        bufferPosition = vad.getPosition();
+        writeCursor = 0;
 
-        // Acquiring current Buffer RMS Average Amplitude
-        double newBufferAvgRMSAmp = getRMSValue();
+        vad.process(streamBuffer.data, 0, streamBuffer.length, vadListener);
+        PipelineLatency.recordSince(PipelineLatency.Stage.VAD, streamBuffer.captureNanos);
 
-        /**** Detect if ( "User starts talking" ) ****/
-        if ( newBufferAvgRMSAmp >= silenceAvgRMSAmp* AppInfo.SENSITIVITY && !userSpeaking )
-        {
-            // Switch userSpeaking's state flag
-            userSpeaking = true;
+        /**** Detect if ( "User is still talking ") ****/
+        if ( userSpeaking )
+            // Continue recording, from the onset if it was detected in this buffer
+            writeStreamBuffer(writeCursor, streamBuffer.length);
 
-            // Update UI (toggle progress bar circle thingy)
-            toggleUIRecordingStateValue();
+        // keep this buffer's tail around, next onset may need it
+        preRoll.push(streamBuffer.data, 0, streamBuffer.length);
+    }
 
-            // Start recording
-            writeStreamBuffer();
 
-            return;
-        }
 
-        /**** Detect if ( "User stops talking" ) ****/
-        if ( newBufferAvgRMSAmp < silenceAvgRMSAmp* AppInfo.SENSITIVITY && userSpeaking )
-        {
+    private final VoiceActivityDetector.Listener vadListener = new VoiceActivityDetector.Listener()
+    {
+        @Override
+        public void onSpeechStart(long startSample)
+        {   /**** Detect if ( "User starts talking" ) ****/
             // Switch userSpeaking's state flag
-            userSpeaking = false;
-
-            // Update UI (only toggle progress bar circle thingy)
-            toggleUIRecordingStateValue();
+            userSpeaking = true;
 
-            // Finish current recording, flush and close outputStream
-            try
-            {
-                writeStreamBuffer();
-                writeWavHeader(); // Complete file's Wav header
-                fos.close();
-            }
-            catch (IOException ie)
-            { ie.printStackTrace(); }
-
-            // Update the current Command to the next one (and update UI accordingly)
-            // modifying curCommandIndex, used right after that to get new commandName,
-            //    => Thus synchronized section
-            // AND modifying UI element from non-UI context
-            //    => Thus runOnUIThread subroutine
-            // Praise the all mighty """"Java security"""" at its finest ...
-            synchronized ( nextCommandRoutine )
+            // Start the utterance preRollSamples before the onset, as far as preRoll remembers
+            // samples from previous buffers come from preRoll, the rest from this streamBuffer
+            utteranceStart = Math.max( startSample-preRollSamples, preRoll.getStartPosition() );
+            writeCursor = (int) Math.max(0, utteranceStart-bufferPosition);
+            mfccExtractor.reset();
+            utteranceHandler.onUtteranceStart(utteranceStart);
+            if ( utteranceStart < bufferPosition )
             {
-                micHandler.uiActivity.runOnUiThread( nextCommandRoutine) ;
-                try { nextCommandRoutine.wait(); } catch (Exception e) { e.printStackTrace();}
+                try { preRoll.flushTo(utteranceStart, utteranceSink); }
+                catch (IOException ie) { ie.printStackTrace(); }
             }
-
-            // Set next file Output
-            commandName = micHandler.uiActivity.getCurrentCommandName(); // get new Command name
-
-            if ( commandName != null ) // getCurrentCommandName() returns null if going OOB / reaching the end of the List
-                // if Activity successfully switched to the next Command to record in the list
-                // aka we still have new Files to record => set next outputFile
-                setOutput( commandName+".wav" );
-
-            // update silenceAvgRMSAmp
-            silenceAvgRMSAmp = newBufferAvgRMSAmp;
-            return;
         }
 
-        /**** Detect if ( "User is still talking ") ****/
-        if ( userSpeaking )
-            // Continue recording
-            writeStreamBuffer();
-
-        /**** Detect if ( "User is STILL NOT talking ") ****/
-        else
-            // update bufferAvgRMSAmp
-            silenceAvgRMSAmp = newBufferAvgRMSAmp;
-    }
-
-
-
-    private double getRMSValue()
-    {   // return RMS value of streamBuffer
-        double rmsVal=0.F;
-
-        for( short s : streamBuffer )
-            rmsVal+=s*s;
-
-        return Math.sqrt(rmsVal/bufferSizeElmt);
-    }
-
-
-
+        @Override
+        public void onSpeechEnd(long endSample)
+        {   /**** Detect if ( "User stops talking" ) ****/
+            // Switch userSpeaking's state flag
+            userSpeaking = false;
 
-    /***************************************************
-     *                                                 *
-     *            UI UPDATE CALLS ROUTINES             *
-     *                                                 *
-     ***************************************************/
+            // Finish current utterance : write what's left up to the detection point
+            int endCursor = (int) Math.max(writeCursor, Math.min(streamBuffer.length, endSample-bufferPosition));
+            writeStreamBuffer(writeCursor, endCursor);
+            writeCursor = streamBuffer.length;
 
+            // Features are already computed up to the last frame, just drop the ones lying in the hangover
+            // (it may span previous buffers), then hand everything over
+            long length = endSample-utteranceStart;
+            utteranceHandler.onUtteranceEnd( length, mfccExtractor.finish(length), captureTimeOf(endSample-1) );
+        }
+    };
 
-    private void toggleUIRecordingStateValue()
-    {
-        micHandler.uiActivity.runOnUiThread(new Runnable()
-        {
-            @Override
-            public void run()
-            { micHandler.uiActivity.toggleRecordingState() ; }
-        });
-    }
 
 
 
     /***************************************************
      *                                                 *
-     *             OUTPUT FILES ROUTINES               *
+     *                UTTERANCE ROUTINES               *
      *                                                 *
      ***************************************************/
 
 
 
-    private boolean setOutput(String outputFileName)
-    {   // Set the output file of the Audio stream
-        // Note : ".wav" extension should be added at the call of the method
-        boolean returnValue=true;
+    private void writeStreamBuffer(int from, int to)
+    {   // hand streamBuffer[from, to[ over to the current utterance
+        if ( to <= from )
+            return;
 
         try
         {
-            // create command's File
-            commandFile = new File(corpusDir, outputFileName);
-            if ( !commandFile.exists() )
-                returnValue = commandFile.createNewFile();
-
-            // create FileOutputStream
-            fos = new FileOutputStream(commandFile, false); //overWrite the file if it exists
-            // create DataOutputStream
-            dos = new DataOutputStream(fos);
-
-            // write DUMMY Wav header, will be completed after the recording cause we need to know
-            // PCM Audio's Length before writing it
-            byte[] header = new byte[44];
-            fos.write(header, 0, 44);
+            utteranceSink.write(streamBuffer.data, from, to-from);
+            PipelineLatency.recordSince(PipelineLatency.Stage.WRITE, streamBuffer.captureNanos);
         }
-        catch (IOException e)
-        { e.printStackTrace(); }
-
-        return returnValue;
+        catch (IOException ie) { ie.printStackTrace(); }
     }
 
 
 
-    private void writeStreamBuffer()
-   {   // Write the current short[] buffer into the file going through a DataOutputStream
-       // thus there is no need to convert those short into bytes manually
-
-       // update audioLength
-       audioLength += bufferSizeByte; // audioLength <=> side in byte of actual PCM audio data ;
-                                      // bufferSizeByte <=> size in byte of streamBuffer / NOT number of element in streamBuffer
-       try
-       {
-            for (short s : streamBuffer)
-                   dos.writeShort( Short.reverseBytes(s) ); // "data" has to been written in little-indian fasion
-            dos.flush(); // flush current buffer into fos=>file
-       } catch (IOException ie) { ie.printStackTrace(); }
-   }
-
-
-
-    private void writeWavHeader()
-    {   // Write WAV header into outputStream according to "USER DETERMINED VARIABLES"
-        // refers to : http://soundfile.sapp.org/doc/WaveFormat/ for more information on WAV header
-
-        // calculating variables needed to complete headers
-        byte bitsPerSample;
-        switch (micHandler.ENCODING_FORMAT)
-        {
-            case AudioFormat.ENCODING_PCM_8BIT : { bitsPerSample = 8; break;}
-            case AudioFormat.ENCODING_PCM_16BIT : { bitsPerSample = 16; break;}
-            case AudioFormat.ENCODING_PCM_FLOAT : { bitsPerSample = 32; break;}
-            default : { bitsPerSample = 0; }
-        }
-        long bytePerBlock = (micHandler.CHANNEL_MODE == AudioFormat.CHANNEL_IN_STEREO) // determine the blockByteRate, how many bytes per block
-                ? (bitsPerSample * micHandler.SAMPLE_RATE * 2 / 8) // stereo signal
-                : (bitsPerSample * micHandler.SAMPLE_RATE / 8); // mono signal
-        long dataAndSubHeaderSize = audioLength+36;
-        int nbrOfChannel = (micHandler.CHANNEL_MODE == AudioFormat.CHANNEL_IN_STEREO) ? 2 : 1;
-
-        // Completing header (little-indian
-        byte[] header = new byte[44];
-
-        // RIFF chunk descriptor
-        header[0]='R'; header[1] = 'I'; header[2]='F'; header[3]='F'; // RIFF (start of "RIFF" chunk descriptor)
-        // RIFF => use little-endian notation for non ascii stuff
-        header[4]=(byte) (dataAndSubHeaderSize & 0xff); header[5]=(byte) ((dataAndSubHeaderSize >> 8) & 0xff);
-        header[6]=(byte) ((dataAndSubHeaderSize >> 16) & 0xff); header[7]=(byte) ((dataAndSubHeaderSize >> 24) & 0xff);
-        // (file Size-8)
-        // <=> (AudioLength+36)
-        // <=> (AudioLength+RIFF chunk + "fmt" sub-chunk + ("data" subchunk-audioData) )
-        header[8] ='W'; header[9]='A'; header[10]='V'; header[11]='E'; // WAVE
-        // "fmt" sub-chunk
-        header[12]='f'; header[13]='m'; header[14]='t'; header[15]=' '; // fmt (start of "fmt" sub-chunk)
-        header[16]=16; header[17]=0; header[18]=0; header[19]=0; // size of the fmt sub-chunk (minus the "fmt" start block 12->15) // 16 because it's PCM
-        header[20]=1; header[21]=0; // compression setting, 1<=> no compression
-        header[22]=(byte) nbrOfChannel; header[23]= 0;// number of channel
-        header[24]=(byte) (micHandler.SAMPLE_RATE & 0xff); header[25]=(byte) ((micHandler.SAMPLE_RATE >> 8) & 0xff);
-        header[26]=(byte) ((micHandler.SAMPLE_RATE >> 16) & 0xff); header[27]=(byte) ((micHandler.SAMPLE_RATE >> 24) & 0xff); // sample rate (KHz)
-        header[28]=(byte) (bytePerBlock & 0xff); header[29]=(byte) ((bytePerBlock >> 8) & 0xff);
-        header[30]=(byte) ((bytePerBlock >> 16) & 0xff); header[31]=(byte) ((bytePerBlock >> 24) & 0xff); // bytePerBlock
-        header[32]=(byte) (nbrOfChannel*bitsPerSample/8); header[33]=0; // block alignment / number of bytes for one sample
-        header[34]=bitsPerSample; header[35]=0;// bitsPerSample
-        // "data" sub-chunk
-        header[36]='d'; header[37]='a'; header[38]='t'; header[39]='a'; // data (start of "data" sub-chunk)
-        header[40]=(byte) (audioLength & 0xff); header[41]=(byte) ((audioLength >> 8) & 0xff);
-        header[42]=(byte) ((audioLength >> 16) & 0xff); header[43]=(byte) ((audioLength >> 24) & 0xff); // Actual Audio Data (PCM) length
-
-        // Write completed header using randomAccess
-        try
-        {
-            RandomAccessFile rafOut = new RandomAccessFile(commandFile.getAbsolutePath(), "rw");
-            rafOut.seek(0);
-            rafOut.write(header);
-        }
-        catch ( Exception e ) { e.printStackTrace(); }
-
-        // Reset file specific variables
-        audioLength = 0;
+    private long captureTimeOf(long sample)
+    {   // System.nanoTime() at which the given absolute sample was captured, from streamBuffer's timestamp
+        long samplesAfter = bufferPosition + streamBuffer.length - 1 - sample;
+        return streamBuffer.captureNanos - samplesAfter * 1000000000L / sampleRate;
     }
-
-
-
 }
@@ -0,0 +1,134 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for AppInfo's binary persistence and the migration from the serialized file.
+ */
+public class AppInfoStoreTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = File.createTempFile("appinfostore", "");
+        assertTrue(dir.delete() && dir.mkdir());
+        AppInfo.baseDir = dir;
+        populate();
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : dir.listFiles())
+            f.delete();
+        dir.delete();
+        clear();
+    }
+
+    private void populate() {
+        AppInfo.corpusGlobalDir = new File(dir, "Corpus");
+        AppInfo.commands = new ArrayList<>(Arrays.asList("avance", "recule", "etatdurgence"));
+        AppInfo.corpusMap = new HashMap<>();
+        AppInfo.usersCorpora = new LinkedHashSet<>();
+        AppInfo.referencesCorpora = new LinkedHashSet<>();
+        AppInfo.addCorpus("zoe", new Corpus("zoe", "Zoé"));
+        AppInfo.addCorpus("adam", new Corpus("adam"));
+        AppInfo.addCorpus("marc", new Corpus("marc", ""));
+        AppInfo.corpusMap.get("marc").setAsReference();
+        AppInfo.corpusMap.get("zoe").setAsReference();
+        AppInfo.SENSITIVITY = 17;
+        AppInfo.BUFFER_SIZE_MULTIPLICATOR = 4;
+    }
+
+    private void clear() {
+        AppInfo.corpusGlobalDir = null;
+        AppInfo.commands = new ArrayList<>();
+        AppInfo.corpusMap = new HashMap<>();
+        AppInfo.usersCorpora = new LinkedHashSet<>();
+        AppInfo.referencesCorpora = new LinkedHashSet<>();
+        AppInfo.SENSITIVITY = 10;
+        AppInfo.BUFFER_SIZE_MULTIPLICATOR = 10;
+    }
+
+    private void assertPopulated() {
+        assertEquals(new File(dir, "Corpus").getAbsolutePath(), AppInfo.corpusGlobalDir.getAbsolutePath());
+        assertEquals(Arrays.asList("avance", "recule", "etatdurgence"), AppInfo.commands);
+        assertEquals(Arrays.asList("zoe", "adam", "marc"), new ArrayList<>(AppInfo.usersCorpora));
+        assertEquals(Arrays.asList("marc", "zoe"), new ArrayList<>(AppInfo.referencesCorpora));
+        assertEquals(3, AppInfo.corpusMap.size());
+        Corpus zoe = AppInfo.corpusMap.get("zoe");
+        assertEquals("Zoé", zoe.getDisplayName());
+        assertTrue(zoe.hasDisplayName());
+        assertTrue(zoe.isReference());
+        assertFalse(AppInfo.corpusMap.get("adam").hasDisplayName());
+        assertFalse(AppInfo.corpusMap.get("adam").isReference());
+        assertEquals(17, AppInfo.SENSITIVITY);
+        assertEquals(4, AppInfo.BUFFER_SIZE_MULTIPLICATOR);
+    }
+
+    @Test
+    public void save_isReadBackByLoad() {
+        AppInfoStore.save();
+        AppInfo.SENSITIVITY = 30; // saves are coalesced, the latest state wins
+        AppInfoStore.save();
+        AppInfo.SENSITIVITY = 17;
+        AppInfoStore.save();
+        assertTrue(AppInfoStore.flush(5000));
+        assertFalse(new File(dir, AppInfoStore.FILE_NAME + ".tmp").exists());
+
+        clear();
+        assertTrue(AppInfoStore.load());
+        assertPopulated();
+    }
+
+    @Test
+    public void load_firstLaunch() {
+        clear();
+        assertFalse(AppInfoStore.load());
+    }
+
+    @Test
+    public void load_migratesSerializedFile() throws Exception {
+        AppInfo legacy = new AppInfo();
+        legacy.updateFromStaticVariables();
+        File legacyFile = new File(dir, AppInfo.serializedFileName);
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(legacyFile))) {
+            out.writeObject(legacy);
+        }
+
+        clear();
+        assertTrue(AppInfoStore.load());
+        assertPopulated();
+        assertFalse(legacyFile.exists());
+        assertTrue(new File(dir, AppInfoStore.FILE_NAME).exists());
+
+        clear();
+        assertTrue(AppInfoStore.load());
+        assertPopulated();
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void read_detectsCorruption() throws Exception {
+        File file = new File(dir, AppInfoStore.FILE_NAME);
+        AppInfoStore.write(AppInfoStore.Snapshot.ofAppInfo(), file);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() / 2);
+            int b = raf.read();
+            raf.seek(raf.length() / 2);
+            raf.write(b ^ 0x5A);
+        }
+        AppInfoStore.read(file);
+    }
+}
@@ -0,0 +1,146 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static com.dvr.mel.dronevoicerecognition.TestFixtures.*;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the centroid store file and its invalidation.
+ */
+public class CentroidStoreTest {
+    private static final VocabularyRegistry VOCABULARY = new VocabularyRegistry(Arrays.asList("avance", "recule"));
+    private static final VocabularyRegistry LARGER_VOCABULARY =
+            new VocabularyRegistry(Arrays.asList("avance", "recule", "droite"));
+
+    private File dir;
+    private File file;
+    private final StreamingMfccExtractor extractor = new StreamingMfccExtractor(16000);
+
+    @Before
+    public void setUp() throws Exception {
+        dir = File.createTempFile("centroids", "");
+        assertTrue(dir.delete() && dir.mkdir());
+        for (String corpus : Arrays.asList("marc", "zoe", "leo")) {
+            File corpusDir = new File(dir, corpus);
+            assertTrue(corpusDir.mkdir());
+            writeWav(new File(corpusDir, "avance.wav"), tone(6000, 300 + corpus.length() * 10));
+            writeWav(new File(corpusDir, "recule.wav"), tone(7000, 900 + corpus.length() * 10));
+            writeWav(new File(corpusDir, "droite.wav"), tone(5000, 600 + corpus.length() * 10));
+        }
+        file = CentroidStore.fileOf(dir);
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    /** Builds and saves the centroids of VOCABULARY over marc and zoe. */
+    private FeatureMatrix[][] saved(int centroidsPerCommand, int bandRadius) throws Exception {
+        CentroidStore store = new CentroidStore(file, extractor, centroidsPerCommand, bandRadius);
+        FeatureMatrix[][] centroids = store.update(dir, Arrays.asList("marc", "zoe"), VOCABULARY);
+        assertEquals(VOCABULARY.size(), store.getRebuiltCount());
+        store.save();
+        return centroids;
+    }
+
+    @Test
+    public void saveThenLoad_givesBackEveryCentroid() throws Exception {
+        FeatureMatrix[][] centroids = saved(2, 10);
+        assertTrue(file.isFile());
+        for (String name : dir.list())
+            assertFalse(name, name.endsWith(".tmp"));
+
+        CentroidStore store = new CentroidStore(file, extractor, 2, 10);
+        FeatureMatrix[][] loaded = store.update(dir, Arrays.asList("zoe", "marc"), VOCABULARY);
+        assertEquals(0, store.getRebuiltCount());
+        assertEquals(VOCABULARY.size(), store.getReusedCount());
+        for (int k = 0; k < centroids.length; k++)
+            for (int c = 0; c < VOCABULARY.size(); c++) {
+                assertNotNull(loaded[k][c]);
+                assertEquals(centroids[k][c].nbFrames, loaded[k][c].nbFrames);
+                assertEquals(centroids[k][c].dim, loaded[k][c].dim);
+                assertArrayEquals(centroids[k][c].data, loaded[k][c].data, 0f);
+            }
+    }
+
+    @Test
+    public void update_rebuildsOnlyWhatTheReferencesNoLongerMatch() throws Exception {
+        saved(1, 10);
+
+        // a reference added : every command was built without it
+        CentroidStore store = new CentroidStore(file, extractor, 1, 10);
+        store.update(dir, Arrays.asList("marc", "zoe", "leo"), VOCABULARY);
+        assertEquals(VOCABULARY.size(), store.getRebuiltCount());
+        assertEquals(0, store.getReusedCount());
+        store.save();
+
+        // a command added to the vocabulary : only that one is built
+        store = new CentroidStore(file, extractor, 1, 10);
+        FeatureMatrix[][] centroids = store.update(dir, Arrays.asList("leo", "marc", "zoe"), LARGER_VOCABULARY);
+        assertEquals(1, store.getRebuiltCount());
+        assertEquals(2, store.getReusedCount());
+        assertNotNull(centroids[0][2]);
+        store.save();
+
+        // a reference removed
+        store = new CentroidStore(file, extractor, 1, 10);
+        store.update(dir, Arrays.asList("leo", "marc"), LARGER_VOCABULARY);
+        assertEquals(3, store.getRebuiltCount());
+        assertEquals(0, store.getReusedCount());
+    }
+
+    @Test
+    public void otherParameterHash_invalidatesEveryEntry() throws Exception {
+        saved(1, 10);
+        StreamingMfccExtractor other = new StreamingMfccExtractor(16000, 25, 10, 10, 20);
+        assertTrue(extractor.getParameterHash() != other.getParameterHash());
+
+        CentroidStore store = new CentroidStore(file, other, 1, 10);
+        store.update(dir, Arrays.asList("marc", "zoe"), VOCABULARY);
+        assertEquals(VOCABULARY.size(), store.getRebuiltCount());
+        assertEquals(0, store.getReusedCount());
+    }
+
+    @Test
+    public void otherBandRadius_invalidatesEveryEntry() throws Exception {
+        saved(1, 10);
+        CentroidStore store = new CentroidStore(file, extractor, 1, 5);
+        store.update(dir, Arrays.asList("marc", "zoe"), VOCABULARY);
+        assertEquals(VOCABULARY.size(), store.getRebuiltCount());
+        assertEquals(0, store.getReusedCount());
+    }
+
+    @Test
+    public void otherCentroidsPerCommand_invalidatesEveryEntry() throws Exception {
+        saved(1, 10);
+        CentroidStore store = new CentroidStore(file, extractor, 2, 10);
+        FeatureMatrix[][] centroids = store.update(dir, Arrays.asList("marc", "zoe"), VOCABULARY);
+        assertEquals(VOCABULARY.size(), store.getRebuiltCount());
+        assertEquals(0, store.getReusedCount());
+        assertEquals(2, centroids.length);
+    }
+
+    @Test
+    public void truncatedFile_isRebuilt() throws Exception {
+        saved(1, 10);
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.setLength(output.length() - 10);
+        }
+
+        CentroidStore store = new CentroidStore(file, extractor, 1, 10);
+        store.update(dir, Arrays.asList("marc", "zoe"), VOCABULARY);
+        assertEquals(VOCABULARY.size(), store.getRebuiltCount());
+        store.save();
+        store = new CentroidStore(file, extractor, 1, 10);
+        store.update(dir, Arrays.asList("marc", "zoe"), VOCABULARY);
+        assertEquals(VOCABULARY.size(), store.getReusedCount());
+    }
+}
@@ -0,0 +1,122 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the command sequencer and its event channel.
+ */
+public class CommandSequencerTest {
+    /** Stands for the UI thread: posted runnables only run when asked to. */
+    private static class QueuedExecutor implements Executor {
+        final List<Runnable> posted = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable runnable) {
+            posted.add(runnable);
+        }
+
+        void runAll() {
+            while (!posted.isEmpty())
+                posted.remove(0).run();
+        }
+    }
+
+    private static class RecordingListener implements CommandSequencer.Listener {
+        final List<CommandSequencer.Event.Type> types = new ArrayList<>();
+
+        @Override
+        public void onSequencerEvent(CommandSequencer.Event event) {
+            types.add(event.type);
+        }
+    }
+
+    private final QueuedExecutor ui = new QueuedExecutor();
+    private final RecordingListener listener = new RecordingListener();
+    private final CommandSequencer sequencer =
+            new CommandSequencer(Arrays.asList("avance", "recule", "droite"), ui, listener);
+
+    @Test
+    public void advance_movesOnFromTheRecordedCommandOnly() {
+        assertTrue(sequencer.advance(0, 42));
+        assertEquals(1, sequencer.current());
+        assertEquals("recule", sequencer.commandAt(sequencer.current()));
+
+        // recording of command 0 completing twice must not skip command 1
+        assertFalse(sequencer.advance(0, 43));
+        assertEquals(1, sequencer.current());
+    }
+
+    @Test
+    public void advance_failsOnceTheUserWentBack() {
+        assertTrue(sequencer.advance(0, 0));
+        int recording = sequencer.current();
+        assertEquals(0, sequencer.previous());
+        assertFalse(sequencer.advance(recording, 0));
+        assertEquals(0, sequencer.current());
+    }
+
+    @Test
+    public void previous_stopsBeforeTheFirstCommand() {
+        assertEquals(-1, sequencer.previous());
+        assertEquals(-1, sequencer.previous());
+        assertEquals(-1, sequencer.current());
+        assertNull(sequencer.commandAt(-1));
+    }
+
+    @Test
+    public void endOfSession_hasNoCommand() {
+        for (int i = 0; i < sequencer.size(); i++)
+            assertTrue(sequencer.advance(i, 0));
+        assertEquals(sequencer.size(), sequencer.current());
+        assertNull(sequencer.commandAt(sequencer.current()));
+    }
+
+    @Test
+    public void events_areDeliveredInOrderWithOneDrainPerBatch() {
+        sequencer.speechStarted();
+        sequencer.speechEnded();
+        sequencer.advance(0, 7);
+        // nothing delivered until the UI thread runs, a single drain posted for the three events
+        assertTrue(listener.types.isEmpty());
+        assertEquals(1, ui.posted.size());
+
+        ui.runAll();
+        assertEquals(Arrays.asList(CommandSequencer.Event.Type.SPEECH_START,
+                CommandSequencer.Event.Type.SPEECH_END,
+                CommandSequencer.Event.Type.COMMAND_CHANGED), listener.types);
+
+        // once drained, the next event posts a new drain
+        sequencer.speechStarted();
+        assertEquals(1, ui.posted.size());
+        ui.runAll();
+        assertEquals(4, listener.types.size());
+    }
+
+    @Test
+    public void eventPublishedWhileDraining_isNotLost() {
+        final List<CommandSequencer.Event> delivered = new ArrayList<>();
+        final CommandSequencer[] holder = new CommandSequencer[1];
+        holder[0] = new CommandSequencer(Arrays.asList("a", "b"), ui, new CommandSequencer.Listener() {
+            @Override
+            public void onSequencerEvent(CommandSequencer.Event event) {
+                delivered.add(event);
+                if (event.type == CommandSequencer.Event.Type.SPEECH_END)
+                    holder[0].advance(0, 5); // consumer publishing while the UI drains
+            }
+        });
+
+        holder[0].speechEnded();
+        ui.runAll();
+        assertEquals(2, delivered.size());
+        assertEquals(CommandSequencer.Event.Type.COMMAND_CHANGED, delivered.get(1).type);
+        assertEquals(1, delivered.get(1).index);
+        assertEquals(5, delivered.get(1).speechEndNanos);
+    }
+}
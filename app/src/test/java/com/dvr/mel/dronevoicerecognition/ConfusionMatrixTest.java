@@ -0,0 +1,35 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the confusion matrix and its recognition rate.
+ */
+public class ConfusionMatrixTest {
+    @Test
+    public void getRecognitionRate_isTraceOverSum() {
+        ConfusionMatrix matrix = new ConfusionMatrix(2);
+        assertEquals(0f, matrix.getRecognitionRate(), 0f);
+
+        matrix.add(0, 0);
+        matrix.add(1, 0);
+        ConfusionMatrix other = new ConfusionMatrix(2);
+        other.add(0, 0);
+        other.add(1, 1);
+        other.add(1, 1);
+        matrix.addAll(other);
+        assertEquals(2, matrix.get(0, 0));
+        assertEquals(1, matrix.get(1, 0));
+        assertEquals(2, matrix.get(1, 1));
+        assertEquals(4, matrix.trace());
+        assertEquals(5, matrix.sum());
+        assertEquals(0.8f, matrix.getRecognitionRate(), 1e-6f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addAll_rejectsOtherSizes() {
+        new ConfusionMatrix(2).addAll(new ConfusionMatrix(3));
+    }
+}
@@ -0,0 +1,216 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.dvr.mel.dronevoicerecognition.TestFixtures.*;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the single file corpus container, its sink and its Wav layout conversions.
+ */
+public class CorpusContainerTest {
+    private File dir;
+    private final StreamingMfccExtractor extractor = new StreamingMfccExtractor(16000);
+
+    @Before
+    public void setUp() throws Exception {
+        dir = File.createTempFile("container", "");
+        assertTrue(dir.delete() && dir.mkdir());
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    private CorpusContainerSink openSink(File file) throws IOException {
+        return new CorpusContainerSink(file, 16000, 1, 16, extractor.getParameterHash(), 1000);
+    }
+
+    private void record(CorpusContainerSink sink, String name, short[] samples) throws IOException {
+        sink.beginSegment(name);
+        sink.write(samples, 0, samples.length);
+        sink.endSegment(extractor.extract(samples, 0, samples.length));
+    }
+
+    @Test
+    public void sink_segmentsAreReadBackFromTheIndex() throws Exception {
+        File file = new File(dir, "ana.corpus");
+        short[] avance = tone(5000, 300);
+        short[] recule = tone(7000, 800);
+
+        CorpusContainerSink sink = openSink(file);
+        record(sink, "avance", avance);
+        // hangover cut off, as CorpusRecorder does
+        sink.beginSegment("recule");
+        sink.write(recule, 0, recule.length);
+        sink.write(tone(2000, 50), 0, 2000);
+        sink.truncate(recule.length * 2);
+        sink.endSegment(null);
+        // abandoned segment, the user went back
+        sink.beginSegment("droite");
+        sink.write(avance, 0, avance.length);
+        sink.abandonSegment();
+        sink.close();
+
+        CorpusContainer container = new CorpusContainer(file);
+        assertEquals(16000, container.sampleRate);
+        assertEquals(1, container.nbrOfChannel);
+        assertEquals(16, container.bitsPerSample);
+        assertEquals(Arrays.asList("avance", "recule"), Arrays.asList(container.getNames().toArray()));
+        assertArrayEquals(avance, container.readSamples("avance"));
+        assertArrayEquals(recule, container.readSamples("recule"));
+        assertNull(container.readSamples("droite"));
+        assertEquals(CorpusContainer.HEADER_SIZE + (avance.length + recule.length) * 2, container.getPcmEnd());
+
+        FeatureMatrix expected = extractor.extract(avance, 0, avance.length);
+        FeatureMatrix stored = container.getFeatures("avance", extractor);
+        assertEquals(expected.nbFrames, stored.nbFrames);
+        assertArrayEquals(expected.data, stored.data, 0f);
+        assertNull(container.getFeatures("recule"));
+    }
+
+    @Test
+    public void sink_appendsToAnExistingContainer() throws Exception {
+        File file = new File(dir, "ana.corpus");
+        short[] first = tone(4000, 300);
+        short[] again = tone(3000, 900);
+        short[] other = tone(6000, 500);
+
+        CorpusContainerSink sink = openSink(file);
+        record(sink, "avance", first);
+        sink.close();
+
+        sink = openSink(file);
+        record(sink, "gauche", other);
+        record(sink, "avance", again); // recorded again, the index points to the new segment
+        sink.close();
+
+        CorpusContainer container = new CorpusContainer(file);
+        assertEquals(Arrays.asList("gauche", "avance"), Arrays.asList(container.getNames().toArray()));
+        assertArrayEquals(other, container.readSamples("gauche"));
+        assertArrayEquals(again, container.readSamples("avance"));
+        assertNotNull(container.getFeatures("gauche", extractor));
+    }
+
+    @Test(expected = IOException.class)
+    public void reader_rejectsAContainerWithoutFooter() throws Exception {
+        File file = new File(dir, "ana.corpus");
+        CorpusContainerSink sink = openSink(file);
+        sink.beginSegment("avance");
+        sink.write(tone(4000, 300), 0, 4000);
+        // never closed, like an interrupted session
+        new CorpusContainer(file);
+    }
+
+    @Test
+    public void loadFeatures_computesStaleFeaturesOnceAndStoresThem() throws Exception {
+        File file = new File(dir, "ana.corpus");
+        short[] samples = tone(6000, 400);
+        CorpusContainerSink sink = new CorpusContainerSink(file, 16000, 1, 16, 0, 1000);
+        sink.beginSegment("avance");
+        sink.write(samples, 0, samples.length);
+        sink.endSegment(null);
+        sink.close();
+
+        CorpusContainer before = new CorpusContainer(file);
+        List<String> commands = Arrays.asList("avance", "recule");
+        FeatureMatrix[] features = CorpusContainer.loadFeatures(file, commands, extractor);
+        assertNull(features[1]);
+        assertArrayEquals(extractor.extract(samples, 0, samples.length).data, features[0].data, 0f);
+
+        // stored in the footer, PCM untouched
+        CorpusContainer container = new CorpusContainer(file);
+        assertNotNull(container.getFeatures("avance", extractor));
+        assertArrayEquals(samples, container.readSamples("avance"));
+
+        // replaced by renaming a copy : a container mapped before still reads, no temporary file left
+        assertArrayEquals(samples, before.readSamples("avance"));
+        assertEquals(1, dir.listFiles().length);
+    }
+
+    @Test
+    public void concurrentLoads_leaveAValidContainer() throws Exception {
+        final File file = new File(dir, "ana.corpus");
+        final short[] samples = tone(16000, 400);
+        CorpusContainerSink sink = new CorpusContainerSink(file, 16000, 1, 16, 0, 1000);
+        sink.beginSegment("avance");
+        sink.write(samples, 0, samples.length);
+        sink.endSegment(null);
+        sink.close();
+
+        final Exception[] failure = new Exception[1];
+        Thread[] loaders = new Thread[4];
+        for (int t = 0; t < loaders.length; t++) {
+            loaders[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        CorpusContainer.loadFeatures(file, Collections.singletonList("avance"), extractor);
+                    } catch (Exception e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            loaders[t].start();
+        }
+        for (Thread loader : loaders)
+            loader.join();
+
+        assertNull(failure[0]);
+        CorpusContainer container = new CorpusContainer(file);
+        assertArrayEquals(samples, container.readSamples("avance"));
+        assertNotNull(container.getFeatures("avance", extractor));
+        assertEquals(1, dir.listFiles().length);
+    }
+
+    @Test
+    public void featureCache_loadsCorporaRecordedAsContainers() throws Exception {
+        short[] samples = tone(6000, 400);
+        CorpusContainerSink sink = openSink(CorpusContainer.fileOf(dir, "ana"));
+        record(sink, "recule", samples);
+        sink.close();
+
+        FeatureMatrix[][] features = FeatureCache.loadCorpora(dir, Collections.singletonList("ana"),
+                Arrays.asList("avance", "recule"), extractor);
+        assertNull(features[0][0]);
+        assertArrayEquals(extractor.extract(samples, 0, samples.length).data, features[0][1].data, 0f);
+        // no per-Wav cache written beside a container
+        assertFalse(FeatureCache.cacheFileOf(dir, "ana").exists());
+    }
+
+    @Test
+    public void exportThenImport_keepsEverySegment() throws Exception {
+        File file = new File(dir, "ana.corpus");
+        short[] avance = tone(5000, 300);
+        short[] recule = tone(7000, 800);
+        CorpusContainerSink sink = openSink(file);
+        record(sink, "recule", recule);
+        record(sink, "avance", avance);
+        sink.close();
+
+        File corpusDir = new File(dir, "ana");
+        CorpusContainer.exportTo(file, corpusDir);
+        WavFileReader reader = new WavFileReader(new File(corpusDir, "avance.wav"));
+        reader.checkCanonicalHeader();
+        assertArrayEquals(avance, reader.readSamples());
+        assertArrayEquals(recule, new WavFileReader(new File(corpusDir, "recule.wav")).readSamples());
+
+        File imported = new File(dir, "copy.corpus");
+        CorpusContainer.importFrom(corpusDir, imported, extractor);
+        CorpusContainer container = new CorpusContainer(imported);
+        assertEquals(Arrays.asList("avance", "recule"), Arrays.asList(container.getNames().toArray()));
+        assertArrayEquals(avance, container.readSamples("avance"));
+        assertArrayEquals(recule, container.readSamples("recule"));
+        assertNotNull(container.getFeatures("recule", extractor));
+        assertFalse(new File(dir, "copy.corpus.tmp").exists());
+    }
+}
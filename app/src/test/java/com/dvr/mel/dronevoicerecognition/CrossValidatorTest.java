@@ -0,0 +1,53 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.dvr.mel.dronevoicerecognition.TestFixtures.*;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the leave-one-speaker-out cross-validation.
+ */
+public class CrossValidatorTest {
+    private static final int VOCABULARY = 5;
+
+    @Test
+    public void run_rotatesEverySpeakerAgainstTheOthers() {
+        Random random = new Random(31);
+        FeatureMatrix[] base = words(random, VOCABULARY);
+        List<String> commands = new ArrayList<>();
+        for (int w = 0; w < VOCABULARY; w++)
+            commands.add("command" + w);
+        List<String> corpora = Arrays.asList("marc", "zoe", "leo", "ana");
+        FeatureMatrix[][] features = new FeatureMatrix[corpora.size()][VOCABULARY];
+        for (int c = 0; c < corpora.size(); c++)
+            for (int w = 0; w < VOCABULARY; w++)
+                features[c][w] = noisy(base[w], random);
+        features[3][4] = null; // "ana" never recorded command4
+
+        RecognitionExecutor executor = new RecognitionExecutor(2, DtwEngine.NO_BAND);
+        try {
+            CrossValidator.Result result = new CrossValidator(executor).run(corpora, commands, features, 0);
+
+            // marc against zoe, leo and ana : 3 x 5 votes but ana's missing command4, all right
+            assertEquals(1f, result.getSpeakerAccuracy(0), 0f);
+            assertEquals(14, result.speakers[0].sum());
+            // ana : the others' command4 can't find hers, 12 of 15 votes right
+            assertEquals(0.8f, result.getSpeakerAccuracy(3), 1e-6f);
+            // command4 : right for marc, zoe and leo against the 2 other ones, wrong 3 times for ana
+            assertEquals(6, result.overall.get(4, 4));
+            assertEquals(6f / 9, result.getCommandAccuracy(4), 1e-6f);
+            assertEquals(1f, result.getCommandAccuracy(0), 0f);
+            assertTrue(result.recognitionNanos > 0);
+            assertEquals(result.recognitionNanos, result.getCpuNanos());
+            assertTrue(result.report().contains("ana"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.dvr.mel.dronevoicerecognition.TestFixtures.*;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for DTW barycenter averaging.
+ */
+public class DbaAveragerTest {
+    private static FeatureMatrix warped(FeatureMatrix word, int nbFrames, Random random) {
+        // same word spoken faster or slower, plus some noise
+        float[] data = new float[nbFrames * word.dim];
+        for (int i = 0; i < nbFrames; i++) {
+            int source = (int) ((long) i * word.nbFrames / nbFrames);
+            for (int k = 0; k < word.dim; k++)
+                data[i * word.dim + k] = word.get(source, k) + (float) random.nextGaussian() * 0.5f;
+        }
+        return new FeatureMatrix(data, nbFrames, word.dim);
+    }
+
+    private static float sumOfDistances(FeatureMatrix centroid, List<FeatureMatrix> recordings) {
+        DtwEngine engine = new DtwEngine(10);
+        float sum = 0;
+        for (FeatureMatrix recording : recordings)
+            sum += engine.distance(centroid, recording);
+        return sum;
+    }
+
+    @Test
+    public void average_ofIdenticalRecordingsIsTheRecording() {
+        FeatureMatrix word = smooth(new Random(21), 40);
+        DbaAverager averager = new DbaAverager(10);
+
+        FeatureMatrix centroid = averager.average(Arrays.asList(word, word, word), null, DbaAverager.ITERATIONS);
+        assertEquals(word.nbFrames, centroid.nbFrames);
+        for (int i = 0; i < word.data.length; i++)
+            assertEquals(word.data[i], centroid.data[i], 1e-4f);
+    }
+
+    @Test
+    public void average_isCloserToTheRecordingsThanTheirMedoid() {
+        Random random = new Random(22);
+        FeatureMatrix word = smooth(random, 50);
+        List<FeatureMatrix> recordings = new ArrayList<>();
+        for (int r = 0; r < 6; r++)
+            recordings.add(warped(word, 35 + random.nextInt(30), random));
+        DbaAverager averager = new DbaAverager(10);
+
+        FeatureMatrix medoid = averager.medoid(recordings);
+        FeatureMatrix centroid = averager.average(recordings, null, DbaAverager.ITERATIONS);
+        assertTrue(sumOfDistances(centroid, recordings) < sumOfDistances(medoid, recordings));
+
+        // warm start from it with one more recording : still better than the new medoid
+        recordings.add(warped(word, 45, random));
+        FeatureMatrix refined = averager.centroids(recordings, 1, new FeatureMatrix[]{centroid})[0];
+        assertTrue(sumOfDistances(refined, recordings) < sumOfDistances(averager.medoid(recordings), recordings));
+    }
+
+    @Test
+    public void centroids_separatesPronunciations() {
+        Random random = new Random(23);
+        FeatureMatrix first = smooth(random, 40), second = smooth(random, 40);
+        List<FeatureMatrix> recordings = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            recordings.add(warped(first, 35 + random.nextInt(10), random));
+            recordings.add(warped(second, 35 + random.nextInt(10), random));
+        }
+
+        FeatureMatrix[] centroids = new DbaAverager(10).centroids(recordings, 2, null);
+        assertEquals(2, centroids.length);
+        DtwEngine engine = new DtwEngine(10);
+        float a = engine.distance(centroids[0], first), b = engine.distance(centroids[0], second);
+        float c = engine.distance(centroids[1], first), d = engine.distance(centroids[1], second);
+        assertTrue((a < b && d < c) || (b < a && c < d)); // one centroid per pronunciation
+        assertEquals(1, new DbaAverager(10).centroids(recordings.subList(0, 1), 2, null).length);
+    }
+}
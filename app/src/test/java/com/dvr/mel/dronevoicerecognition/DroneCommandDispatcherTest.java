@@ -0,0 +1,114 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the drone command dispatcher, against a loopback drone.
+ */
+public class DroneCommandDispatcherTest {
+    private LoopbackDrone drone;
+    private DroneCommandDispatcher dispatcher;
+
+    @Before
+    public void setUp() throws Exception {
+        drone = new LoopbackDrone();
+        drone.start();
+        dispatcher = new DroneCommandDispatcher(drone.getAddress(), "etatdurgence", 300000000L);
+    }
+
+    @After
+    public void tearDown() {
+        dispatcher.close();
+        drone.close();
+    }
+
+    @Test
+    public void packet_roundTrip() {
+        DronePacket packet = new DronePacket("tournegauche", 6, true, 0.75f, 123456789L);
+        packet.sequence = 42;
+        packet.repeatCount = 3;
+        packet.sendNanos = 987654321L;
+
+        ByteBuffer buffer = ByteBuffer.allocate(DronePacket.MAX_SIZE);
+        packet.writeTo(buffer);
+        buffer.flip();
+        DronePacket decoded = DronePacket.readFrom(buffer);
+
+        assertEquals("tournegauche", decoded.command);
+        assertEquals(6, decoded.commandIndex);
+        assertTrue(decoded.emergency);
+        assertEquals(0.75f, decoded.confidence, 0f);
+        assertEquals(123456789L, decoded.speechEndNanos);
+        assertEquals(987654321L, decoded.sendNanos);
+        assertEquals(42, decoded.sequence);
+        assertEquals(3, decoded.repeatCount);
+        assertNull(DronePacket.readFrom(ByteBuffer.allocate(DronePacket.HEADER_SIZE)));
+    }
+
+    @Test
+    public void dispatch_sendsWithCaptureTimeMetadata() throws Exception {
+        dispatcher.start();
+        long speechEnd = System.nanoTime();
+        dispatcher.dispatch("avance", 0, 0.5f, speechEnd);
+
+        assertTrue(drone.awaitReceived(1, 5000));
+        LoopbackDrone.Reception reception = drone.getReceived().get(0);
+        assertEquals("avance", reception.packet.command);
+        assertEquals(speechEnd, reception.packet.speechEndNanos);
+        assertEquals(0, reception.packet.sequence);
+        assertTrue(reception.packet.sendNanos >= speechEnd);
+        assertTrue(reception.getLatencyNanos() >= reception.getTransitNanos());
+        assertTrue(reception.getTransitNanos() >= 0);
+    }
+
+    @Test
+    public void dispatch_emergencySupersedesPendingCommands() throws Exception {
+        // queued before the dispatcher runs, as if the socket was lagging behind
+        dispatcher.dispatch("avance", 0, 0.5f, 1);
+        dispatcher.dispatch("droite", 2, 0.5f, 2);
+        dispatcher.dispatch("etatdurgence", 4, 0.5f, 3);
+        dispatcher.dispatch("recule", 1, 0.5f, 4);
+        dispatcher.start();
+
+        assertTrue(drone.awaitReceived(2, 5000));
+        Thread.sleep(50);
+        List<LoopbackDrone.Reception> received = drone.getReceived();
+        assertEquals(2, received.size());
+        assertEquals("etatdurgence", received.get(0).packet.command);
+        assertTrue(received.get(0).packet.emergency);
+        assertEquals("recule", received.get(1).packet.command);
+        assertEquals(2, dispatcher.getSupersededCount());
+    }
+
+    @Test
+    public void dispatch_coalescesRepeatedCommands() throws Exception {
+        long speechEnd = System.nanoTime();
+        dispatcher.dispatch("gauche", 3, 0.2f, speechEnd);
+        dispatcher.dispatch("gauche", 3, 0.6f, speechEnd + 1000000L);
+        dispatcher.dispatch("gauche", 3, 0.4f, speechEnd + 2000000L);
+        dispatcher.start();
+
+        assertTrue(drone.awaitReceived(1, 5000));
+        // once sent, the same command right after is still redundant
+        dispatcher.dispatch("gauche", 3, 0.5f, speechEnd + 100000000L);
+        dispatcher.dispatch("avance", 0, 0.5f, speechEnd + 100000000L);
+        assertTrue(drone.awaitReceived(2, 5000));
+        Thread.sleep(50);
+
+        List<LoopbackDrone.Reception> received = drone.getReceived();
+        assertEquals(2, received.size());
+        DronePacket first = received.get(0).packet;
+        assertEquals(3, first.repeatCount);
+        assertEquals(0.6f, first.confidence, 0f);
+        assertEquals(speechEnd + 2000000L, first.speechEndNanos);
+        assertEquals("avance", received.get(1).packet.command);
+        assertEquals(3, dispatcher.getCoalescedCount());
+    }
+}
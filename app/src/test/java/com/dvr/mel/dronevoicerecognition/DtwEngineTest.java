@@ -0,0 +1,87 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the pure Java DTW engine.
+ */
+public class DtwEngineTest {
+    private static FeatureMatrix random(Random random, int nbFrames, int dim) {
+        float[] data = new float[nbFrames * dim];
+        for (int i = 0; i < data.length; i++)
+            data[i] = random.nextFloat() * 10 - 5;
+        return new FeatureMatrix(data, nbFrames, dim);
+    }
+
+    /** Straightforward full matrix DTW, same recurrence as the engine. */
+    private static float fullMatrixDtw(FeatureMatrix a, FeatureMatrix b) {
+        int I = a.nbFrames, J = b.nbFrames;
+        float[][] g = new float[I + 1][J + 1];
+        for (float[] row : g)
+            java.util.Arrays.fill(row, Float.POSITIVE_INFINITY);
+        g[0][0] = 0;
+        for (int i = 1; i <= I; i++) {
+            for (int j = 1; j <= J; j++) {
+                float d = 0;
+                for (int k = 0; k < a.dim; k++) {
+                    float diff = a.get(i - 1, k) - b.get(j - 1, k);
+                    d += diff * diff;
+                }
+                g[i][j] = Math.min(Math.min(g[i - 1][j] + DtwEngine.W0 * d, g[i - 1][j - 1] + DtwEngine.W1 * d),
+                        g[i][j - 1] + DtwEngine.W2 * d);
+            }
+        }
+        return g[I][J] / (I + J);
+    }
+
+    @Test
+    public void distance_matchesFullMatrix() {
+        Random random = new Random(42);
+        DtwEngine engine = new DtwEngine();
+        for (int n = 0; n < 20; n++) {
+            FeatureMatrix a = random(random, 5 + random.nextInt(60), 12);
+            FeatureMatrix b = random(random, 5 + random.nextInt(60), 12);
+            assertEquals(fullMatrixDtw(a, b), engine.distance(a, b), 1e-3f);
+        }
+    }
+
+    @Test
+    public void distance_ofIdenticalMatricesIsZero() {
+        FeatureMatrix a = random(new Random(1), 40, 12);
+        assertEquals(0f, new DtwEngine(3).distance(a, a), 0f);
+    }
+
+    @Test
+    public void band_isNeverBelowFullMatrixAndWideBandIsExact() {
+        Random random = new Random(7);
+        DtwEngine full = new DtwEngine();
+        DtwEngine narrow = new DtwEngine(2);
+        DtwEngine wide = new DtwEngine(1000);
+        for (int n = 0; n < 20; n++) {
+            FeatureMatrix a = random(random, 10 + random.nextInt(50), 12);
+            FeatureMatrix b = random(random, 10 + random.nextInt(50), 12);
+            float exact = full.distance(a, b);
+            float banded = narrow.distance(a, b);
+            assertFalse(Float.isInfinite(banded));
+            assertTrue(banded >= exact - 1e-3f);
+            assertEquals(exact, wide.distance(a, b), 1e-3f);
+        }
+    }
+
+    @Test
+    public void threshold_abandonsOnlyTemplatesThatCannotWin() {
+        Random random = new Random(3);
+        DtwEngine engine = new DtwEngine();
+        FeatureMatrix a = random(random, 50, 12);
+        FeatureMatrix b = random(random, 45, 12);
+        float exact = engine.distance(a, b);
+
+        assertEquals(exact, engine.distance(a, b, exact * 1.01f), 1e-3f);
+        assertTrue(Float.isInfinite(engine.distance(a, b, exact * 0.5f)));
+        assertEquals(1, engine.getAbandonedCount());
+    }
+}
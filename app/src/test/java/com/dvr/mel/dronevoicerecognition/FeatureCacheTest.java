@@ -0,0 +1,92 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static com.dvr.mel.dronevoicerecognition.TestFixtures.*;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the memory-mapped feature cache and the Wav reader behind it.
+ */
+public class FeatureCacheTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = File.createTempFile("featurecache", "");
+        assertTrue(dir.delete() && dir.mkdir());
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    @Test
+    public void reader_returnsWrittenSamples() throws Exception {
+        File wav = new File(dir, "avance.wav");
+        short[] samples = tone(5000, 300);
+        writeWav(wav, samples);
+
+        WavFileReader reader = new WavFileReader(wav);
+        assertEquals(16000, reader.sampleRate);
+        assertEquals(1, reader.nbrOfChannel);
+        assertArrayEquals(samples, reader.readSamples());
+    }
+
+    @Test(expected = WavFormatException.class)
+    public void reader_rejectsNonWavFiles() throws Exception {
+        File notWav = new File(dir, "recule.wav");
+        RandomAccessFile out = new RandomAccessFile(notWav, "rw");
+        out.write("definitely not a wav file, just some text".getBytes("UTF-8"));
+        out.close();
+        new WavFileReader(notWav);
+    }
+
+    @Test
+    public void cache_reusesSavedFeaturesUntilTheWavChanges() throws Exception {
+        File wav = new File(dir, "avance.wav");
+        writeWav(wav, tone(8000, 300));
+        File cacheFile = new File(dir, "corpus" + FeatureCache.EXTENSION);
+        StreamingMfccExtractor extractor = new StreamingMfccExtractor(16000);
+
+        FeatureCache cache = new FeatureCache(cacheFile, extractor);
+        FeatureMatrix computed = cache.get(wav);
+        assertEquals(1, cache.getMissCount());
+        cache.save();
+        assertTrue(cacheFile.exists());
+
+        FeatureCache reloaded = new FeatureCache(cacheFile, extractor);
+        FeatureMatrix cached = reloaded.get(wav);
+        assertEquals(1, reloaded.getHitCount());
+        assertEquals(0, reloaded.getMissCount());
+        assertEquals(computed.nbFrames, cached.nbFrames);
+        assertArrayEquals(computed.data, cached.data, 0f);
+
+        // a different recording of the same command is a different Wav size
+        writeWav(wav, tone(9600, 500));
+        FeatureMatrix recomputed = reloaded.get(wav);
+        assertEquals(1, reloaded.getMissCount());
+        assertEquals((9600 - 400) / 160 + 1, recomputed.nbFrames);
+    }
+
+    @Test
+    public void cache_ignoresFeaturesComputedWithOtherParameters() throws Exception {
+        File wav = new File(dir, "gauche.wav");
+        writeWav(wav, tone(4000, 700));
+        File cacheFile = new File(dir, "corpus" + FeatureCache.EXTENSION);
+
+        FeatureCache cache = new FeatureCache(cacheFile, new StreamingMfccExtractor(16000));
+        cache.get(wav);
+        cache.save();
+
+        FeatureCache other = new FeatureCache(cacheFile, new StreamingMfccExtractor(16000, 25, 10, 13, 20));
+        assertEquals(13, other.get(wav).dim);
+        assertEquals(1, other.getMissCount());
+    }
+}
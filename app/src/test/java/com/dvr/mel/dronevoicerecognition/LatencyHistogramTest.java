@@ -0,0 +1,56 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the log-linear latency histogram.
+ */
+public class LatencyHistogramTest {
+    @Test
+    public void buckets_coverEveryValueWithBoundedError() {
+        int previous = -1;
+        for (long v = 0; v < 1L << 22; v += 1 + v / 7) {
+            int bucket = LatencyHistogram.bucketOf(v);
+            assertTrue(bucket >= previous);
+            previous = bucket;
+            long upper = LatencyHistogram.upperBoundOf(bucket);
+            assertTrue(upper >= v);
+            assertTrue(upper - v <= v / LatencyHistogram.SUB_BUCKETS);
+            if (bucket > 0)
+                assertTrue(LatencyHistogram.upperBoundOf(bucket - 1) < v);
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentiles_matchRecordedDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ms = 1; ms <= 100; ms++)
+            histogram.record(ms * 1000000L);
+        histogram.record(-5); // clamped to 0
+
+        assertEquals(101, histogram.getCount());
+        assertEquals(100000000L, histogram.getMax());
+        assertEquals(50000000L, histogram.percentile(50), 50000000L / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(99000000L, histogram.percentile(99), 99000000L / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(100000000L, histogram.percentile(100));
+        assertEquals(0, histogram.percentile(0));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.percentile(99));
+    }
+
+    @Test
+    public void pipelineLatency_reportsEveryStage() {
+        PipelineLatency.reset();
+        PipelineLatency.record(PipelineLatency.Stage.VAD, 2000000L);
+        String report = PipelineLatency.report();
+        for (PipelineLatency.Stage stage : PipelineLatency.Stage.values())
+            assertTrue(report.contains(stage.name()));
+        assertEquals(1, PipelineLatency.get(PipelineLatency.Stage.VAD).getCount());
+        PipelineLatency.reset();
+    }
+}
@@ -0,0 +1,102 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.dvr.mel.dronevoicerecognition.TestFixtures.*;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the live recognizer's scoring and latency budget.
+ */
+public class LiveRecognizerTest {
+    private static final int VOCABULARY = 9;
+
+    private static VocabularyRegistry vocabulary() {
+        List<String> commands = new ArrayList<>();
+        for (int w = 0; w < VOCABULARY; w++)
+            commands.add("command" + w);
+        return new VocabularyRegistry(commands);
+    }
+
+    private static class RecordingListener implements LiveRecognizer.Listener {
+        final List<LiveRecognizer.Recognition> recognitions = new ArrayList<>();
+        int speechEnds = 0;
+
+        @Override
+        public void onSpeechStart() {
+        }
+
+        @Override
+        public void onSpeechEnd() {
+            speechEnds++;
+        }
+
+        @Override
+        public void onCommandRecognized(LiveRecognizer.Recognition recognition) {
+            recognitions.add(recognition);
+        }
+    }
+
+    @Test
+    public void onUtteranceEnd_recognizesEveryCommand() {
+        Random random = new Random(5);
+        FeatureMatrix[] base = words(random, VOCABULARY);
+        FeatureMatrix[][] references = new FeatureMatrix[3][VOCABULARY];
+        for (int r = 0; r < references.length; r++)
+            for (int w = 0; w < VOCABULARY; w++)
+                references[r][w] = noisy(base[w], random);
+        references[1][4] = null; // missing recording
+
+        RecordingListener listener = new RecordingListener();
+        LiveRecognizer recognizer = new LiveRecognizer(vocabulary(), references,
+                Long.MAX_VALUE / 4, DtwEngine.NO_BAND, listener);
+        assertEquals(3 * VOCABULARY - 1, recognizer.getTemplateCount());
+
+        for (int w = 0; w < VOCABULARY; w++) {
+            long speechEnd = System.nanoTime();
+            recognizer.onUtteranceEnd(0, noisy(base[w], random), speechEnd);
+            LiveRecognizer.Recognition recognition = listener.recognitions.get(w);
+            assertEquals("command" + w, recognition.command);
+            assertEquals(w, recognition.commandIndex);
+            assertEquals(recognizer.getTemplateCount(), recognition.templatesScored);
+            assertFalse(recognition.budgetExceeded);
+            assertTrue(recognition.confidence > 0 && recognition.confidence <= 1);
+            assertTrue(recognition.getLatencyNanos() >= 0);
+        }
+    }
+
+    @Test
+    public void recognize_expiredBudgetStillScoresOneTemplate() {
+        Random random = new Random(6);
+        FeatureMatrix[] base = words(random, VOCABULARY);
+        FeatureMatrix[][] references = { base };
+
+        LiveRecognizer recognizer = new LiveRecognizer(vocabulary(), references, 0, 20,
+                new RecordingListener());
+        LiveRecognizer.Recognition recognition =
+                recognizer.recognize(noisy(base[0], random), 0, System.nanoTime() - 1);
+
+        assertEquals(1, recognition.templatesScored);
+        assertTrue(recognition.budgetExceeded);
+        assertEquals(0, recognition.commandIndex);
+        assertEquals(1f, recognition.confidence, 0f); // no runner-up
+    }
+
+    @Test
+    public void onUtteranceEnd_ignoresClicks() {
+        Random random = new Random(7);
+        FeatureMatrix[][] references = { words(random, VOCABULARY) };
+        RecordingListener listener = new RecordingListener();
+        LiveRecognizer recognizer = new LiveRecognizer(vocabulary(), references, 0, 20, listener);
+
+        FeatureMatrix click = new FeatureMatrix(new float[12 * 3], 3, 12);
+        recognizer.onUtteranceEnd(0, click, System.nanoTime());
+
+        assertEquals(1, listener.speechEnds);
+        assertTrue(listener.recognitions.isEmpty());
+    }
+}
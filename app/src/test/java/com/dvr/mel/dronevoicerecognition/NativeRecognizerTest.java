@@ -0,0 +1,67 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static com.dvr.mel.dronevoicerecognition.TestFixtures.*;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the direct buffers given to the native recognizer and their checks, which
+ * all run before native-lib is loaded.
+ */
+public class NativeRecognizerTest {
+    private static ByteBuffer otherOrder(int capacity) {
+        ByteOrder other = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN
+                ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        return ByteBuffer.allocateDirect(capacity).order(other);
+    }
+
+    @Test
+    public void pack_keepsEveryMatrixInOrder() {
+        Random random = new Random(41);
+        FeatureMatrix first = random(random, 7), second = random(random, 11);
+        ByteBuffer packed = NativeRecognizer.pack(first, second);
+
+        assertTrue(packed.isDirect());
+        assertEquals(ByteOrder.nativeOrder(), packed.order());
+        assertEquals((7 + 11) * 12 * NativeRecognizer.BYTES_PER_COEFFICIENT, packed.capacity());
+        assertArrayEquals(first.data, NativeRecognizer.toFeatureMatrix(packed, 7, 12).data, 0f);
+
+        ByteBuffer rest = packed.duplicate();
+        rest.position(7 * 12 * NativeRecognizer.BYTES_PER_COEFFICIENT);
+        assertArrayEquals(second.data, NativeRecognizer.toFeatureMatrix(rest.slice(), 11, 12).data, 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void distance_rejectsAHeapBuffer() {
+        FeatureMatrix word = random(new Random(42), 10);
+        ByteBuffer heap = ByteBuffer.allocate(10 * 12 * 4).order(ByteOrder.nativeOrder());
+        NativeRecognizer.distance(heap, 10, NativeRecognizer.pack(word), 10, 12, 5, Float.POSITIVE_INFINITY);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void distance_rejectsTheOtherByteOrder() {
+        FeatureMatrix word = random(new Random(43), 10);
+        NativeRecognizer.distance(NativeRecognizer.pack(word), 10, otherOrder(10 * 12 * 4), 10, 12, 5,
+                Float.POSITIVE_INFINITY);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void distance_rejectsMoreFramesThanTheBufferHolds() {
+        FeatureMatrix word = random(new Random(44), 10);
+        ByteBuffer buffer = NativeRecognizer.pack(word);
+        NativeRecognizer.distance(buffer, 10, buffer, 11, 12, 5, Float.POSITIVE_INFINITY);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void closest_rejectsFrameCountsLargerThanTheTemplates() {
+        Random random = new Random(45);
+        ByteBuffer templates = NativeRecognizer.pack(random(random, 8), random(random, 9));
+        NativeRecognizer.closest(templates, new int[]{8, 10}, NativeRecognizer.pack(random(random, 8)), 8, 12,
+                5, null);
+    }
+}
@@ -0,0 +1,63 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the pre-roll circular buffer.
+ */
+public class PreRollBufferTest {
+    private static short[] ramp(int from, int length) {
+        short[] samples = new short[length];
+        for (int i = 0; i < length; i++)
+            samples[i] = (short) (from + i);
+        return samples;
+    }
+
+    private static List<Short> flush(PreRollBuffer preRoll, long from) throws Exception {
+        final List<Short> out = new ArrayList<>();
+        preRoll.flushTo(from, new PreRollBuffer.SampleSink() {
+            @Override
+            public void write(short[] samples, int offset, int length) {
+                for (int i = offset; i < offset + length; i++)
+                    out.add(samples[i]);
+            }
+        });
+        return out;
+    }
+
+    @Test
+    public void flush_returnsSamplesInOrderAcrossWrap() throws Exception {
+        PreRollBuffer preRoll = new PreRollBuffer(10);
+        preRoll.push(ramp(0, 7), 0, 7);
+        preRoll.push(ramp(7, 7), 0, 7);
+        assertEquals(4, preRoll.getStartPosition());
+        assertEquals(14, preRoll.getEndPosition());
+
+        List<Short> out = flush(preRoll, 8);
+        assertEquals(6, out.size());
+        for (int i = 0; i < out.size(); i++)
+            assertEquals(8 + i, (int) out.get(i));
+    }
+
+    @Test
+    public void push_keepsOnlyTheTailOfLargeBuffers() throws Exception {
+        PreRollBuffer preRoll = new PreRollBuffer(4);
+        preRoll.push(ramp(0, 100), 0, 100);
+        List<Short> out = flush(preRoll, 0);
+        assertEquals(4, out.size());
+        assertEquals(96, (int) out.get(0));
+        assertEquals(99, (int) out.get(3));
+    }
+
+    @Test
+    public void flush_ignoresPositionsInTheFuture() throws Exception {
+        PreRollBuffer preRoll = new PreRollBuffer(4);
+        preRoll.push(ramp(0, 3), 0, 3);
+        assertTrue(flush(preRoll, 3).isEmpty());
+    }
+}
@@ -0,0 +1,73 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.dvr.mel.dronevoicerecognition.TestFixtures.*;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the fork/join recognition executor.
+ */
+public class RecognitionExecutorTest {
+    private static final int VOCABULARY = 9;
+
+    @Test
+    public void recognize_matchesSequentialArgmin() {
+        Random random = new Random(11);
+        FeatureMatrix[] base = words(random, VOCABULARY);
+        FeatureMatrix[][] references = new FeatureMatrix[4][VOCABULARY];
+        for (int r = 0; r < references.length; r++)
+            for (int w = 0; w < VOCABULARY; w++)
+                references[r][w] = noisy(base[w], random);
+        // hypothesis with its words partly shuffled, so the matrix is not only a diagonal
+        FeatureMatrix[] hypothesis = new FeatureMatrix[VOCABULARY];
+        for (int w = 0; w < VOCABULARY; w++)
+            hypothesis[w] = noisy(base[(w == 2 || w == 5) ? 7 - w : w], random);
+
+        int[] expected = new int[VOCABULARY * VOCABULARY];
+        DtwEngine engine = new DtwEngine();
+        for (FeatureMatrix[] reference : references)
+            for (int rw = 0; rw < VOCABULARY; rw++) {
+                int closest = 0;
+                float minimum = Float.POSITIVE_INFINITY;
+                for (int hw = 0; hw < VOCABULARY; hw++) {
+                    float d = engine.distance(reference[rw], hypothesis[hw]);
+                    if (d < minimum) {
+                        minimum = d;
+                        closest = hw;
+                    }
+                }
+                expected[rw * VOCABULARY + closest]++;
+            }
+
+        RecognitionExecutor executor = new RecognitionExecutor(4, DtwEngine.NO_BAND);
+        try {
+            ConfusionMatrix result = executor.recognize(references, hypothesis);
+            assertArrayEquals(expected, result.counts);
+            assertEquals(4, result.get(2, 5));
+            assertEquals(7f / 9f, result.getRecognitionRate(), 1e-6f);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void recognize_ignoresMissingRecordings() {
+        Random random = new Random(5);
+        FeatureMatrix[] words = words(random, VOCABULARY);
+        FeatureMatrix[][] references = { words.clone() };
+        references[0][3] = null;
+
+        RecognitionExecutor executor = new RecognitionExecutor(2, 5);
+        try {
+            ConfusionMatrix result = executor.recognize(references, words);
+            assertEquals(1f, result.getRecognitionRate(), 0f);
+            for (int w = 0; w < VOCABULARY; w++)
+                assertEquals(w == 3 ? 0 : 1, result.get(w, w));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the frame level voice activity detector.
+ */
+public class SlidingRmsVadTest {
+    private static final int SAMPLE_RATE = 16000;
+
+    /**
+     * 500 ms of low noise, 300 ms of loud tone, 500 ms of low noise.
+     */
+    private static short[] burst() {
+        Random random = new Random(42);
+        short[] signal = new short[SAMPLE_RATE * 13 / 10];
+        for (int i = 0; i < signal.length; i++)
+            signal[i] = (short) (random.nextInt(21) - 10);
+        for (int i = 8000; i < 12800; i++)
+            signal[i] = (short) (5000 * Math.sin(2 * Math.PI * 440 * i / SAMPLE_RATE));
+        return signal;
+    }
+
+    private static List<Long> run(short[] signal, int chunk) {
+        final List<Long> events = new ArrayList<>();
+        SlidingRmsVad vad = new SlidingRmsVad(SAMPLE_RATE, 10);
+        VoiceActivityDetector.Listener listener = new VoiceActivityDetector.Listener() {
+            @Override
+            public void onSpeechStart(long startSample) {
+                events.add(startSample);
+            }
+
+            @Override
+            public void onSpeechEnd(long endSample) {
+                events.add(-endSample);
+            }
+        };
+        for (int offset = 0; offset < signal.length; offset += chunk)
+            vad.process(signal, offset, Math.min(chunk, signal.length - offset), listener);
+        assertEquals(signal.length, vad.getPosition());
+        return events;
+    }
+
+    @Test
+    public void boundaries_areFrameAccurate() throws Exception {
+        List<Long> events = run(burst(), 1234);
+        assertEquals(2, events.size());
+        assertEquals(8000L, (long) events.get(0));
+        assertEquals(-12800L, (long) events.get(1));
+    }
+
+    @Test
+    public void boundaries_doNotDependOnBufferSize() throws Exception {
+        short[] signal = burst();
+        assertEquals(run(signal, 160), run(signal, 20000));
+    }
+
+    @Test
+    public void silence_triggersNothing() throws Exception {
+        short[] signal = burst();
+        for (int i = 8000; i < 12800; i++)
+            signal[i] = 0;
+        assertTrue(run(signal, 1024).isEmpty());
+    }
+}
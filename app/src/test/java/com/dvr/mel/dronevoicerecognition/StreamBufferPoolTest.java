@@ -0,0 +1,66 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the capture buffer pool and its overload policies.
+ */
+public class StreamBufferPoolTest {
+    @Test
+    public void buffers_areRecycled() throws Exception {
+        StreamBufferPool pool = new StreamBufferPool(3, 16, StreamBufferPool.OverloadPolicy.BLOCK);
+        StreamBuffer first = pool.acquire();
+        assertTrue(pool.publish());
+
+        StreamBuffer consumed = pool.take();
+        assertSame(first, consumed);
+        pool.release(consumed);
+
+        // 3 buffers only, whatever the number of round trips
+        for (int i = 0; i < 100; i++) {
+            assertTrue(pool.publish());
+            pool.release(pool.take());
+        }
+        assertEquals(0, pool.getBlockedCount());
+    }
+
+    @Test
+    public void dropOldest_stealsQueuedBuffer() throws Exception {
+        StreamBufferPool pool = new StreamBufferPool(3, 16, StreamBufferPool.OverloadPolicy.DROP_OLDEST);
+        StreamBuffer oldest = pool.acquire();
+        oldest.length = 1;
+        assertTrue(pool.publish());
+        pool.acquire().length = 2;
+        assertTrue(pool.publish());
+        // consumer never released anything, the third publish has to steal the oldest one
+        pool.acquire().length = 3;
+        assertTrue(pool.publish());
+        assertSame(oldest, pool.acquire());
+        assertEquals(1, pool.getDroppedCount());
+
+        assertEquals(2, pool.take().length);
+        assertEquals(3, pool.take().length);
+    }
+
+    @Test
+    public void dropNewest_overwritesTheHeldRead() throws Exception {
+        StreamBufferPool pool = new StreamBufferPool(3, 16, StreamBufferPool.OverloadPolicy.DROP_NEWEST);
+        assertTrue(pool.publish());
+        assertTrue(pool.publish());
+        StreamBuffer spare = pool.acquire();
+        assertTrue(pool.publish());
+        assertTrue(pool.publish());
+        assertSame(spare, pool.acquire());
+        assertEquals(2, pool.getDroppedNewestCount());
+        assertEquals(2, pool.getQueueDepth());
+
+        // once the consumer releases a buffer, the read made meanwhile gets published
+        pool.release(pool.take());
+        spare.length = 42;
+        assertTrue(pool.publish());
+        pool.take();
+        assertEquals(42, pool.take().length);
+    }
+}
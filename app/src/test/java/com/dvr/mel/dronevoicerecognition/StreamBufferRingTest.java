@@ -0,0 +1,67 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the lock-free SPSC ring shared by MicWavRecorderHandler and WavStreamHandler.
+ */
+public class StreamBufferRingTest {
+    @Test
+    public void capacity_isRoundedToPowerOfTwo() throws Exception {
+        assertEquals(16, new StreamBufferRing<Integer>(10).capacity());
+        assertEquals(8, new StreamBufferRing<Integer>(8).capacity());
+    }
+
+    @Test
+    public void offer_failsWhenFull() throws Exception {
+        StreamBufferRing<Integer> ring = new StreamBufferRing<>(2);
+        assertTrue(ring.offer(1));
+        assertTrue(ring.offer(2));
+        assertFalse(ring.offer(3));
+        assertEquals(2, ring.size());
+        assertEquals(2, ring.getHighWaterMark());
+
+        assertEquals(Integer.valueOf(1), ring.poll());
+        assertEquals(Integer.valueOf(2), ring.poll());
+        assertNull(ring.poll());
+        assertEquals(2, ring.getHighWaterMark());
+    }
+
+    @Test
+    public void take_returnsNullOnceClosed() throws Exception {
+        final StreamBufferRing<Integer> ring = new StreamBufferRing<>(4);
+        Thread closer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try { Thread.sleep(50); } catch (InterruptedException ignored) { }
+                ring.close();
+            }
+        });
+        closer.start();
+        assertNull(ring.take());
+        closer.join();
+    }
+
+    @Test
+    public void producerConsumer_keepsOrder() throws Exception {
+        final int count = 200000;
+        final StreamBufferRing<Integer> ring = new StreamBufferRing<>(8);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++)
+                    ring.put(i);
+            }
+        });
+        producer.start();
+
+        for (int i = 0; i < count; i++)
+            assertEquals(Integer.valueOf(i), ring.take());
+
+        producer.join();
+        assertEquals(0, ring.size());
+        assertTrue(ring.getHighWaterMark() <= ring.capacity());
+    }
+}
@@ -0,0 +1,62 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the streaming MFCC extractor.
+ */
+public class StreamingMfccExtractorTest {
+    private static short[] tone(int length) {
+        short[] samples = new short[length];
+        for (int i = 0; i < length; i++)
+            samples[i] = (short) (8000 * Math.sin(2 * Math.PI * 440 * i / 16000.0) + 3000 * Math.sin(2 * Math.PI * 2100 * i / 16000.0));
+        return samples;
+    }
+
+    @Test
+    public void feed_inSmallChunks_matchesWholeSignal() {
+        short[] samples = tone(16000);
+        StreamingMfccExtractor extractor = new StreamingMfccExtractor(16000);
+        FeatureMatrix whole = extractor.extract(samples, 0, samples.length);
+
+        for (int offset = 0; offset < samples.length; offset += 123)
+            extractor.feed(samples, offset, Math.min(123, samples.length - offset));
+        FeatureMatrix chunked = extractor.finish(samples.length);
+
+        assertEquals(whole.nbFrames, chunked.nbFrames);
+        assertArrayEquals(whole.data, chunked.data, 0f);
+    }
+
+    @Test
+    public void finish_keepsOnlyCompleteFramesInsideTheUtterance() {
+        short[] samples = tone(16000);
+        StreamingMfccExtractor extractor = new StreamingMfccExtractor(16000);
+        assertEquals(400, extractor.frameLength);
+        assertEquals(160, extractor.frameStep);
+
+        FeatureMatrix features = extractor.extract(samples, 0, samples.length);
+        assertEquals((16000 - 400) / 160 + 1, features.nbFrames);
+        assertEquals(12, features.dim);
+
+        extractor.feed(samples, 0, samples.length);
+        assertEquals(2, extractor.finish(400 + 160).nbFrames);
+        assertEquals(0, extractor.finish(0).nbFrames);
+    }
+
+    @Test
+    public void sharedPowerSpectra_matchExtract() {
+        short[] samples = tone(8000);
+        StreamingMfccExtractor reference = new StreamingMfccExtractor(16000, 25, 10, 12, 20);
+        float[] spectra = reference.powerSpectra(samples, 0, samples.length);
+        assertEquals(reference.extract(samples, 0, samples.length).nbFrames * reference.getNbBins(), spectra.length);
+
+        // other filterbank and dimension, same frames
+        StreamingMfccExtractor other = new StreamingMfccExtractor(16000, 25, 10, 8, 26);
+        FeatureMatrix shared = other.fromPowerSpectra(spectra);
+        FeatureMatrix direct = other.extract(samples, 0, samples.length);
+        assertEquals(direct.nbFrames, shared.nbFrames);
+        assertArrayEquals(direct.data, shared.data, 0f);
+    }
+}
@@ -0,0 +1,163 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.dvr.mel.dronevoicerecognition.TestFixtures.*;
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the template index's lower bounds and pruning.
+ */
+public class TemplateIndexTest {
+    @Test
+    public void lowerBound_neverAboveDtwDistance() {
+        Random random = new Random(11);
+        int[] radii = {DtwEngine.NO_BAND, 0, 3, 20};
+
+        for (int radius : radii) {
+            DtwEngine engine = new DtwEngine(radius);
+            for (int n = 0; n < 50; n++) {
+                FeatureMatrix[] templates = {random(random, 1 + random.nextInt(80))};
+                TemplateIndex index = new TemplateIndex(templates, radius);
+                FeatureMatrix hypothesis = random.nextBoolean()
+                        ? random(random, 1 + random.nextInt(80))
+                        : noisy(templates[0], random);
+
+                float bound = index.lowerBound(0, hypothesis, Float.POSITIVE_INFINITY);
+                float distance = engine.distance(templates[0], hypothesis);
+                assertTrue(bound + " > " + distance, bound <= distance * 1.0001f);
+                assertTrue(bound >= 0);
+            }
+        }
+    }
+
+    @Test
+    public void lowerBound_abandonsAboveThreshold() {
+        Random random = new Random(12);
+        FeatureMatrix[] templates = {random(random, 40)};
+        TemplateIndex index = new TemplateIndex(templates, 20);
+        FeatureMatrix hypothesis = random(random, 40);
+
+        float bound = index.lowerBound(0, hypothesis, Float.POSITIVE_INFINITY);
+        assertTrue(bound > 0);
+        assertEquals(Float.POSITIVE_INFINITY, index.lowerBound(0, hypothesis, bound / 2), 0f);
+        assertEquals(bound, index.lowerBound(0, hypothesis, bound * 2), 0f);
+    }
+
+    @Test
+    public void orderByLowerBound_sortsEveryTemplate() {
+        Random random = new Random(13);
+        FeatureMatrix[] templates = new FeatureMatrix[10];
+        for (int t = 0; t < templates.length; t++)
+            templates[t] = random(random, 20 + random.nextInt(40));
+        TemplateIndex index = new TemplateIndex(templates, 20);
+
+        int nbOrdered = index.orderByLowerBound(noisy(templates[7], random));
+        assertEquals(templates.length, nbOrdered);
+        assertEquals(7, index.getOrdered(0));
+        boolean[] seen = new boolean[templates.length];
+        for (int o = 0; o < nbOrdered; o++) {
+            assertFalse(seen[index.getOrdered(o)]);
+            seen[index.getOrdered(o)] = true;
+            if (o > 0)
+                assertTrue(index.getBound(index.getOrdered(o - 1)) <= index.getBound(index.getOrdered(o)));
+        }
+    }
+
+    @Test
+    public void orderByLowerBound_keepsEqualBoundsInTemplateOrder() {
+        FeatureMatrix word = random(new Random(16), 30);
+        FeatureMatrix[] templates = {word, word, word, word};
+        TemplateIndex index = new TemplateIndex(templates, 10);
+
+        assertEquals(4, index.orderByLowerBound(word));
+        for (int o = 0; o < 4; o++)
+            assertEquals(o, index.getOrdered(o));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getOrdered_stopsAtTheLastOrderedTemplate() {
+        Random random = new Random(17);
+        FeatureMatrix[] templates = {random(random, 20), random(random, 30), random(random, 40)};
+        TemplateIndex index = new TemplateIndex(templates, new int[]{0, 1, 2}, 10);
+
+        assertEquals(1, index.orderByLowerBound(templates[1], 1));
+        index.getOrdered(1);
+    }
+
+    @Test
+    public void orderByLowerBound_keepsTheShortlistedCommandsOnly() {
+        Random random = new Random(15);
+        int vocabulary = 40;
+        FeatureMatrix[] templates = new FeatureMatrix[2 * vocabulary];
+        int[] commandIds = new int[templates.length];
+        for (int t = 0; t < templates.length; t++) {
+            templates[t] = t < vocabulary ? smooth(random, 30 + random.nextInt(30)) : noisy(templates[t - vocabulary], random);
+            commandIds[t] = t % vocabulary;
+        }
+        TemplateIndex index = new TemplateIndex(templates, commandIds, 10);
+
+        int nbOrdered = index.orderByLowerBound(noisy(templates[17], random), 5);
+        assertEquals(10, nbOrdered); // both templates of the 5 closest commands
+        boolean found = false;
+        for (int o = 0; o < nbOrdered; o++) {
+            found |= index.getCommand(index.getOrdered(o)) == 17;
+            if (o > 0)
+                assertTrue(index.getBound(index.getOrdered(o - 1)) <= index.getBound(index.getOrdered(o)));
+        }
+        assertTrue(found);
+        assertEquals(templates.length - 10, index.getShortlistedOutCount());
+
+        assertEquals(templates.length, index.orderByLowerBound(templates[3], vocabulary));
+        assertEquals(templates.length, index.orderByLowerBound(templates[3], 0));
+    }
+
+    @Test
+    public void liveRecognizer_prunesWithoutChangingTheDecision() {
+        Random random = new Random(14);
+        int vocabulary = 9, nbCorpora = 8;
+        FeatureMatrix[] base = new FeatureMatrix[vocabulary];
+        List<String> commands = new ArrayList<>();
+        for (int w = 0; w < vocabulary; w++) {
+            base[w] = smooth(random, 30 + random.nextInt(30));
+            commands.add("command" + w);
+        }
+        FeatureMatrix[][] references = new FeatureMatrix[nbCorpora][vocabulary];
+        for (int r = 0; r < nbCorpora; r++)
+            for (int w = 0; w < vocabulary; w++)
+                references[r][w] = noisy(base[w], random);
+
+        LiveRecognizer recognizer = new LiveRecognizer(new VocabularyRegistry(commands), references, Long.MAX_VALUE / 4, 10, null);
+        DtwEngine engine = new DtwEngine(10);
+        int pruned = 0;
+
+        for (int n = 0; n < 3 * vocabulary; n++) {
+            FeatureMatrix utterance = noisy(base[n % vocabulary], random);
+            LiveRecognizer.Recognition recognition = recognizer.recognize(utterance, 0, Long.MAX_VALUE);
+
+            // exhaustive search, without any bound nor threshold
+            float best = Float.POSITIVE_INFINITY;
+            int bestCommand = -1;
+            for (int r = 0; r < nbCorpora; r++)
+                for (int w = 0; w < vocabulary; w++) {
+                    float distance = engine.distance(references[r][w], utterance);
+                    if (distance < best) {
+                        best = distance;
+                        bestCommand = w;
+                    }
+                }
+
+            assertEquals(bestCommand, recognition.commandIndex);
+            assertEquals(best, recognition.distance, best * 1e-5f);
+            assertEquals(nbCorpora * vocabulary, recognition.templatesScored);
+            pruned += recognition.templatesPruned;
+        }
+
+        assertTrue(recognizer.getPruningRate() > 0.1f);
+        assertEquals((float) pruned / (3 * vocabulary * nbCorpora * vocabulary), recognizer.getPruningRate(), 1e-6f);
+    }
+}
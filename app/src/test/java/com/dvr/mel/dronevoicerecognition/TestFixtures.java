@@ -0,0 +1,71 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import java.io.File;
+import java.util.Random;
+
+/**
+ * Synthetic recordings and temporary files shared by the local unit tests.
+ */
+final class TestFixtures {
+    private TestFixtures() {
+    }
+
+    /** 12 coefficients per frame, uniform in [-10, 10[ : no two frames alike. */
+    static FeatureMatrix random(Random random, int nbFrames) {
+        float[] data = new float[nbFrames * 12];
+        for (int i = 0; i < data.length; i++)
+            data[i] = random.nextFloat() * 20 - 10;
+        return new FeatureMatrix(data, nbFrames, 12);
+    }
+
+    /** MFCC trajectories move slowly from one frame to the next, unlike random()'s. */
+    static FeatureMatrix smooth(Random random, int nbFrames) {
+        float[] data = new float[nbFrames * 12];
+        for (int k = 0; k < 12; k++)
+            data[k] = random.nextFloat() * 20 - 10;
+        for (int i = 12; i < data.length; i++)
+            data[i] = data[i - 12] + (float) random.nextGaussian();
+        return new FeatureMatrix(data, nbFrames, 12);
+    }
+
+    /** The same word spoken again : unit gaussian noise on every coefficient. */
+    static FeatureMatrix noisy(FeatureMatrix word, Random random) {
+        float[] data = new float[word.data.length];
+        for (int i = 0; i < data.length; i++)
+            data[i] = word.data[i] + (float) random.nextGaussian();
+        return new FeatureMatrix(data, word.nbFrames, word.dim);
+    }
+
+    /** A vocabulary of random() words, 30 to 59 frames long. */
+    static FeatureMatrix[] words(Random random, int vocabulary) {
+        FeatureMatrix[] words = new FeatureMatrix[vocabulary];
+        for (int w = 0; w < vocabulary; w++)
+            words[w] = random(random, 30 + random.nextInt(30));
+        return words;
+    }
+
+    /** 16 kHz sine wave. */
+    static short[] tone(int length, double frequency) {
+        short[] samples = new short[length];
+        for (int i = 0; i < length; i++)
+            samples[i] = (short) (6000 * Math.sin(2 * Math.PI * frequency * i / 16000.0));
+        return samples;
+    }
+
+    /** 16 kHz, mono, 16 bits Wav file, as the recorder writes them. */
+    static void writeWav(File file, short[] samples) throws Exception {
+        WavFileSink sink = new WavFileSink(16000, 1, 16, 1024);
+        sink.open(file);
+        sink.write(samples, 0, samples.length);
+        sink.close();
+    }
+
+    /** Deletes file, or a whole directory tree. */
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null)
+            for (File child : children)
+                delete(child);
+        file.delete();
+    }
+}
@@ -0,0 +1,35 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the vocabulary registry.
+ */
+public class VocabularyRegistryTest {
+    @Test
+    public void ids_followTheCommandsOrder() {
+        VocabularyRegistry vocabulary = new VocabularyRegistry(Arrays.asList("avance", "recule", "droite"));
+        assertEquals(3, vocabulary.size());
+        assertEquals(1, vocabulary.idOf("recule"));
+        assertEquals("droite", vocabulary.nameOf(2));
+        assertEquals(VocabularyRegistry.UNKNOWN, vocabulary.idOf("plonge"));
+        assertEquals(Arrays.asList("avance", "recule", "droite"), vocabulary.getCommands());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsDuplicates() {
+        new VocabularyRegistry(Arrays.asList("avance", "recule", "avance"));
+    }
+
+    @Test
+    public void newConfusionMatrix_coversEveryId() {
+        VocabularyRegistry vocabulary = new VocabularyRegistry(Arrays.asList("avance", "recule", "droite"));
+        ConfusionMatrix matrix = vocabulary.newConfusionMatrix();
+        assertEquals(3, matrix.size);
+        assertEquals(9, matrix.counts.length);
+    }
+}
@@ -0,0 +1,102 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the NIO Wav writer used by WavStreamHandler.
+ */
+public class WavFileSinkTest {
+    @Test
+    public void write_producesLittleEndianRiffFile() throws Exception {
+        File file = File.createTempFile("sink", ".wav");
+        try {
+            // buffer smaller than the written array, forces the chunked path
+            WavFileSink sink = new WavFileSink(16000, 1, 16, 3);
+            short[] samples = { 1, -2, 300, Short.MAX_VALUE, Short.MIN_VALUE };
+            sink.open(file);
+            sink.write(samples, 0, samples.length);
+            sink.write(samples, 1, 1);
+            sink.close();
+            assertFalse(sink.isOpen());
+
+            byte[] content = new byte[(int) file.length()];
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            raf.readFully(content);
+            raf.close();
+            assertEquals(WavFileSink.HEADER_SIZE + 12, content.length);
+
+            ByteBuffer wav = ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN);
+            assertEquals("RIFF", new String(content, 0, 4, "US-ASCII"));
+            assertEquals(36 + 12, wav.getInt(4));
+            assertEquals("WAVEfmt ", new String(content, 8, 8, "US-ASCII"));
+            assertEquals(16, wav.getInt(16));
+            assertEquals(1, wav.getShort(20));
+            assertEquals(1, wav.getShort(22));
+            assertEquals(16000, wav.getInt(24));
+            assertEquals(32000, wav.getInt(28));
+            assertEquals(2, wav.getShort(32));
+            assertEquals(16, wav.getShort(34));
+            assertEquals("data", new String(content, 36, 4, "US-ASCII"));
+            assertEquals(12, wav.getInt(40));
+
+            for (int i = 0; i < samples.length; i++)
+                assertEquals(samples[i], wav.getShort(44 + 2 * i));
+            assertEquals(-2, wav.getShort(44 + 10));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void reader_checksTheHeaderTheSinkWrites() throws Exception {
+        File file = File.createTempFile("sink", ".wav");
+        try {
+            WavFileSink sink = new WavFileSink(16000, 1, 16, 64);
+            sink.open(file);
+            sink.write(new short[]{1, 2, 3}, 0, 3);
+            sink.close();
+            new WavFileReader(file).checkCanonicalHeader();
+
+            // wrong byte rate, still readable but not what the sink writes
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            raf.seek(28);
+            raf.write(new byte[]{0, 0, 1, 0});
+            raf.close();
+            WavFileReader reader = new WavFileReader(file);
+            assertEquals(3, reader.getNbrOfSamples());
+            try {
+                reader.checkCanonicalHeader();
+                fail();
+            } catch (WavFormatException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("byte rate"));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void open_overwritesPreviousContent() throws Exception {
+        File file = File.createTempFile("sink", ".wav");
+        try {
+            WavFileSink sink = new WavFileSink(16000, 1, 16, 64);
+            sink.open(file);
+            sink.write(new short[32], 0, 32);
+            sink.close();
+
+            sink.open(file);
+            sink.write(new short[4], 0, 4);
+            sink.close();
+            assertEquals(WavFileSink.HEADER_SIZE + 8, file.length());
+        } finally {
+            file.delete();
+        }
+    }
+}
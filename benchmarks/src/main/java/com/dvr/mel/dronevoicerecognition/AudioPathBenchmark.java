@@ -0,0 +1,142 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**************************************************************************************************
+ *  AudioPathBenchmark in a nutshell:                                                             *
+ *      _ everything WavStreamHandler does to one streamBuffer, stage by stage :                  *
+ *            vad          SlidingRmsVad.process(), WavStreamHandler's RMS computation            *
+ *            wavWrite     WavFileSink.write() to an actual file                                  *
+ *            wavHeader    WavFileSink.fillHeader() into a direct buffer                          *
+ *            mfccFeed     StreamingMfccExtractor.feed()                                          *
+ *      _ one operation <=> one streamBuffer of bufferSizeMultiplicator * MIN_BUFFER_SIZE_ELMT    *
+ *        samples, so ops/s * buffer duration tells how much real time is left on the consumer    *
+ *************************************************************************************************/
+
+
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AudioPathBenchmark
+{
+    @Param({"1", "10"}) // 10 <=> AppInfo.BUFFER_SIZE_MULTIPLICATOR's default
+    int bufferSizeMultiplicator;
+
+    private static final long MAX_WAV_LENGTH = 16 << 20; // bytes written before the benchmark file is truncated
+
+    private short[] streamBuffer; // 8 streamBuffers worth of signal, benchmarks cycle through them
+    private int bufferIndex = 0;
+    private SlidingRmsVad vad;
+    private StreamingMfccExtractor mfccExtractor;
+    private WavFileSink wavSink;
+    private File wavFile;
+    private ByteBuffer headerBuffer;
+
+    private final VoiceActivityDetector.Listener listener = new VoiceActivityDetector.Listener()
+    {
+        @Override
+        public void onSpeechStart(long startSample) { speechEvents++; }
+
+        @Override
+        public void onSpeechEnd(long endSample) { speechEvents++; }
+    };
+    private long speechEvents;
+
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        int bufferSizeElmt = bufferSizeMultiplicator*BenchmarkData.MIN_BUFFER_SIZE_ELMT;
+        streamBuffer = BenchmarkData.speechLikeSignal(bufferSizeElmt*8, 42);
+        vad = new SlidingRmsVad(BenchmarkData.SAMPLE_RATE, BenchmarkData.SENSITIVITY);
+        mfccExtractor = new StreamingMfccExtractor(BenchmarkData.SAMPLE_RATE);
+        wavSink = new WavFileSink(BenchmarkData.SAMPLE_RATE, 1, 16, bufferSizeElmt);
+        wavFile = File.createTempFile("benchmark", ".wav");
+        wavSink.open(wavFile);
+        headerBuffer = ByteBuffer.allocateDirect(WavFileSink.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        wavSink.close();
+        wavFile.delete();
+    }
+
+
+
+    private int next()
+    {   // offset of the next streamBuffer-sized slice, cycling through the signal
+        int bufferSizeElmt = bufferSizeMultiplicator*BenchmarkData.MIN_BUFFER_SIZE_ELMT;
+        bufferIndex = (bufferIndex+1) % 8;
+        return bufferIndex*bufferSizeElmt;
+    }
+
+
+
+    @Benchmark
+    public long vad()
+    {
+        vad.process(streamBuffer, next(), bufferSizeMultiplicator*BenchmarkData.MIN_BUFFER_SIZE_ELMT, listener);
+        return speechEvents;
+    }
+
+
+
+    @Benchmark
+    public long wavWrite() throws IOException
+    {
+        wavSink.write(streamBuffer, next(), bufferSizeMultiplicator*BenchmarkData.MIN_BUFFER_SIZE_ELMT);
+        if ( wavSink.getAudioLength() > MAX_WAV_LENGTH )
+            wavSink.truncate(0);
+        return wavSink.getAudioLength();
+    }
+
+
+
+    @Benchmark
+    public void wavHeader(Blackhole blackhole)
+    {
+        headerBuffer.clear();
+        WavFileSink.fillHeader(headerBuffer, BenchmarkData.SAMPLE_RATE, 1, 16, 123456);
+        blackhole.consume(headerBuffer);
+    }
+
+
+
+    @Benchmark
+    public int mfccFeed()
+    {
+        mfccExtractor.feed(streamBuffer, next(), bufferSizeMultiplicator*BenchmarkData.MIN_BUFFER_SIZE_ELMT);
+        if ( mfccExtractor.getFrameCount() > 1000 )
+            mfccExtractor.reset(); // keep the feature storage at a realistic size
+        return mfccExtractor.getFrameCount();
+    }
+}
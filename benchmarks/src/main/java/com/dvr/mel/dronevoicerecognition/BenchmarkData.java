@@ -0,0 +1,51 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import java.util.Random;
+
+/**************************************************************************************************
+ *  BenchmarkData in a nutshell:                                                                  *
+ *      _ realistic, reproducible inputs shared by every benchmark                                *
+ *      _ buffer sizes follow MicWavRecorderHandler : AppInfo.BUFFER_SIZE_MULTIPLICATOR times     *
+ *        AudioRecord.getMinBufferSize(), the later being 1280 bytes (640 samples) for 16 KHz     *
+ *        mono 16 bits on most devices                                                            *
+ *************************************************************************************************/
+
+
+
+
+final class BenchmarkData
+{
+    static final int SAMPLE_RATE = 16000;
+    static final int MIN_BUFFER_SIZE_ELMT = 640; // AudioRecord.getMinBufferSize() / 2, 16 KHz mono 16 bits
+    static final int SENSITIVITY = 10; // AppInfo.SENSITIVITY's default value
+    static final int UTTERANCE_FRAMES = 80; // ~0.8 s command, once trimmed by the VAD
+
+    private BenchmarkData() {}
+
+
+
+    static short[] speechLikeSignal(int length, long seed)
+    {   // background noise with a few harmonic bursts, so the VAD keeps switching state
+        Random random = new Random(seed);
+        short[] samples = new short[length];
+        for ( int i=0; i<length; ++i )
+        {
+            double noise = random.nextGaussian() * 60;
+            boolean burst = (i / (SAMPLE_RATE/4)) % 3 == 1; // 250 ms on, 500 ms off
+            double voice = burst ? 4000*Math.sin(2*Math.PI*180*i/SAMPLE_RATE)
+                                   + 1500*Math.sin(2*Math.PI*720*i/SAMPLE_RATE) : 0;
+            samples[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, noise+voice));
+        }
+        return samples;
+    }
+
+
+
+    static FeatureMatrix randomFeatures(Random random, int nbFrames)
+    {   // MFCC-like values, 12 coefficients per frame
+        float[] data = new float[nbFrames*StreamingMfccExtractor.DEFAULT_DIM_MFCC];
+        for ( int i=0; i<data.length; ++i )
+            data[i] = (float) random.nextGaussian() * 4;
+        return new FeatureMatrix(data, nbFrames, StreamingMfccExtractor.DEFAULT_DIM_MFCC);
+    }
+}
@@ -0,0 +1,94 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**************************************************************************************************
+ *  RecognitionBenchmark in a nutshell:                                                           *
+ *      _ what happens once the user stopped talking :                                            *
+ *            extract      StreamingMfccExtractor.extract() of a whole ~0.8 s utterance           *
+ *            score        DtwEngine over every template, best so far as abandoning threshold     *
+ *      _ template counts : one corpus (9 commands), 10 and 30 reference corpora                  *
+ *************************************************************************************************/
+
+
+
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecognitionBenchmark
+{
+    @Param({"9", "90", "270"})
+    int templateCount;
+
+    @Param({"-1", "10"}) // DtwEngine.NO_BAND, or a 100 ms Sakoe-Chiba band
+    int bandRadius;
+
+    private short[] utterance;
+    private StreamingMfccExtractor mfccExtractor;
+    private FeatureMatrix hypothesis;
+    private FeatureMatrix[] templates;
+    private DtwEngine dtwEngine;
+
+
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        Random random = new Random(7);
+        int utteranceLength = (BenchmarkData.UTTERANCE_FRAMES-1)*BenchmarkData.SAMPLE_RATE/100
+                              + BenchmarkData.SAMPLE_RATE*StreamingMfccExtractor.DEFAULT_FRAME_MS/1000;
+        utterance = BenchmarkData.speechLikeSignal(utteranceLength, 11);
+        mfccExtractor = new StreamingMfccExtractor(BenchmarkData.SAMPLE_RATE);
+
+        hypothesis = BenchmarkData.randomFeatures(random, BenchmarkData.UTTERANCE_FRAMES);
+        templates = new FeatureMatrix[templateCount];
+        for ( int i=0; i<templateCount; ++i ) // commands last 0.6 to 1 s
+            templates[i] = BenchmarkData.randomFeatures(random, 60 + random.nextInt(41));
+        dtwEngine = new DtwEngine(bandRadius);
+    }
+
+
+
+    @Benchmark
+    public FeatureMatrix extract()
+    {
+        return mfccExtractor.extract(utterance, 0, utterance.length);
+    }
+
+
+
+    @Benchmark
+    public int score()
+    {   // closest template, as a live recognition would look for it
+        int closest = -1;
+        float best = DtwEngine.NO_THRESHOLD;
+        for ( int i=0; i<templates.length; ++i )
+        {
+            float distance = dtwEngine.distance(templates[i], hypothesis, best);
+            if ( distance < best )
+            {
+                best = distance;
+                closest = i;
+            }
+        }
+        return closest;
+    }
+}
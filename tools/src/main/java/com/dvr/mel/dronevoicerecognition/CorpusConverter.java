@@ -0,0 +1,81 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**************************************************************************************************
+ *  CorpusConverter in a nutshell:                                                                *
+ *      _ converts the corpora of a corpusGlobalDir between the app's two layouts (desktop JVM)   *
+ *      _ export : every [name].corpus container (CorpusContainer) is written to [name]/, one     *
+ *        [command].wav per command, the layout CorpusEvaluator and ParameterSweep read           *
+ *      _ import : every [name]/ directory of Wav files becomes a [name].corpus container, its    *
+ *        features computed with the app's extractor parameters                                   *
+ *      _ only the given corpora are converted if any are named after the directory               *
+ *                                                                                                *
+ *  Usage: CorpusConverter export|import <corpusGlobalDir> [corpus ...]                           *
+ *************************************************************************************************/
+
+
+
+
+class CorpusConverter
+{
+    public static void main(String[] args)
+    {
+        if ( args.length < 2 || !( args[0].equals("export") || args[0].equals("import") ) )
+        {
+            System.err.println("Usage: CorpusConverter export|import <corpusGlobalDir> [corpus ...]");
+            System.exit(1);
+            return;
+        }
+
+        File corpusGlobalDir = new File(args[1]);
+        boolean export = args[0].equals("export");
+        List<String> corpora = args.length > 2 ? Arrays.asList(args).subList(2, args.length)
+                                               : listCorpora(corpusGlobalDir, export);
+
+        int failures = 0;
+        for ( String corpusName : corpora )
+        {
+            File containerFile = CorpusContainer.fileOf(corpusGlobalDir, corpusName);
+            File corpusDir = new File(corpusGlobalDir, corpusName);
+            try
+            {
+                if ( export )
+                    CorpusContainer.exportTo(containerFile, corpusDir);
+                else
+                    CorpusContainer.importFrom(corpusDir, containerFile,
+                                               new StreamingMfccExtractor(CorpusEvaluator.SAMPLE_RATE));
+                System.out.println(corpusName + " : " + (export ? containerFile + " -> " + corpusDir
+                                                                : corpusDir + " -> " + containerFile));
+            }
+            catch (IOException e)
+            {
+                System.err.println(corpusName + " : " + e.getMessage());
+                ++failures;
+            }
+        }
+        System.exit( failures == 0 ? 0 : 1 );
+    }
+
+
+
+    static List<String> listCorpora(File corpusGlobalDir, boolean containers)
+    {   // names of the containers, or of the directories, of corpusGlobalDir, sorted
+        TreeSet<String> corpora = new TreeSet<>();
+        File[] files = corpusGlobalDir.listFiles();
+        if ( files != null )
+            for ( File f : files )
+            {
+                if ( containers && f.isFile() && f.getName().endsWith(CorpusContainer.EXTENSION) )
+                    corpora.add( f.getName().substring(0, f.getName().length() - CorpusContainer.EXTENSION.length()) );
+                else if ( !containers && f.isDirectory() )
+                    corpora.add( f.getName() );
+            }
+        return new ArrayList<>(corpora);
+    }
+}
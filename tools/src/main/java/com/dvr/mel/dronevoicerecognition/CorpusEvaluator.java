@@ -0,0 +1,426 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**************************************************************************************************
+ *  CorpusEvaluator in a nutshell:                                                                *
+ *      _ headless batch evaluation of archived corpora, on a desktop JVM : every sub-directory   *
+ *        of a corpusGlobalDir is a corpus, holding one [command].wav per command (same layout as *
+ *        the app's)                                                                              *
+ *      _ WAVs are memory-mapped (WavFileReader) and must carry the exact header WavFileSink      *
+ *        writes, anything else (interrupted recording, other format) is reported and skipped     *
+ *      _ features are extracted in parallel, one corpus per task, then every                     *
+ *        hypothesis x reference pair of corpora gets its own confusion matrix, pairs running     *
+ *        concurrently on a shared RecognitionExecutor                                            *
+ *      _ reports every hypothesis corpus's recognition rate, the overall confusion matrix and    *
+ *        the throughput in recognized utterances per second, --min-rate turns it into a          *
+ *        regression test (exit status 2 below that rate)                                         *
+ *                                                                                                *
+ *  Usage: CorpusEvaluator <corpusGlobalDir> [--commands a,b,c] [--band radius] [--threads n]     *
+ *                         [--pairs] [--min-rate rate]                                            *
+ *************************************************************************************************/
+
+
+
+
+class CorpusEvaluator
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static final int SAMPLE_RATE = 16000; // MicWavRecorderHandler's recording rate
+
+    /**** Options ****/
+    private final File corpusGlobalDir;
+    private List<String> commands; // vocabulary, null for every command found in the corpora
+    private int bandRadius = DtwEngine.NO_BAND; // same as the app's RecognitionExecutor
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean printPairs = false;
+    private float minRate = -1;
+
+    /**** Statistics ****/
+    private final AtomicInteger nbFiles = new AtomicInteger();
+    private final AtomicInteger nbInvalidFiles = new AtomicInteger();
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  CONSTRUCTOR                    *
+     *                                                 *
+     ***************************************************/
+
+
+
+    CorpusEvaluator(File corpusGlobalDir_)
+    {
+        corpusGlobalDir = corpusGlobalDir_;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                     MAIN                        *
+     *                                                 *
+     ***************************************************/
+
+
+
+    public static void main(String[] args)
+    {
+        CorpusEvaluator evaluator;
+        try { evaluator = parse(args); }
+        catch (IllegalArgumentException e)
+        {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: CorpusEvaluator <corpusGlobalDir> [--commands a,b,c] [--band radius]"
+                               + " [--threads n] [--pairs] [--min-rate rate]");
+            System.exit(1);
+            return;
+        }
+
+        try
+        {
+            Report report = evaluator.evaluate();
+            report.print(System.out);
+            if ( report.getOverall().getRecognitionRate() < evaluator.minRate )
+                System.exit(2);
+        }
+        catch (IOException | InterruptedException | ExecutionException e)
+        {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+
+
+    static CorpusEvaluator parse(String[] args)
+    {
+        if ( args.length == 0 )
+            throw new IllegalArgumentException("no corpusGlobalDir");
+
+        CorpusEvaluator evaluator = new CorpusEvaluator(new File(args[0]));
+        for ( int i=1; i<args.length; ++i )
+        {
+            switch ( args[i] )
+            {
+                case "--commands" : { evaluator.commands = Arrays.asList(value(args, ++i).split(",")); break; }
+                case "--band" : { evaluator.bandRadius = Integer.parseInt(value(args, ++i)); break; }
+                case "--threads" : { evaluator.threads = Math.max(1, Integer.parseInt(value(args, ++i))); break; }
+                case "--pairs" : { evaluator.printPairs = true; break; }
+                case "--min-rate" : { evaluator.minRate = Float.parseFloat(value(args, ++i)); break; }
+                default : throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        return evaluator;
+    }
+
+
+
+    private static String value(String[] args, int i)
+    {
+        if ( i >= args.length )
+            throw new IllegalArgumentException(args[i-1] + " needs a value");
+        return args[i];
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   ROUTINES                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    Report evaluate() throws IOException, InterruptedException, ExecutionException
+    {
+        List<String> corpora = listCorpora(corpusGlobalDir);
+        if ( commands == null )
+            commands = listCommands(corpusGlobalDir, corpora);
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        RecognitionExecutor recognitionExecutor = new RecognitionExecutor(threads, bandRadius);
+        try
+        {
+            long start = System.nanoTime();
+            FeatureMatrix[][] features = extractAll(workers, corpora);
+            long extractionNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            ConfusionMatrix[][] pairs = recognizeAll(workers, recognitionExecutor, features);
+            long recognitionNanos = System.nanoTime() - start;
+
+            return new Report(corpora, commands, pairs, nbFiles.get(), nbInvalidFiles.get(),
+                              extractionNanos, recognitionNanos);
+        }
+        finally
+        {
+            workers.shutdown();
+            recognitionExecutor.shutdown();
+        }
+    }
+
+
+
+    static List<String> listCorpora(File corpusGlobalDir) throws IOException
+    {   // every sub-directory, sorted by name
+        File[] children = corpusGlobalDir.listFiles();
+        if ( children == null )
+            throw new IOException(corpusGlobalDir + " isn't a directory");
+
+        TreeSet<String> corpora = new TreeSet<>();
+        for ( File child : children )
+            if ( child.isDirectory() )
+                corpora.add(child.getName());
+        return new ArrayList<>(corpora);
+    }
+
+
+
+    static List<String> listCommands(File corpusGlobalDir, List<String> corpora)
+    {   // every [command].wav found in at least one corpus, sorted by name
+        TreeSet<String> commands = new TreeSet<>();
+        for ( String corpus : corpora )
+        {
+            String[] names = new File(corpusGlobalDir, corpus).list();
+            if ( names != null )
+                for ( String name : names )
+                    if ( name.endsWith(".wav") )
+                        commands.add( name.substring(0, name.length() - 4) );
+        }
+        return new ArrayList<>(commands);
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                FEATURE EXTRACTION               *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private FeatureMatrix[][] extractAll(ExecutorService workers, List<String> corpora)
+            throws InterruptedException, ExecutionException
+    {   // [corpus][command], one task per corpus
+        List<Future<FeatureMatrix[]>> futures = new ArrayList<>();
+        for ( final String corpus : corpora )
+            futures.add( workers.submit(new Callable<FeatureMatrix[]>()
+            {
+                @Override
+                public FeatureMatrix[] call()
+                {
+                    return extract(new File(corpusGlobalDir, corpus));
+                }
+            }));
+
+        FeatureMatrix[][] features = new FeatureMatrix[corpora.size()][];
+        for ( int c=0; c<features.length; ++c )
+            features[c] = futures.get(c).get();
+        return features;
+    }
+
+
+
+    private FeatureMatrix[] extract(File corpusDir)
+    {   // every command of a corpus, null for missing, invalid or silent recordings
+        StreamingMfccExtractor extractor = new StreamingMfccExtractor(SAMPLE_RATE); // not thread safe, one per task
+        FeatureMatrix[] features = new FeatureMatrix[commands.size()];
+        for ( int i=0; i<features.length; ++i )
+        {
+            File wav = new File(corpusDir, commands.get(i) + ".wav");
+            if ( !wav.exists() )
+                continue;
+
+            nbFiles.incrementAndGet();
+            try
+            {
+                short[] samples = readSamples(wav);
+                FeatureMatrix matrix = extractor.extract(samples, 0, samples.length);
+                features[i] = matrix.nbFrames > 0 ? matrix : null;
+            }
+            catch (IOException e)
+            {
+                nbInvalidFiles.incrementAndGet();
+                System.err.println(e.getMessage());
+            }
+        }
+        return features;
+    }
+
+
+
+    static short[] readSamples(File wav) throws IOException
+    {   // samples of a recording written by the app, WavFormatException for anything else
+        WavFileReader reader = new WavFileReader(wav);
+        reader.checkCanonicalHeader();
+        if ( reader.sampleRate != SAMPLE_RATE || reader.nbrOfChannel != 1 )
+            throw new WavFormatException(wav, "expected mono " + SAMPLE_RATE + " Hz, got "
+                                              + reader.nbrOfChannel + " channel(s) at " + reader.sampleRate + " Hz");
+        return reader.readSamples();
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  RECOGNITION                    *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private static ConfusionMatrix[][] recognizeAll(ExecutorService workers,
+                                                    final RecognitionExecutor recognitionExecutor,
+                                                    final FeatureMatrix[][] features)
+            throws InterruptedException, ExecutionException
+    {   // [hypothesis][reference], null on the diagonal, every pair submitted at once
+        int nbCorpora = features.length;
+        List<Future<ConfusionMatrix>> futures = new ArrayList<>();
+        for ( int h=0; h<nbCorpora; ++h )
+            for ( int r=0; r<nbCorpora; ++r )
+                if ( h != r )
+                {
+                    final FeatureMatrix[][] reference = { features[r] };
+                    final FeatureMatrix[] hypothesis = features[h];
+                    futures.add( workers.submit(new Callable<ConfusionMatrix>()
+                    {
+                        @Override
+                        public ConfusionMatrix call()
+                        {
+                            return recognitionExecutor.recognize(reference, hypothesis);
+                        }
+                    }));
+                }
+
+        ConfusionMatrix[][] pairs = new ConfusionMatrix[nbCorpora][nbCorpora];
+        int next = 0;
+        for ( int h=0; h<nbCorpora; ++h )
+            for ( int r=0; r<nbCorpora; ++r )
+                if ( h != r )
+                    pairs[h][r] = futures.get(next++).get();
+        return pairs;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                     REPORT                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    class Report
+    {
+        final List<String> corpora;
+        final List<String> commands;
+        final ConfusionMatrix[][] pairs; // [hypothesis][reference], null on the diagonal
+        final int nbFiles, nbInvalidFiles;
+        final long extractionNanos, recognitionNanos;
+
+        Report(List<String> corpora_, List<String> commands_, ConfusionMatrix[][] pairs_,
+               int nbFiles_, int nbInvalidFiles_, long extractionNanos_, long recognitionNanos_)
+        {
+            corpora = corpora_;
+            commands = commands_;
+            pairs = pairs_;
+            nbFiles = nbFiles_;
+            nbInvalidFiles = nbInvalidFiles_;
+            extractionNanos = extractionNanos_;
+            recognitionNanos = recognitionNanos_;
+        }
+
+        ConfusionMatrix getHypothesis(int h)
+        {   // hypothesis corpus h against every other corpus, as FinalCorpusActivity would
+            return sum(pairs[h]);
+        }
+
+        ConfusionMatrix getOverall()
+        {
+            List<ConfusionMatrix> all = new ArrayList<>();
+            for ( ConfusionMatrix[] line : pairs )
+                all.addAll(Arrays.asList(line));
+            return sum(all.toArray(new ConfusionMatrix[all.size()]));
+        }
+
+        long getUtteranceCount()
+        {   // recognized (reference word, hypothesis corpus) pairs, i.e. votes
+            return getOverall().sum();
+        }
+
+        private ConfusionMatrix sum(ConfusionMatrix[] results)
+        {
+            ConfusionMatrix sum = new ConfusionMatrix(commands.size());
+            for ( ConfusionMatrix result : results )
+                if ( result != null )
+                    sum.addAll(result);
+            return sum;
+        }
+
+        void print(PrintStream out)
+        {
+            out.println(String.format(Locale.US, "%d corpora, %d commands, %d pairs, band radius %d, %d threads",
+                                      corpora.size(), commands.size(), corpora.size()*(corpora.size()-1),
+                                      bandRadius, threads));
+            out.println(String.format(Locale.US, "features    : %d files (%d invalid) in %.1f ms",
+                                      nbFiles, nbInvalidFiles, extractionNanos / 1e6));
+            long utterances = getUtteranceCount();
+            out.println(String.format(Locale.US, "recognition : %d utterances in %.1f ms, %.1f utterances/s",
+                                      utterances, recognitionNanos / 1e6,
+                                      recognitionNanos == 0 ? 0 : utterances * 1e9 / recognitionNanos));
+            out.println();
+
+            out.println("hypothesis corpus, against every other corpus :");
+            for ( int h=0; h<corpora.size(); ++h )
+                out.println(String.format(Locale.US, "    %-24s %6.2f %%", corpora.get(h),
+                                          100 * getHypothesis(h).getRecognitionRate()));
+            if ( printPairs )
+            {
+                out.println();
+                out.println("hypothesis corpus / reference corpus :");
+                for ( int h=0; h<corpora.size(); ++h )
+                    for ( int r=0; r<corpora.size(); ++r )
+                        if ( pairs[h][r] != null )
+                            out.println(String.format(Locale.US, "    %-24s %-24s %6.2f %%", corpora.get(h),
+                                                      corpora.get(r), 100 * pairs[h][r].getRecognitionRate()));
+            }
+            out.println();
+
+            ConfusionMatrix overall = getOverall();
+            out.println(String.format(Locale.US, "overall : %.2f %%, confusion (reference word x recognized word) :",
+                                      100 * overall.getRecognitionRate()));
+            for ( int i=0; i<commands.size(); ++i )
+            {
+                StringBuilder line = new StringBuilder(String.format(Locale.US, "    %-16s", commands.get(i)));
+                for ( int j=0; j<commands.size(); ++j )
+                    line.append(String.format(Locale.US, "%6d", overall.get(i, j)));
+                out.println(line);
+            }
+        }
+    }
+}
@@ -0,0 +1,534 @@
+package com.dvr.mel.dronevoicerecognition;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**************************************************************************************************
+ *  ParameterSweep in a nutshell:                                                                 *
+ *      _ runs a grid of front-end parameters over archived corpora (same layout as               *
+ *        CorpusEvaluator), each configuration scored by leave-one-speaker-out CrossValidator     *
+ *      _ swept : VAD sensitivity (trimming each recording as WavStreamHandler would, 0 keeps it  *
+ *        whole), frame and step durations, number of mel filters, number of MFCC coefficients    *
+ *      _ intermediate results are shared along the grid :                                        *
+ *            trimmed recordings    per sensitivity                                               *
+ *            FFT power spectra     per sensitivity x frame x step      (one parallel task each)  *
+ *            cepstra               per filter count, at the biggest swept dimension, smaller     *
+ *                                  dimensions being their first coefficients                     *
+ *      _ cost per utterance = CPU time of every stage it went through (thread CPU time, shared   *
+ *        stages divided by the number of utterances) + its DTW against every reference           *
+ *      _ reports every configuration by increasing cost, Pareto frontier marked (no cheaper      *
+ *        configuration is as accurate), and the cheapest one reaching --target if given          *
+ *                                                                                                *
+ *  Usage: ParameterSweep <corpusGlobalDir> [--sensitivity 0,10] [--frame 20,25] [--step 10]      *
+ *                        [--filters 20,26] [--dim 8,12] [--band radius] [--threads n]            *
+ *                        [--commands a,b,c] [--target rate]                                      *
+ *                                                                                                *
+ *  Limitations: _ BUFFER_SIZE_MULTIPLICATOR isn't swept, since the VAD works on 10 ms frames     *
+ *                 whatever the capture buffer it only changes latency, not what is recognized    *
+ *************************************************************************************************/
+
+
+
+
+class ParameterSweep
+{
+    /***************************************************
+     *                                                 *
+     *                INTERN VARIABLES                 *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static final int PRE_ROLL_MS = 200; // AppInfo.PRE_ROLL_MS's default, kept before each trimmed onset
+
+    /**** Grid ****/
+    private final File corpusGlobalDir;
+    private List<String> commands; // vocabulary, null for every command found in the corpora
+    private int[] sensitivities = { 0, 5, 10, 20 };
+    private int[] frameDurations = { 20, 25, 32 }; // ms
+    private int[] stepDurations = { 10 }; // ms
+    private int[] filterCounts = { 16, 20, 26 };
+    private int[] dimensions = { 8, 12 };
+
+    /**** Options ****/
+    private int bandRadius = DtwEngine.NO_BAND;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private float target = -1;
+
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+
+
+    /***************************************************
+     *                                                 *
+     *                  CONSTRUCTOR                    *
+     *                                                 *
+     ***************************************************/
+
+
+
+    ParameterSweep(File corpusGlobalDir_)
+    {
+        corpusGlobalDir = corpusGlobalDir_;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                     MAIN                        *
+     *                                                 *
+     ***************************************************/
+
+
+
+    public static void main(String[] args)
+    {
+        ParameterSweep sweep;
+        try { sweep = parse(args); }
+        catch (IllegalArgumentException e)
+        {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: ParameterSweep <corpusGlobalDir> [--sensitivity 0,10] [--frame 20,25]"
+                               + " [--step 10] [--filters 20,26] [--dim 8,12] [--band radius] [--threads n]"
+                               + " [--commands a,b,c] [--target rate]");
+            System.exit(1);
+            return;
+        }
+
+        try
+        {
+            List<Configuration> configurations = sweep.run();
+            sweep.print(configurations, System.out);
+        }
+        catch (IOException | InterruptedException | ExecutionException e)
+        {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+
+
+    static ParameterSweep parse(String[] args)
+    {
+        if ( args.length == 0 )
+            throw new IllegalArgumentException("no corpusGlobalDir");
+
+        ParameterSweep sweep = new ParameterSweep(new File(args[0]));
+        for ( int i=1; i<args.length; ++i )
+        {
+            switch ( args[i] )
+            {
+                case "--sensitivity" : { sweep.sensitivities = values(args, ++i); break; }
+                case "--frame" : { sweep.frameDurations = values(args, ++i); break; }
+                case "--step" : { sweep.stepDurations = values(args, ++i); break; }
+                case "--filters" : { sweep.filterCounts = values(args, ++i); break; }
+                case "--dim" : { sweep.dimensions = values(args, ++i); break; }
+                case "--band" : { sweep.bandRadius = Integer.parseInt(value(args, ++i)); break; }
+                case "--threads" : { sweep.threads = Math.max(1, Integer.parseInt(value(args, ++i))); break; }
+                case "--commands" : { sweep.commands = Arrays.asList(value(args, ++i).split(",")); break; }
+                case "--target" : { sweep.target = Float.parseFloat(value(args, ++i)); break; }
+                default : throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        return sweep;
+    }
+
+
+
+    private static String value(String[] args, int i)
+    {
+        if ( i >= args.length )
+            throw new IllegalArgumentException(args[i-1] + " needs a value");
+        return args[i];
+    }
+
+
+
+    private static int[] values(String[] args, int i)
+    {   // comma separated integers, sorted
+        String[] items = value(args, i).split(",");
+        int[] values = new int[items.length];
+        for ( int v=0; v<items.length; ++v )
+            values[v] = Integer.parseInt(items[v].trim());
+        Arrays.sort(values);
+        return values;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                   ROUTINES                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    List<Configuration> run() throws IOException, InterruptedException, ExecutionException
+    {
+        final List<String> corpora = CorpusEvaluator.listCorpora(corpusGlobalDir);
+        if ( commands == null )
+            commands = CorpusEvaluator.listCommands(corpusGlobalDir, corpora);
+        short[][][] recordings = load(corpora);
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try
+        {
+            // 1 - trimmed recordings, one task per sensitivity
+            List<Future<Trimmed>> trimmed = new ArrayList<>();
+            for ( final int sensitivity : sensitivities )
+                trimmed.add( workers.submit(new TrimTask(recordings, sensitivity)) );
+
+            // 2 - everything else, one task per sensitivity x frame x step
+            List<Future<List<Configuration>>> groups = new ArrayList<>();
+            for ( Future<Trimmed> t : trimmed )
+                for ( int frameMs : frameDurations )
+                    for ( int stepMs : stepDurations )
+                        groups.add( workers.submit(new GroupTask(corpora, t.get(), frameMs, stepMs)) );
+
+            List<Configuration> configurations = new ArrayList<>();
+            for ( Future<List<Configuration>> group : groups )
+                configurations.addAll(group.get());
+            return configurations;
+        }
+        finally
+        {
+            workers.shutdown();
+        }
+    }
+
+
+
+    private short[][][] load(List<String> corpora)
+    {   // [corpus][command], null for missing or invalid recordings
+        short[][][] recordings = new short[corpora.size()][commands.size()][];
+        for ( int c=0; c<corpora.size(); ++c )
+            for ( int w=0; w<commands.size(); ++w )
+            {
+                File wav = new File(new File(corpusGlobalDir, corpora.get(c)), commands.get(w) + ".wav");
+                if ( !wav.exists() )
+                    continue;
+                try { recordings[c][w] = CorpusEvaluator.readSamples(wav); }
+                catch (IOException e) { System.err.println(e.getMessage()); }
+            }
+        return recordings;
+    }
+
+
+
+    static short[] trim(short[] samples, int sensitivity)
+    {   // from PRE_ROLL_MS before the first onset to the last offset, whole recording if no speech found
+        if ( sensitivity <= 0 )
+            return samples;
+
+        final long[] bounds = { -1, -1 }; // first start, last end (-1 while speech goes on)
+        SlidingRmsVad vad = new SlidingRmsVad(CorpusEvaluator.SAMPLE_RATE, sensitivity);
+        vad.process(samples, 0, samples.length, new VoiceActivityDetector.Listener()
+        {
+            @Override
+            public void onSpeechStart(long startSample)
+            {
+                if ( bounds[0] < 0 )
+                    bounds[0] = startSample;
+                bounds[1] = -1;
+            }
+
+            @Override
+            public void onSpeechEnd(long endSample)
+            {
+                bounds[1] = endSample;
+            }
+        });
+        if ( bounds[0] < 0 )
+            return samples;
+
+        int start = (int) Math.max(0, bounds[0] - CorpusEvaluator.SAMPLE_RATE*PRE_ROLL_MS/1000);
+        int end = bounds[1] < 0 ? samples.length : (int) Math.min(samples.length, bounds[1]);
+        return Arrays.copyOfRange(samples, start, Math.max(start, end));
+    }
+
+
+
+    private static long cpuNanos()
+    {   // current thread's CPU time, wall time if the JVM can't tell
+        return threadBean.isCurrentThreadCpuTimeSupported() ? threadBean.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                     TASKS                       *
+     *                                                 *
+     ***************************************************/
+
+
+
+    private static class Trimmed
+    {
+        final int sensitivity;
+        final short[][][] recordings; // [corpus][command]
+        final int nbUtterances; // non null recordings
+        final long cpuNanos;
+
+        Trimmed(int sensitivity_, short[][][] recordings_, int nbUtterances_, long cpuNanos_)
+        {
+            sensitivity = sensitivity_;
+            recordings = recordings_;
+            nbUtterances = nbUtterances_;
+            cpuNanos = cpuNanos_;
+        }
+    }
+
+
+
+    private static class TrimTask implements Callable<Trimmed>
+    {
+        private final short[][][] recordings;
+        private final int sensitivity;
+
+        TrimTask(short[][][] recordings_, int sensitivity_)
+        {
+            recordings = recordings_;
+            sensitivity = sensitivity_;
+        }
+
+        @Override
+        public Trimmed call()
+        {
+            long start = cpuNanos();
+            short[][][] trimmed = new short[recordings.length][][];
+            int nbUtterances = 0;
+            for ( int c=0; c<recordings.length; ++c )
+            {
+                trimmed[c] = new short[recordings[c].length][];
+                for ( int w=0; w<recordings[c].length; ++w )
+                    if ( recordings[c][w] != null )
+                    {
+                        trimmed[c][w] = trim(recordings[c][w], sensitivity);
+                        ++nbUtterances;
+                    }
+            }
+            return new Trimmed(sensitivity, trimmed, nbUtterances, cpuNanos() - start);
+        }
+    }
+
+
+
+    private class GroupTask implements Callable<List<Configuration>>
+    {   // every configuration sharing a sensitivity, a frame and a step
+        private final List<String> corpora;
+        private final Trimmed trimmed;
+        private final int frameMs, stepMs;
+
+        GroupTask(List<String> corpora_, Trimmed trimmed_, int frameMs_, int stepMs_)
+        {
+            corpora = corpora_;
+            trimmed = trimmed_;
+            frameMs = frameMs_;
+            stepMs = stepMs_;
+        }
+
+        @Override
+        public List<Configuration> call()
+        {
+            List<Configuration> configurations = new ArrayList<>();
+            int nbCorpora = trimmed.recordings.length, V = commands.size();
+            if ( trimmed.nbUtterances == 0 )
+                return configurations;
+
+            // power spectra, shared by every filter count and dimension
+            long start = cpuNanos();
+            StreamingMfccExtractor framer = new StreamingMfccExtractor(CorpusEvaluator.SAMPLE_RATE, frameMs, stepMs, 1, 1);
+            float[][][] spectra = new float[nbCorpora][V][];
+            for ( int c=0; c<nbCorpora; ++c )
+                for ( int w=0; w<V; ++w )
+                {
+                    short[] samples = trimmed.recordings[c][w];
+                    if ( samples != null )
+                        spectra[c][w] = framer.powerSpectra(samples, 0, samples.length);
+                }
+            long spectraNanos = cpuNanos() - start;
+
+            // one DTW worker per group, the groups already keep every core busy
+            RecognitionExecutor recognitionExecutor = new RecognitionExecutor(1, bandRadius);
+            try
+            {
+                for ( int numFilters : filterCounts )
+                {
+                    int maxDim = 0;
+                    for ( int dim : dimensions )
+                        if ( dim <= numFilters )
+                            maxDim = dim;
+                    if ( maxDim == 0 )
+                        continue;
+
+                    // cepstra at maxDim, smaller dimensions keep their first coefficients
+                    start = cpuNanos();
+                    StreamingMfccExtractor extractor =
+                            new StreamingMfccExtractor(CorpusEvaluator.SAMPLE_RATE, frameMs, stepMs, maxDim, numFilters);
+                    FeatureMatrix[][] cepstra = new FeatureMatrix[nbCorpora][V];
+                    for ( int c=0; c<nbCorpora; ++c )
+                        for ( int w=0; w<V; ++w )
+                            if ( spectra[c][w] != null )
+                                cepstra[c][w] = extractor.fromPowerSpectra(spectra[c][w]);
+                    long cepstraNanos = cpuNanos() - start;
+
+                    for ( int dim : dimensions )
+                        if ( dim <= numFilters )
+                        {
+                            CrossValidator.Result result = new CrossValidator(recognitionExecutor).run(
+                                    corpora, commands, truncate(cepstra, dim), 0 );
+                            long featureNanos = (trimmed.cpuNanos + spectraNanos + cepstraNanos) / trimmed.nbUtterances;
+                            long dtwNanos = result.recognitionNanos / trimmed.nbUtterances;
+                            configurations.add( new Configuration( trimmed.sensitivity, frameMs, stepMs, numFilters, dim,
+                                                                   result.overall.getRecognitionRate(),
+                                                                   featureNanos, dtwNanos ) );
+                        }
+                }
+            }
+            finally
+            {
+                recognitionExecutor.shutdown();
+            }
+            return configurations;
+        }
+    }
+
+
+
+    static FeatureMatrix[][] truncate(FeatureMatrix[][] features, int dim)
+    {   // first dim coefficients of every frame, null for empty matrices
+        FeatureMatrix[][] truncated = new FeatureMatrix[features.length][];
+        for ( int c=0; c<features.length; ++c )
+        {
+            truncated[c] = new FeatureMatrix[features[c].length];
+            for ( int w=0; w<features[c].length; ++w )
+            {
+                FeatureMatrix matrix = features[c][w];
+                if ( matrix == null || matrix.nbFrames == 0 )
+                    continue;
+                if ( matrix.dim == dim )
+                {
+                    truncated[c][w] = matrix;
+                    continue;
+                }
+                float[] data = new float[matrix.nbFrames*dim];
+                for ( int i=0; i<matrix.nbFrames; ++i )
+                    System.arraycopy(matrix.data, i*matrix.dim, data, i*dim, dim);
+                truncated[c][w] = new FeatureMatrix(data, matrix.nbFrames, dim);
+            }
+        }
+        return truncated;
+    }
+
+
+
+    /***************************************************
+     *                                                 *
+     *                     REPORT                      *
+     *                                                 *
+     ***************************************************/
+
+
+
+    static class Configuration
+    {
+        final int sensitivity, frameMs, stepMs, numFilters, dimMfcc;
+        final float accuracy;
+        final long featureNanos, dtwNanos; // CPU time per utterance
+        boolean pareto = false;
+
+        Configuration(int sensitivity_, int frameMs_, int stepMs_, int numFilters_, int dimMfcc_,
+                      float accuracy_, long featureNanos_, long dtwNanos_)
+        {
+            sensitivity = sensitivity_;
+            frameMs = frameMs_;
+            stepMs = stepMs_;
+            numFilters = numFilters_;
+            dimMfcc = dimMfcc_;
+            accuracy = accuracy_;
+            featureNanos = featureNanos_;
+            dtwNanos = dtwNanos_;
+        }
+
+        long getCostNanos()
+        {
+            return featureNanos + dtwNanos;
+        }
+    }
+
+
+
+    static List<Configuration> paretoFrontier(List<Configuration> configurations)
+    {   // sorts configurations by increasing cost, marks and returns the ones more accurate than any cheaper one
+        Collections.sort(configurations, new Comparator<Configuration>()
+        {
+            @Override
+            public int compare(Configuration a, Configuration b)
+            {   // equal costs : most accurate first, so it hides the other ones
+                int byCost = Long.compare(a.getCostNanos(), b.getCostNanos());
+                return byCost != 0 ? byCost : Float.compare(b.accuracy, a.accuracy);
+            }
+        });
+
+        List<Configuration> frontier = new ArrayList<>();
+        float best = -1;
+        for ( Configuration configuration : configurations )
+            if ( configuration.accuracy > best )
+            {
+                best = configuration.accuracy;
+                configuration.pareto = true;
+                frontier.add(configuration);
+            }
+        return frontier;
+    }
+
+
+
+    void print(List<Configuration> configurations, PrintStream out)
+    {
+        List<Configuration> frontier = paretoFrontier(configurations);
+
+        out.println(String.format(Locale.US, "%d configurations, %d on the Pareto frontier (*), cost in us per utterance",
+                                  configurations.size(), frontier.size()));
+        out.println(String.format(Locale.US, "  %5s %5s %4s %7s %3s %8s %9s %9s %9s",
+                                  "sens", "frame", "step", "filters", "dim", "accuracy", "cost", "features", "dtw"));
+        for ( Configuration c : configurations )
+            out.println(String.format(Locale.US, "%s %5d %5d %4d %7d %3d %7.2f%% %9.1f %9.1f %9.1f",
+                                      c.pareto ? "*" : " ", c.sensitivity, c.frameMs, c.stepMs, c.numFilters,
+                                      c.dimMfcc, 100*c.accuracy, c.getCostNanos()/1e3, c.featureNanos/1e3,
+                                      c.dtwNanos/1e3));
+
+        if ( target >= 0 )
+        {
+            out.println();
+            for ( Configuration c : frontier )
+                if ( c.accuracy >= target )
+                {   // frontier is sorted by cost, the first one reaching target is the cheapest
+                    out.println(String.format(Locale.US, "cheapest configuration reaching %.2f %% : sensitivity %d,"
+                                              + " %d ms frames, %d ms step, %d filters, %d coefficients",
+                                              100*target, c.sensitivity, c.frameMs, c.stepMs, c.numFilters, c.dimMfcc));
+                    return;
+                }
+            out.println(String.format(Locale.US, "no configuration reaches %.2f %%", 100*target));
+        }
+    }
+}